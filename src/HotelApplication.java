@@ -1,14 +1,26 @@
 
 import api.AdminResource;
 import api.HotelResource;
+import feed.ChangeFeed;
+import service.AvailabilityBackend;
 import service.CustomerService;
 import service.ReservationService;
 import model.ReservationFactory;
+import persistence.Journal;
+import persistence.ReplicationFollower;
+import persistence.ReplicationLeader;
 import ui.*;
+import web.HotelHttpServer;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Scanner;
 
 
@@ -18,22 +30,173 @@ public final class HotelApplication {
     public static void main(String[] args) {
         // Instantiate classes
         CustomerService customerService = CustomerService.getInstance();
-        ReservationService reservationService = ReservationService.getInstance(new ReservationFactory());
+        ReservationService reservationService = ReservationService.getInstance(new ReservationFactory(),
+                availabilityBackend());
         AdminResource adminResource = new AdminResource(customerService, reservationService);
+        HotelResource hotelResource = new HotelResource(customerService,
+                reservationService);
+        String leaderPort = System.getProperty("hotel.replica.of");
+        if (leaderPort != null) {
+            runReplica(Integer.parseInt(leaderPort), customerService, reservationService, hotelResource,
+                    adminResource);
+            return;
+        }
+        openJournal(customerService, reservationService);
+        // Opened after the journal has replayed, so subscribers only see changes made from now on, and told about
+        // each change after the journal, so they only see changes that are already on disk.
+        ChangeFeed changeFeed = ChangeFeed.open(Integer.getInteger("hotel.feed.capacity", 1 << 16),
+                customerService, reservationService);
+        ReplicationLeader replicationLeader = startReplicationLeader(customerService, reservationService);
         Scanner scanner = new Scanner(System.in);
-        DateFormat simpleDateFormat = new SimpleDateFormat("MM/dd/yyyy");
         ConsolePrinter consolePrinter = new ConsolePrinterImpl();
         AdminMenu adminMenuService = new AdminMenu(adminResource, scanner, consolePrinter);
         MenuManager adminMenuManager = new AdminMenuManager(scanner, adminMenuService, consolePrinter);
-        HotelResource hotelResource = new HotelResource(customerService,
-                reservationService);
         Date now = new Date();
-        MainMenu mainMenuService = new MainMenu(now, hotelResource, scanner, simpleDateFormat,
-                consolePrinter);
+        MainMenu mainMenuService = new MainMenu(now, hotelResource, scanner, consolePrinter);
         MenuManager mainMenuManager = new MainMenuManager(adminMenuManager, mainMenuService, scanner,
                 consolePrinter);
 
+        HotelHttpServer httpServer = startHttpServer(hotelResource, adminResource);
+
         // Run the app
         mainMenuManager.open();
+        if (httpServer != null) {
+            httpServer.close();
+        }
+        changeFeed.close();
+        if (replicationLeader != null) {
+            try {
+                replicationLeader.close();
+            } catch (IOException ex) {
+                System.err.println("Could not stop replication: " + ex.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the availability backend from the hotel.availability.backend system property, interval by default
+     *
+     * @throws IllegalArgumentException if the property names no backend
+     */
+    private static AvailabilityBackend availabilityBackend() {
+        String backend = System.getProperty("hotel.availability.backend", AvailabilityBackend.INTERVAL.name());
+        for (AvailabilityBackend availabilityBackend: AvailabilityBackend.values()) {
+            if (availabilityBackend.name().equalsIgnoreCase(backend.trim())) {
+                return availabilityBackend;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hotel.availability.backend " + backend + ", expected one of " +
+                Arrays.toString(AvailabilityBackend.values()) + ".");
+    }
+
+    /**
+     * Streams every change to read replicas on the local machine when the hotel.replication.port system
+     * property is set
+     */
+    private static ReplicationLeader startReplicationLeader(CustomerService customerService,
+                                                            ReservationService reservationService) {
+        String port = System.getProperty("hotel.replication.port");
+        if (port == null) {
+            return null;
+        }
+        try {
+            ReplicationLeader leader = ReplicationLeader.start(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(port)), customerService, reservationService);
+            System.out.println("Replicating to followers on port " + leader.getPort());
+            return leader;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not listen for followers on port " + port, ex);
+        }
+    }
+
+    /**
+     * Runs as a read replica of the leader on a local port: loads the leader's state, then serves searches over
+     * HTTP without the menus until the leader goes away. A replica that could not apply a change from the leader
+     * starts over in a fresh process, which loads a new snapshot.
+     */
+    private static void runReplica(int leaderPort, CustomerService customerService,
+                                   ReservationService reservationService, HotelResource hotelResource,
+                                   AdminResource adminResource) {
+        String httpPort = System.getProperty("hotel.http.port", "0");
+        boolean resyncNeeded;
+        try (ReplicationFollower follower = ReplicationFollower.connect(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), leaderPort), customerService,
+                reservationService);
+             HotelHttpServer httpServer = HotelHttpServer.start(new InetSocketAddress(Integer.parseInt(httpPort)),
+                     hotelResource, adminResource, follower::unavailableReason)) {
+            System.out.println("Serving a read replica over HTTP on port " + httpServer.getPort());
+            follower.awaitDisconnect();
+            System.out.println(follower.unavailableReason());
+            resyncNeeded = follower.isResyncNeeded();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not replicate from port " + leaderPort, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (resyncNeeded) {
+            restartReplica();
+        }
+    }
+
+    /**
+     * Starts this replica again in a new process with the same command line and lets this one end
+     */
+    private static void restartReplica() {
+        ProcessHandle.Info info = ProcessHandle.current().info();
+        if (info.command().isEmpty() || info.arguments().isEmpty()) {
+            throw new IllegalStateException("The replica could not apply a change from the leader and can't " +
+                    "restart itself; start it again to load a new snapshot.");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(info.command().get());
+        command.addAll(Arrays.asList(info.arguments().get()));
+        try {
+            new ProcessBuilder(command).inheritIO().start();
+            System.out.println("The replica could not apply a change from the leader; restarted it to load a " +
+                    "new snapshot.");
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not restart the replica", ex);
+        }
+    }
+
+    /**
+     * Serves the resources over HTTP when the hotel.http.port system property is set
+     */
+    private static HotelHttpServer startHttpServer(HotelResource hotelResource, AdminResource adminResource) {
+        String port = System.getProperty("hotel.http.port");
+        if (port == null) {
+            return null;
+        }
+        try {
+            HotelHttpServer server = HotelHttpServer.start(new InetSocketAddress(Integer.parseInt(port)),
+                    hotelResource, adminResource);
+            System.out.println("Serving HTTP on port " + server.getPort());
+            return server;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not start the HTTP server on port " + port, ex);
+        }
+    }
+
+    /**
+     * Restores saved state and journals every change when the hotel.data.dir system property names a directory
+     */
+    private static void openJournal(CustomerService customerService, ReservationService reservationService) {
+        String dataDirectory = System.getProperty("hotel.data.dir");
+        if (dataDirectory == null) {
+            return;
+        }
+        try {
+            Journal journal = Journal.open(Path.of(dataDirectory), customerService, reservationService);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException ex) {
+                    System.err.println("Could not close the journal: " + ex.getLocalizedMessage());
+                }
+            }));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open the journal in " + dataDirectory, ex);
+        }
     }
 }
@@ -3,9 +3,23 @@ package api;
 import model.Reservation;
 import model.Customer;
 import model.IRoom;
+import model.RoomType;
+import metrics.HotelMetrics;
+import metrics.OperationMetrics;
 import service.ReservationService;
+import service.CacheStatistics;
 import service.CustomerService;
+import service.OccupancyReport;
+import service.Page;
+import service.ReservationFilter;
+import service.RoomFilter;
+import service.RoomImporter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Admin Resources act as API to admin menu's user interfaces.
@@ -16,6 +30,12 @@ import java.util.*;
 public final class AdminResource {
     private final CustomerService customerService;
     private final ReservationService reservationService;
+    private final OperationMetrics addRoomMetrics;
+    private final OperationMetrics importRoomsMetrics;
+    private final OperationMetrics listCustomersMetrics;
+    private final OperationMetrics listRoomsMetrics;
+    private final OperationMetrics listReservationsMetrics;
+    private final OperationMetrics occupancyReportMetrics;
 
     /**
      * Constructor
@@ -26,6 +46,13 @@ public final class AdminResource {
     public AdminResource(CustomerService customerService, ReservationService reservationService) {
         this.customerService = customerService;
         this.reservationService = reservationService;
+        HotelMetrics metrics = HotelMetrics.getInstance();
+        this.addRoomMetrics = metrics.operation("AdminResource.addRoom");
+        this.importRoomsMetrics = metrics.operation("AdminResource.importRooms");
+        this.listCustomersMetrics = metrics.operation("AdminResource.listCustomers");
+        this.listRoomsMetrics = metrics.operation("AdminResource.listRooms");
+        this.listReservationsMetrics = metrics.operation("AdminResource.listReservations");
+        this.occupancyReportMetrics = metrics.operation("AdminResource.getOccupancyReport");
     }
 
     public Customer getCustomer(String email) {
@@ -33,13 +60,50 @@ public final class AdminResource {
     }
 
     /**
-     * Add a list of new roosm
+     * Get an added room by room number
+     *
+     * @param roomNumber        string of room number
+     * @return                  IRoom, or null if no room has the number
+     */
+    public IRoom getRoom(String roomNumber) {
+        return reservationService.getRooms().get(roomNumber);
+    }
+
+    /**
+     * Add a list of new rooms. Either all of them are added or, if any room number is taken or repeated,
+     * none is.
      *
      * @param rooms         list of IRoom objects to be added
      */
     public void addRoom(List<IRoom> rooms) {
-        for (IRoom newRoom: rooms) {
-            reservationService.addRoom(newRoom);
+        long start = addRoomMetrics.start();
+        try {
+            reservationService.addRooms(rooms);
+            addRoomMetrics.succeeded(start);
+        } catch (RuntimeException ex) {
+            addRoomMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Add every room of a CSV or TSV room catalog in one bulk operation
+     *
+     * @param file          catalog file; see RoomImporter for the format
+     * @return              number of rooms added
+     * @throws IOException  if the file can't be read
+     * @throws IllegalArgumentException if a line is invalid or a room number is taken or repeated
+     */
+    public int importRooms(Path file) throws IOException {
+        long start = importRoomsMetrics.start();
+        try {
+            List<IRoom> rooms = RoomImporter.read(file);
+            reservationService.addRooms(rooms);
+            importRoomsMetrics.succeeded(start);
+            return rooms.size();
+        } catch (IOException | RuntimeException ex) {
+            importRoomsMetrics.failed(start, ex);
+            throw ex;
         }
     }
 
@@ -49,8 +113,7 @@ public final class AdminResource {
      * @return          list of added IRoom objects
      */
     public Collection<IRoom> getAllRooms() {
-        Map<String, IRoom> allRooms = reservationService.getRooms();
-        return new ArrayList<>(allRooms.values());
+        return reservationService.getRooms().values();
     }
 
     /**
@@ -66,6 +129,168 @@ public final class AdminResource {
         return reservationService.getAllReservations();
     }
 
+    /**
+     * Get one page of customers
+     *
+     * @param search        text the email or name must contain, or null for all customers
+     * @param cursor        cursor of the previous page, or null for the first page
+     * @param pageSize      maximum number of customers
+     * @return              page of customers and the cursor of the next one
+     */
+    public Page<Customer> listCustomers(String search, String cursor, int pageSize) {
+        long start = listCustomersMetrics.start();
+        try {
+            Page<Customer> page = customerService.listCustomers(search, cursor, pageSize);
+            listCustomersMetrics.succeeded(start);
+            return page;
+        } catch (RuntimeException ex) {
+            listCustomersMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get customers as a lazy stream, e.g. for exports
+     *
+     * @param search        text the email or name must contain, or null for all customers
+     * @return              stream of customers
+     */
+    public Stream<Customer> streamCustomers(String search) {
+        return customerService.streamCustomers(search);
+    }
+
+    /**
+     * Get one page of rooms
+     *
+     * @param filter        conditions the rooms must meet
+     * @param cursor        cursor of the previous page, or null for the first page
+     * @param pageSize      maximum number of rooms
+     * @return              page of rooms and the cursor of the next one
+     */
+    public Page<IRoom> listRooms(RoomFilter filter, String cursor, int pageSize) {
+        long start = listRoomsMetrics.start();
+        try {
+            Page<IRoom> page = reservationService.listRooms(filter, cursor, pageSize);
+            listRoomsMetrics.succeeded(start);
+            return page;
+        } catch (RuntimeException ex) {
+            listRoomsMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get rooms as a lazy stream
+     *
+     * @param filter        conditions the rooms must meet
+     * @return              stream of rooms
+     */
+    public Stream<IRoom> streamRooms(RoomFilter filter) {
+        return reservationService.streamRooms(filter);
+    }
+
+    /**
+     * Get one page of reservations
+     *
+     * @param filter        conditions the reservations must meet
+     * @param cursor        cursor of the previous page, or null for the first page
+     * @param pageSize      maximum number of reservations
+     * @return              page of reservations and the cursor of the next one
+     */
+    public Page<Reservation> listReservations(ReservationFilter filter, String cursor, int pageSize) {
+        long start = listReservationsMetrics.start();
+        try {
+            Page<Reservation> page = reservationService.listReservations(filter, cursor, pageSize);
+            listReservationsMetrics.succeeded(start);
+            return page;
+        } catch (RuntimeException ex) {
+            listReservationsMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get reservations as a lazy stream
+     *
+     * @param filter        conditions the reservations must meet
+     * @return              stream of reservations
+     */
+    public Stream<Reservation> streamReservations(ReservationFilter filter) {
+        return reservationService.streamReservations(filter);
+    }
+
+    /**
+     * Set the nightly rate of a room type for a season, as a multiple of each room's price
+     *
+     * @param roomType      room type
+     * @param from          first night
+     * @param to            night after the last one
+     * @param rate          multiple of the room price, e.g. 1.25 for 25% more
+     */
+    public void setRate(RoomType roomType, Date from, Date to, double rate) {
+        reservationService.getRateCalendar().setRate(roomType, from, to, rate);
+    }
+
+    /**
+     * Set the nightly rate of a room type on some days of the week in a season, e.g. weekends
+     *
+     * @param roomType      room type
+     * @param from          first night
+     * @param to            night after the last one
+     * @param daysOfWeek    days of the week whose nights get the rate
+     * @param rate          multiple of the room price, e.g. 1.25 for 25% more
+     */
+    public void setRate(RoomType roomType, Date from, Date to, Set<DayOfWeek> daysOfWeek, double rate) {
+        reservationService.getRateCalendar().setRate(roomType, from, to, daysOfWeek, rate);
+    }
+
+    /**
+     * Get the occupancy rates, revenue and average length of stay of a range of nights, per night, room type and
+     * month
+     *
+     * @param from          first night
+     * @param to            night after the last one
+     * @return              the report
+     * @throws IllegalArgumentException if the range is empty or longer than ten years
+     */
+    public OccupancyReport getOccupancyReport(Date from, Date to) {
+        long start = occupancyReportMetrics.start();
+        try {
+            OccupancyReport report = reservationService.getOccupancyReport(from, to);
+            occupancyReportMetrics.succeeded(start);
+            return report;
+        } catch (RuntimeException ex) {
+            occupancyReportMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the counters of the availability search cache
+     *
+     * @return          hits, misses, evictions and invalidations so far
+     */
+    public CacheStatistics getAvailabilityCacheStatistics() {
+        return reservationService.getAvailabilityCacheStatistics();
+    }
+
+    /**
+     * Get the latency and outcome counters of every instrumented operation; they are also published as JMX
+     * MBeans under hotel:type=Operation
+     *
+     * @return          text table with one line per operation
+     */
+    public String getOperationMetricsReport() {
+        return HotelMetrics.getInstance().report();
+    }
+
+    /**
+     * Clear the counters and latencies of every instrumented operation
+     */
+    public void resetOperationMetrics() {
+        HotelMetrics.getInstance().reset();
+    }
+
     /**
      * Print all reservations
      */
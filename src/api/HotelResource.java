@@ -1,11 +1,17 @@
 package api;
 
+import model.AvailableWindow;
 import model.Customer;
 import model.IRoom;
 import model.Reservation;
+import model.StayQuote;
+import metrics.HotelMetrics;
+import metrics.OperationMetrics;
 import service.CustomerService;
 import service.ReservationService;
+import service.RoomFilter;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * HotelResource has little to no behavior contained inside the class and make uses of
@@ -17,6 +23,20 @@ import java.util.*;
 public final class HotelResource {
     private final CustomerService customerService;
     private final ReservationService reservationService;
+    private final OperationMetrics getCustomerMetrics;
+    private final OperationMetrics createACustomerMetrics;
+    private final OperationMetrics getRoomMetrics;
+    private final OperationMetrics bookARoomMetrics;
+    private final OperationMetrics bookRoomsMetrics;
+    private final OperationMetrics cancelReservationMetrics;
+    private final OperationMetrics changeReservationDatesMetrics;
+    private final OperationMetrics getCustomersReservationsMetrics;
+    private final OperationMetrics findARoomMetrics;
+    private final OperationMetrics findFilteredRoomsMetrics;
+    private final OperationMetrics findCheapestRoomsMetrics;
+    private final OperationMetrics quoteStayMetrics;
+    private final OperationMetrics findRoomsByStayPriceMetrics;
+    private final OperationMetrics findAvailableWindowsMetrics;
 
     /**
      * Constructor
@@ -28,16 +48,43 @@ public final class HotelResource {
     public HotelResource(CustomerService customerService, ReservationService reservationService) {
         this.customerService = customerService;
         this.reservationService = reservationService;
+        HotelMetrics metrics = HotelMetrics.getInstance();
+        this.getCustomerMetrics = metrics.operation("HotelResource.getCustomer");
+        this.createACustomerMetrics = metrics.operation("HotelResource.createACustomer");
+        this.getRoomMetrics = metrics.operation("HotelResource.getRoom");
+        this.bookARoomMetrics = metrics.operation("HotelResource.bookARoom");
+        this.bookRoomsMetrics = metrics.operation("HotelResource.bookRooms");
+        this.cancelReservationMetrics = metrics.operation("HotelResource.cancelReservation");
+        this.changeReservationDatesMetrics = metrics.operation("HotelResource.changeReservationDates");
+        this.getCustomersReservationsMetrics = metrics.operation("HotelResource.getCustomersReservations");
+        this.findARoomMetrics = metrics.operation("HotelResource.findARoom");
+        this.findFilteredRoomsMetrics = metrics.operation("HotelResource.findARoom(filter)");
+        this.findCheapestRoomsMetrics = metrics.operation("HotelResource.findCheapestRooms");
+        this.quoteStayMetrics = metrics.operation("HotelResource.quoteStay");
+        this.findRoomsByStayPriceMetrics = metrics.operation("HotelResource.findRoomsByStayPrice");
+        this.findAvailableWindowsMetrics = metrics.operation("HotelResource.findAvailableWindows");
     }
 
     /**
      * Get customer with email
      *
      * @param email         string of email
-     * @return              customer object
+     * @return              customer object, or null if no customer has the email
      */
     public Customer getCustomer(String email) {
-        return customerService.getCustomer(email);
+        long start = getCustomerMetrics.start();
+        try {
+            Customer customer = customerService.getCustomer(email);
+            if (customer == null) {
+                getCustomerMetrics.notFound(start);
+            } else {
+                getCustomerMetrics.succeeded(start);
+            }
+            return customer;
+        } catch (RuntimeException ex) {
+            getCustomerMetrics.failed(start, ex);
+            throw ex;
+        }
     }
 
     /**
@@ -47,16 +94,36 @@ public final class HotelResource {
      * @param lastName      string of last name
      */
     public void createACustomer(String email, String firstName, String lastName) {
-        customerService.addCustomer(email, firstName, lastName);
+        long start = createACustomerMetrics.start();
+        try {
+            customerService.addCustomer(email, firstName, lastName);
+            createACustomerMetrics.succeeded(start);
+        } catch (RuntimeException ex) {
+            createACustomerMetrics.failed(start, ex);
+            throw ex;
+        }
     }
 
     /**
      * Get a room with room number
      * @param roomNumber            string of room number
      * @return                      IRoom with the room number
+     * @throws IllegalArgumentException if no room has the number
      */
     public IRoom getRoom(String roomNumber) {
-        return reservationService.getARoom(roomNumber);
+        long start = getRoomMetrics.start();
+        try {
+            IRoom room = reservationService.getARoom(roomNumber);
+            getRoomMetrics.succeeded(start);
+            return room;
+        } catch (IllegalArgumentException ex) {
+            // getARoom reports an unknown room number this way, never with null.
+            getRoomMetrics.notFound(start);
+            throw ex;
+        } catch (RuntimeException ex) {
+            getRoomMetrics.failed(start, ex);
+            throw ex;
+        }
     }
 
     /**
@@ -69,8 +136,115 @@ public final class HotelResource {
      * @return                      Reservation object
      */
     public Reservation bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate) {
-        Customer customer = getCustomer(customerEmail);
-        return reservationService.reserveARoom(customer, room, checkInDate, checkOutDate);
+        long start = bookARoomMetrics.start();
+        try {
+            Customer customer = customerOf(customerEmail);
+            Reservation reservation = reservationService.reserveARoom(customer, room, checkInDate, checkOutDate);
+            bookARoomMetrics.succeeded(start);
+            return reservation;
+        } catch (UnknownCustomerException ex) {
+            bookARoomMetrics.notFound(start);
+            throw ex;
+        } catch (RuntimeException ex) {
+            bookARoomMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * First get a customer with customer email. Then reserve all the rooms for the customer at once; if any
+     * of them is taken on those dates, none is reserved.
+     *
+     * @param customerEmail         string of customer email
+     * @param rooms                 rooms to reserve
+     * @param checkInDate           check-in date
+     * @param checkOutDate          check-out date
+     * @return                      list of reservations
+     */
+    public List<Reservation> bookRooms(String customerEmail, Collection<IRoom> rooms, Date checkInDate,
+                                       Date checkOutDate) {
+        long start = bookRoomsMetrics.start();
+        try {
+            Customer customer = customerOf(customerEmail);
+            List<Reservation> reservations = reservationService.reserveRooms(customer, rooms, checkInDate,
+                    checkOutDate);
+            bookRoomsMetrics.succeeded(start);
+            return reservations;
+        } catch (UnknownCustomerException ex) {
+            bookRoomsMetrics.notFound(start);
+            throw ex;
+        } catch (RuntimeException ex) {
+            bookRoomsMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * First get a customer with customer email. Then cancel their reservation of a room for the dates.
+     *
+     * @param customerEmail         string of customer email
+     * @param room                  reserved IRoom
+     * @param checkInDate           check-in date of the reservation
+     * @param checkOutDate          check-out date of the reservation
+     */
+    public void cancelReservation(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate) {
+        long start = cancelReservationMetrics.start();
+        try {
+            Customer customer = customerOf(customerEmail);
+            reservationService.cancelReservation(new Reservation(customer, room, checkInDate, checkOutDate));
+            cancelReservationMetrics.succeeded(start);
+        } catch (UnknownCustomerException ex) {
+            cancelReservationMetrics.notFound(start);
+            throw ex;
+        } catch (RuntimeException ex) {
+            cancelReservationMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * First get a customer with customer email. Then move their reservation of a room to new dates, keeping
+     * the old dates if the room is taken on any of the new nights.
+     *
+     * @param customerEmail         string of customer email
+     * @param room                  reserved IRoom
+     * @param checkInDate           check-in date of the reservation
+     * @param checkOutDate          check-out date of the reservation
+     * @param newCheckInDate        new check-in date
+     * @param newCheckOutDate       new check-out date
+     * @return                      Reservation object with the new dates
+     */
+    public Reservation changeReservationDates(String customerEmail, IRoom room, Date checkInDate,
+                                              Date checkOutDate, Date newCheckInDate, Date newCheckOutDate) {
+        long start = changeReservationDatesMetrics.start();
+        try {
+            Customer customer = customerOf(customerEmail);
+            Reservation reservation = reservationService.changeReservationDates(
+                    new Reservation(customer, room, checkInDate, checkOutDate), newCheckInDate, newCheckOutDate);
+            changeReservationDatesMetrics.succeeded(start);
+            return reservation;
+        } catch (UnknownCustomerException ex) {
+            changeReservationDatesMetrics.notFound(start);
+            throw ex;
+        } catch (RuntimeException ex) {
+            changeReservationDatesMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Looks up the customer an operation acts for. Operations count an unknown email as a not-found lookup.
+     *
+     * @param customerEmail         string of customer email
+     * @return                      the customer
+     * @throws UnknownCustomerException if no customer has the email
+     */
+    private Customer customerOf(String customerEmail) {
+        Customer customer = customerService.getCustomer(customerEmail);
+        if (customer == null) {
+            throw new UnknownCustomerException();
+        }
+        return customer;
     }
 
     /**
@@ -80,8 +254,20 @@ public final class HotelResource {
      * @return                      collection of reservations
      */
     public Collection<Reservation> getCustomersReservations(String customerEmail) {
-        Customer customer = getCustomer(customerEmail);
-        return reservationService.getCustomersReservation(customer);
+        long start = getCustomersReservationsMetrics.start();
+        try {
+            Customer customer = customerService.getCustomer(customerEmail);
+            Collection<Reservation> reservations = reservationService.getCustomersReservation(customer);
+            if (customer == null) {
+                getCustomersReservationsMetrics.notFound(start);
+            } else {
+                getCustomersReservationsMetrics.succeeded(start);
+            }
+            return reservations;
+        } catch (RuntimeException ex) {
+            getCustomersReservationsMetrics.failed(start, ex);
+            throw ex;
+        }
     }
 
     /**
@@ -93,6 +279,146 @@ public final class HotelResource {
      */
 
     public Collection<IRoom> findARoom(Date checkIn, Date checkOut) {
-        return reservationService.findRooms(checkIn, checkOut);
+        long start = findARoomMetrics.start();
+        try {
+            Collection<IRoom> rooms = reservationService.findRooms(checkIn, checkOut);
+            findARoomMetrics.succeeded(start);
+            return rooms;
+        } catch (RuntimeException ex) {
+            findARoomMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the rooms available during the check-in and check-out time that are of a type, in a price range
+     * or free, e.g. RoomFilter.all().ofType(RoomType.DOUBLE).priceBetween(0, 150)
+     *
+     * @param checkIn           check-in date
+     * @param checkOut          check-out date
+     * @param filter            room type, free flag and price range the rooms must have
+     * @return                  collection of available rooms that pass the filter
+     */
+    public Collection<IRoom> findARoom(Date checkIn, Date checkOut, RoomFilter filter) {
+        long start = findFilteredRoomsMetrics.start();
+        try {
+            Collection<IRoom> rooms = reservationService.findRooms(checkIn, checkOut, filter);
+            findFilteredRoomsMetrics.succeeded(start);
+            return rooms;
+        } catch (RuntimeException ex) {
+            findFilteredRoomsMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the cheapest rooms available during the check-in and check-out time
+     *
+     * @param checkIn           check-in date
+     * @param checkOut          check-out date
+     * @param filter            room type, free flag and price range the rooms must have
+     * @param count             largest number of rooms to return
+     * @return                  list of up to count available rooms, cheapest first
+     */
+    public List<IRoom> findCheapestRooms(Date checkIn, Date checkOut, RoomFilter filter, int count) {
+        long start = findCheapestRoomsMetrics.start();
+        try {
+            List<IRoom> rooms = reservationService.findCheapestRooms(checkIn, checkOut, filter, count);
+            findCheapestRoomsMetrics.succeeded(start);
+            return rooms;
+        } catch (RuntimeException ex) {
+            findCheapestRoomsMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the total price of a stay in a room, each night at its own rate
+     *
+     * @param room              IRoom
+     * @param checkIn           check-in date
+     * @param checkOut          check-out date
+     * @return                  quote of the stay
+     */
+    public StayQuote quoteStay(IRoom room, Date checkIn, Date checkOut) {
+        long start = quoteStayMetrics.start();
+        try {
+            StayQuote quote = reservationService.quoteStay(room, checkIn, checkOut);
+            quoteStayMetrics.succeeded(start);
+            return quote;
+        } catch (RuntimeException ex) {
+            quoteStayMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the rooms available during the check-in and check-out time with the total price of the stay in
+     * each, cheapest stay first
+     *
+     * @param checkIn           check-in date
+     * @param checkOut          check-out date
+     * @param filter            room type, free flag and price range the rooms must have
+     * @param count             largest number of rooms to return
+     * @return                  list of up to count quotes, cheapest first
+     */
+    public List<StayQuote> findRoomsByStayPrice(Date checkIn, Date checkOut, RoomFilter filter, int count) {
+        long start = findRoomsByStayPriceMetrics.start();
+        try {
+            List<StayQuote> quotes = reservationService.findRoomsByStayPrice(checkIn, checkOut, filter, count);
+            findRoomsByStayPriceMetrics.succeeded(start);
+            return quotes;
+        } catch (RuntimeException ex) {
+            findRoomsByStayPriceMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the rooms available during the check-in and check-out time as a lazy stream, cheapest first, for
+     * callers that stop once they have seen enough rooms
+     *
+     * @param checkIn           check-in date
+     * @param checkOut          check-out date
+     * @param filter            room type, free flag and price range the rooms must have
+     * @return                  stream of available rooms
+     */
+    public Stream<IRoom> streamRoomsByPrice(Date checkIn, Date checkOut, RoomFilter filter) {
+        return reservationService.streamRoomsByPrice(checkIn, checkOut, filter);
+    }
+
+    /**
+     * Get the check-in dates in a range on which a stay of the given length can be booked, with the rooms
+     * free for the whole stay
+     *
+     * @param earliestCheckIn       first check-in date to consider
+     * @param latestCheckIn         last check-in date to consider
+     * @param nights                length of the stay in nights
+     * @param maxWindows            number of earliest windows to return, or 0 for all of them
+     * @return                      list of windows with free rooms, earliest first
+     */
+    public List<AvailableWindow> findAvailableWindows(Date earliestCheckIn, Date latestCheckIn, int nights,
+                                                      int maxWindows) {
+        long start = findAvailableWindowsMetrics.start();
+        try {
+            List<AvailableWindow> windows = reservationService.findAvailableWindows(earliestCheckIn,
+                    latestCheckIn, nights, maxWindows);
+            findAvailableWindowsMetrics.succeeded(start);
+            return windows;
+        } catch (RuntimeException ex) {
+            findAvailableWindowsMetrics.failed(start, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * No customer is registered with the email an operation was given
+     */
+    private static final class UnknownCustomerException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        UnknownCustomerException() {
+            super("There is no customer registered with this email.");
+        }
     }
 }
@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Runs ServiceBenchmarks for every combination of data sizes, each in a fresh JVM, prints a table, and can save
+ * the results as a baseline or compare them with one.
+ *
+ * Usage: java benchmark.BenchmarkRunner [--rooms 1000,10000] [--reservations 100000] [--customers 10000]
+ *        [--filter regex] [--save results.tsv] [--baseline results.tsv] [--threshold 0.10]
+ * The exit code is 1 when any benchmark is slower than its baseline by more than the threshold.
+ * System properties starting with "bench." are passed on to the forked JVMs.
+ *
+ * @author rachellai
+ */
+public final class BenchmarkRunner {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        List<String> results = new ArrayList<>();
+        for (String rooms: options.getOrDefault("rooms", "1000,10000").split(",")) {
+            for (String reservations: options.getOrDefault("reservations", "100000").split(",")) {
+                for (String customers: options.getOrDefault("customers", "10000").split(",")) {
+                    results.addAll(fork(rooms, reservations, customers, options.getOrDefault("filter", ".*")));
+                }
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%-45s %8s %12s %10s %14s%n", "Benchmark", "Rooms", "Reservations",
+                "Customers", "ns/op");
+        for (String result: results) {
+            String[] fields = result.split("\t");
+            System.out.printf(Locale.ROOT, "%-45s %8s %12s %10s %14s%n", fields[0], fields[1], fields[2],
+                    fields[3], fields[4] + " +- " + fields[5]);
+        }
+        if (options.containsKey("save")) {
+            Files.write(Path.of(options.get("save")), results, StandardCharsets.UTF_8);
+        }
+        if (options.containsKey("baseline")) {
+            double threshold = Double.parseDouble(options.getOrDefault("threshold", "0.10"));
+            if (compare(results, Files.readAllLines(Path.of(options.get("baseline"))), threshold)) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Prints the change against the baseline for every benchmark found in both
+     *
+     * @return          true if any benchmark regressed by more than the threshold
+     */
+    private static boolean compare(List<String> results, List<String> baseline, double threshold) {
+        Map<String, Double> baselineNanos = new HashMap<>();
+        for (String line: baseline) {
+            String[] fields = line.split("\t");
+            if (fields.length >= 5) {
+                baselineNanos.put(key(fields), Double.parseDouble(fields[4]));
+            }
+        }
+        boolean regressed = false;
+        System.out.println();
+        for (String result: results) {
+            String[] fields = result.split("\t");
+            Double before = baselineNanos.get(key(fields));
+            if (before == null) {
+                continue;
+            }
+            double change = Double.parseDouble(fields[4]) / before - 1;
+            boolean isRegression = change > threshold;
+            regressed |= isRegression;
+            System.out.printf(Locale.ROOT, "%-45s %8s %12s %10s %+8.1f%%%s%n", fields[0], fields[1], fields[2],
+                    fields[3], change * 100, isRegression ? "  REGRESSION" : "");
+        }
+        return regressed;
+    }
+
+    private static String key(String[] fields) {
+        return fields[0] + "/" + fields[1] + "/" + fields[2] + "/" + fields[3];
+    }
+
+    private static List<String> fork(String rooms, String reservations, String customers, String filter)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String name: System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("bench.")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), ServiceBenchmarks.class.getName(),
+                rooms, reservations, customers, filter));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        List<String> results = new ArrayList<>();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("RESULT\t")) {
+                    results.add(line.substring("RESULT\t".length()));
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IOException("Benchmark JVM failed for " + rooms + " rooms, " + reservations +
+                    " reservations, " + customers + " customers.");
+        }
+        return results;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (! args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option but got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
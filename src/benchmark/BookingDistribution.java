@@ -0,0 +1,62 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws stays the way guests book them: most check-ins are a few weeks out with a long tail up to a year,
+ * Friday and Saturday arrivals are more common, and most stays last one to four nights.
+ *
+ * @author rachellai
+ */
+final class BookingDistribution {
+    private static final double MEAN_LEAD_DAYS = 30;
+    private static final int MAX_LEAD_DAYS = 365;
+    private static final double STAY_CONTINUE_PROBABILITY = 0.55;
+    private static final int MAX_STAY_NIGHTS = 14;
+
+    private final SplittableRandom random;
+    private final int firstDay;
+
+    /**
+     * Constructor
+     *
+     * @param seed          random seed, so runs are reproducible
+     * @param firstDay      epoch day lead times are counted from
+     */
+    BookingDistribution(long seed, int firstDay) {
+        this.random = new SplittableRandom(seed);
+        this.firstDay = firstDay;
+    }
+
+    /**
+     * @return          check-in epoch day
+     */
+    int nextCheckInDay() {
+        int day;
+        do {
+            int lead = (int) Math.min(MAX_LEAD_DAYS, -MEAN_LEAD_DAYS * Math.log(1 - random.nextDouble()));
+            day = firstDay + lead;
+            // 1970-01-01 was a Thursday, so day % 7 is 1 on Fridays and 2 on Saturdays.
+        } while (Math.floorMod(day, 7) > 2 && random.nextInt(3) == 0);
+        return day;
+    }
+
+    /**
+     * @return          number of nights, between 1 and 14
+     */
+    int nextStayNights() {
+        int nights = 1;
+        while (nights < MAX_STAY_NIGHTS && random.nextDouble() < STAY_CONTINUE_PROBABILITY) {
+            nights++;
+        }
+        return nights;
+    }
+
+    /**
+     * @param bound     exclusive upper bound
+     * @return          uniformly drawn int in [0, bound)
+     */
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+}
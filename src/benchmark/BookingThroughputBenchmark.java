@@ -0,0 +1,132 @@
+package benchmark;
+
+import model.Customer;
+import model.IRoom;
+import model.ReservationFactory;
+import model.Room;
+import model.RoomType;
+import service.AvailabilityBackend;
+import service.EpochDays;
+import service.ReservationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures booking and search throughput of ReservationService with 1, 2, 4, ... threads up to the number of
+ * cores. Every thread books its own rooms, so the numbers show how well bookings for different rooms scale;
+ * then every thread searches random date ranges. Run with -Dhotel.partitions=N to measure the partitioned
+ * mode, and with -Dhotel.availability.cache=0 to make every search scan the rooms.
+ *
+ * Usage: java benchmark.BookingThroughputBenchmark [rooms] [bookingsPerThread] [searchesPerThread]
+ *
+ * @author rachellai
+ */
+public final class BookingThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int bookingsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int searchesPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        ReservationService reservationService = ReservationService.getInstance(new ReservationFactory(),
+                AvailabilityBackend.BITSET);
+        List<IRoom> rooms = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            IRoom room = new Room(String.valueOf(i), 100.0, RoomType.SINGLE);
+            reservationService.addRoom(room);
+            rooms.add(room);
+        }
+        Customer customer = new Customer("Bench", "Mark", "bench@mark.com");
+
+        // Each round starts on a fresh range of days so rounds never conflict with each other.
+        int firstDay = EpochDays.toEpochDay(new java.util.Date());
+        int daysPerRound = (int) ((long) bookingsPerThread * cores / roomCount) + 2;
+        int round = 0;
+        System.out.println("threads  bookings/s  speedup");
+        double singleThreaded = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            int roundFirstDay = firstDay + round++ * daysPerRound;
+            double throughput = run(reservationService, rooms, customer, threads, bookingsPerThread,
+                    roundFirstDay);
+            if (threads == 1) {
+                singleThreaded = throughput;
+            }
+            System.out.printf("%7d  %10.0f  %7.2f%n", threads, throughput, throughput / singleThreaded);
+        }
+
+        int lastDay = firstDay + round * daysPerRound;
+        System.out.println("threads  searches/s  speedup");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double throughput = search(reservationService, threads, searchesPerThread, firstDay, lastDay);
+            if (threads == 1) {
+                singleThreaded = throughput;
+            }
+            System.out.printf("%7d  %10.0f  %7.2f%n", threads, throughput, throughput / singleThreaded);
+        }
+    }
+
+    private static double search(ReservationService reservationService, int threads, int searchesPerThread,
+                                 int firstDay, int lastDay) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            long seed = thread;
+            results.add(executor.submit(() -> {
+                start.await();
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < searchesPerThread; i++) {
+                    int day = random.nextInt(firstDay, lastDay);
+                    reservationService.findRooms(EpochDays.toDate(day), EpochDays.toDate(day + 1 +
+                            random.nextInt(7)));
+                }
+                return null;
+            }));
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        executor.shutdown();
+        return (double) threads * searchesPerThread * 1_000_000_000L / elapsed;
+    }
+
+    private static double run(ReservationService reservationService, List<IRoom> rooms, Customer customer,
+                              int threads, int bookingsPerThread, int firstDay) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int threadIndex = thread;
+            results.add(executor.submit(() -> {
+                start.await();
+                // Thread t owns rooms t, t + threads, t + 2 * threads, ... and books one night at a time.
+                int ownRooms = (rooms.size() - threadIndex + threads - 1) / threads;
+                for (int i = 0; i < bookingsPerThread; i++) {
+                    IRoom room = rooms.get(threadIndex + (i % ownRooms) * threads);
+                    int day = firstDay + i / ownRooms;
+                    reservationService.reserveARoom(customer, room, EpochDays.toDate(day),
+                            EpochDays.toDate(day + 1));
+                }
+                return null;
+            }));
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        executor.shutdown();
+        return (double) threads * bookingsPerThread * 1_000_000_000L / elapsed;
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Minimal microbenchmark harness: timed warmup iterations followed by timed measurement iterations, reporting
+ * the mean time per operation and the spread across iterations. Iteration counts and lengths come from the
+ * bench.warmups, bench.iterations and bench.millis system properties.
+ *
+ * @author rachellai
+ */
+final class Harness {
+    private static final int WARMUPS = Integer.getInteger("bench.warmups", 5);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final long ITERATION_NANOS = Long.getLong("bench.millis", 500L) * 1_000_000L;
+    private static final int BATCH = 16;
+
+    /**
+     * Results are added here so the JIT can't drop the measured work
+     */
+    static volatile long sink;
+
+    private Harness() {
+    }
+
+    /**
+     * Runs an operation repeatedly and measures it
+     *
+     * @param operation         operation to measure; receives a running sequence number
+     * @return                  nanoseconds per operation of each measured iteration
+     */
+    static double[] measure(IntConsumer operation) {
+        int sequence = 0;
+        for (int i = 0; i < WARMUPS; i++) {
+            sequence = runFor(operation, sequence, null, i);
+        }
+        double[] nanosPerOperation = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            sequence = runFor(operation, sequence, nanosPerOperation, i);
+        }
+        return nanosPerOperation;
+    }
+
+    static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(Double.NaN);
+    }
+
+    static double standardDeviation(double[] values) {
+        double mean = mean(values);
+        double squares = 0;
+        for (double value: values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return values.length > 1 ? Math.sqrt(squares / (values.length - 1)) : 0;
+    }
+
+    private static int runFor(IntConsumer operation, int sequence, double[] results, int iteration) {
+        long start = System.nanoTime();
+        long elapsed;
+        long operations = 0;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                operation.accept(sequence++);
+            }
+            operations += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        if (results != null) {
+            results[iteration] = (double) elapsed / operations;
+        }
+        return sequence;
+    }
+}
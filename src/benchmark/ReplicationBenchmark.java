@@ -0,0 +1,172 @@
+package benchmark;
+
+import model.*;
+import persistence.FollowerStatus;
+import persistence.ReplicationFollower;
+import persistence.ReplicationLeader;
+import service.CustomerService;
+import service.EpochDays;
+import service.ReservationConflictException;
+import service.ReservationService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures replication lag with a leader in this JVM and followers in forked JVMs on the same machine. The
+ * leader is loaded with rooms and customers, the followers connect and load its snapshot, then bookings are
+ * made on the leader as fast as possible while the followers apply them. At the end every follower's lag is
+ * printed and its reservation count is checked against the leader's.
+ *
+ * Usage: java benchmark.ReplicationBenchmark [followers] [bookingsPerThread] [rooms]
+ *
+ * @author rachellai
+ */
+public final class ReplicationBenchmark {
+    private static final int BOOKING_THREADS = 2;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("follower")) {
+            runFollower(Integer.parseInt(args[1]));
+            return;
+        }
+        int followerCount = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int bookingsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int roomCount = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        CustomerService customerService = CustomerService.getInstance();
+        ReservationService reservationService = ReservationService.getInstance(new ReservationFactory());
+        List<IRoom> rooms = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(new Room(String.valueOf(100 + i), 50.0 + i % 450, RoomType.values()[i % 2]));
+        }
+        reservationService.addRooms(rooms);
+        for (int i = 0; i < BOOKING_THREADS; i++) {
+            customerService.addCustomer("guest" + i + "@hotel.com", "Guest", "Number" + i);
+        }
+
+        List<Process> followers = new ArrayList<>();
+        // Every booking may be queued at once, so a follower that falls behind during the burst is not dropped.
+        try (ReplicationLeader leader = ReplicationLeader.start(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BOOKING_THREADS * bookingsPerThread,
+                customerService, reservationService)) {
+            for (int i = 0; i < followerCount; i++) {
+                followers.add(fork(leader.getPort()));
+            }
+            while (leader.getFollowers().size() < followerCount || ! caughtUp(leader)) {
+                Thread.sleep(10);
+            }
+            System.err.println(followerCount + " followers loaded the snapshot; booking.");
+
+            long start = System.nanoTime();
+            int bookings = book(reservationService, customerService, rooms, bookingsPerThread);
+            long bookingNanos = System.nanoTime() - start;
+            while (! caughtUp(leader)) {
+                Thread.sleep(1);
+            }
+            long caughtUpNanos = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "%d bookings in %.0f ms (%.0f/s); followers caught up %.1f ms later%n",
+                    bookings, bookingNanos / 1e6, bookings * 1e9 / bookingNanos,
+                    (caughtUpNanos - bookingNanos) / 1e6);
+            for (FollowerStatus follower: leader.getFollowers()) {
+                System.out.println(follower);
+            }
+            if (leader.getDroppedFollowers() > 0) {
+                System.out.println(leader.getDroppedFollowers() + " followers dropped; last: " + leader.getLastError());
+            }
+        }
+
+        int expected = reservationService.getReservationCount();
+        for (Process follower: followers) {
+            String result = readResult(follower);
+            System.out.println("Follower reservations: " + result + (result.equals(String.valueOf(expected))
+                    ? " (matches the leader)" : " (leader has " + expected + ")"));
+        }
+    }
+
+    private static boolean caughtUp(ReplicationLeader leader) {
+        for (FollowerStatus follower: leader.getFollowers()) {
+            if (follower.getLagMessages() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int book(ReservationService reservationService, CustomerService customerService,
+                            List<IRoom> rooms, int bookingsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(BOOKING_THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        int firstDay = EpochDays.toEpochDay(new Date());
+        for (int thread = 0; thread < BOOKING_THREADS; thread++) {
+            Customer customer = customerService.getCustomer("guest" + thread + "@hotel.com");
+            long seed = thread;
+            results.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                int booked = 0;
+                for (int i = 0; i < bookingsPerThread; i++) {
+                    int day = firstDay + random.nextInt(365);
+                    try {
+                        reservationService.reserveARoom(customer, rooms.get(random.nextInt(rooms.size())),
+                                EpochDays.toDate(day), EpochDays.toDate(day + 1 + random.nextInt(3)));
+                        booked++;
+                    } catch (ReservationConflictException ex) {
+                        // Taken on those nights; the next booking draws another stay.
+                    }
+                }
+                return booked;
+            }));
+        }
+        int booked = 0;
+        for (Future<Integer> result: results) {
+            booked += result.get();
+        }
+        executor.shutdown();
+        return booked;
+    }
+
+    private static Process fork(int leaderPort) throws IOException {
+        List<String> command = List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), ReplicationBenchmark.class.getName(), "follower",
+                String.valueOf(leaderPort));
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private static String readResult(Process follower) throws IOException, InterruptedException {
+        String result = "none";
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(follower.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("RESULT\t")) {
+                    result = line.substring("RESULT\t".length());
+                }
+            }
+        }
+        follower.waitFor();
+        return result;
+    }
+
+    /**
+     * Follows the leader until it closes the connection, then prints the number of reservations applied
+     */
+    private static void runFollower(int leaderPort) throws Exception {
+        CustomerService customerService = CustomerService.getInstance();
+        ReservationService reservationService = ReservationService.getInstance(new ReservationFactory());
+        try (ReplicationFollower follower = ReplicationFollower.connect(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), leaderPort), customerService,
+                reservationService)) {
+            follower.awaitDisconnect();
+        }
+        System.out.println("RESULT\t" + reservationService.getReservationCount());
+    }
+}
@@ -0,0 +1,229 @@
+package benchmark;
+
+import api.AdminResource;
+import api.HotelResource;
+import metrics.HotelMetrics;
+import metrics.OperationMetrics;
+import model.*;
+import service.AvailabilityBackend;
+import service.CustomerService;
+import service.EpochDays;
+import service.RateCalendar;
+import service.ReservationService;
+import service.RoomFilter;
+
+import java.time.DayOfWeek;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of the service-layer hot paths on one generated data set. The services are singletons, so each
+ * data size runs in its own JVM; BenchmarkRunner forks one per size.
+ *
+ * Usage: java benchmark.ServiceBenchmarks rooms reservations customers [benchmark name regex]
+ * Each result is printed as a tab-separated RESULT line: name, rooms, reservations, customers, mean ns/op,
+ * standard deviation.
+ *
+ * @author rachellai
+ */
+public final class ServiceBenchmarks {
+    private static final int QUERIES = 1024;
+    private static final long SEED = 42;
+
+    private final int roomCount;
+    private final int reservationCount;
+    private final int customerCount;
+    private final CustomerService customerService;
+    private final ReservationService reservationService;
+    private final AdminResource adminResource;
+    private final HotelResource hotelResource;
+    private final List<IRoom> rooms = new ArrayList<>();
+    private final String[] customerEmails;
+    private final Date[] queryCheckIns = new Date[QUERIES];
+    private final Date[] queryCheckOuts = new Date[QUERIES];
+    private final int firstFreeDay;
+    private int reservationsMade;
+
+    private ServiceBenchmarks(int roomCount, int reservationCount, int customerCount) {
+        this.roomCount = roomCount;
+        this.reservationCount = reservationCount;
+        this.customerCount = customerCount;
+        this.customerService = CustomerService.getInstance();
+        this.reservationService = ReservationService.getInstance(new ReservationFactory(),
+                AvailabilityBackend.valueOf(System.getProperty("bench.backend", "INTERVAL")));
+        this.adminResource = new AdminResource(customerService, reservationService);
+        this.hotelResource = new HotelResource(customerService, reservationService);
+        this.customerEmails = new String[customerCount];
+        int today = EpochDays.toEpochDay(new Date());
+        // Bookings made by the reserveARoom benchmark start after every generated stay.
+        this.firstFreeDay = today + 400;
+        populate(today);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java benchmark.ServiceBenchmarks rooms reservations customers [regex]");
+            System.exit(2);
+        }
+        Pattern filter = Pattern.compile(args.length > 3 ? args[3] : ".*");
+        ServiceBenchmarks benchmarks = new ServiceBenchmarks(Integer.parseInt(args[0]),
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        benchmarks.runAll(filter);
+    }
+
+    private void populate(int today) {
+        BookingDistribution distribution = new BookingDistribution(SEED, today);
+        RoomType[] roomTypes = RoomType.values();
+        for (int i = 0; i < roomCount; i++) {
+            String roomNumber = String.valueOf(100 + i);
+            RoomType roomType = roomTypes[distribution.nextInt(roomTypes.length)];
+            IRoom room = distribution.nextInt(20) == 0 ? new FreeRoom(roomNumber, roomType)
+                    : new Room(roomNumber, 50.0 + distribution.nextInt(450), roomType);
+            reservationService.addRoom(room);
+            rooms.add(room);
+        }
+        for (int i = 0; i < customerCount; i++) {
+            customerEmails[i] = "guest" + i + "@hotel.com";
+            customerService.addCustomer(customerEmails[i], "Guest", "Number" + i);
+        }
+        long attempts = 0;
+        while (reservationsMade < reservationCount && attempts++ < 4L * reservationCount) {
+            int checkIn = distribution.nextCheckInDay();
+            int checkOut = checkIn + distribution.nextStayNights();
+            try {
+                reservationService.reserveARoom(
+                        customerService.getCustomer(customerEmails[distribution.nextInt(customerCount)]),
+                        rooms.get(distribution.nextInt(roomCount)), EpochDays.toDate(checkIn),
+                        EpochDays.toDate(checkOut));
+                reservationsMade++;
+            } catch (IllegalArgumentException ex) {
+                // The room is taken on those nights; draw another stay.
+            }
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            int checkIn = distribution.nextCheckInDay();
+            queryCheckIns[i] = EpochDays.toDate(checkIn);
+            queryCheckOuts[i] = EpochDays.toDate(checkIn + distribution.nextStayNights());
+        }
+    }
+
+    private void runAll(Pattern filter) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        // Read-only benchmarks first so the data set they see is the generated one.
+        run(filter, "ReservationService.findRooms", i -> Harness.sink +=
+                reservationService.findRooms(queryCheckIns[i & (QUERIES - 1)],
+                        queryCheckOuts[i & (QUERIES - 1)]).size());
+        // The same search through HotelResource, to show what the operation metrics add to a call.
+        run(filter, "HotelResource.findARoom", i -> Harness.sink +=
+                hotelResource.findARoom(queryCheckIns[i & (QUERIES - 1)],
+                        queryCheckOuts[i & (QUERIES - 1)]).size());
+        // A type and price band search, answered from the attribute bitmaps and, as callers used to do it, by
+        // filtering every available room.
+        RoomFilter doublesUpTo150 = RoomFilter.all().ofType(RoomType.DOUBLE).priceBetween(0, 150);
+        run(filter, "ReservationService.findRooms(filter)", i -> Harness.sink +=
+                reservationService.findRooms(queryCheckIns[i & (QUERIES - 1)],
+                        queryCheckOuts[i & (QUERIES - 1)], doublesUpTo150).size());
+        run(filter, "ReservationService.findRooms+filter", i -> Harness.sink +=
+                reservationService.findRooms(queryCheckIns[i & (QUERIES - 1)],
+                        queryCheckOuts[i & (QUERIES - 1)]).stream().filter(doublesUpTo150::matches).count());
+        // The ten cheapest available rooms, walked in price order and, for comparison, by sorting every one.
+        RoomFilter anyRoom = RoomFilter.all();
+        run(filter, "ReservationService.findCheapestRooms10", i -> Harness.sink +=
+                reservationService.findCheapestRooms(queryCheckIns[i & (QUERIES - 1)],
+                        queryCheckOuts[i & (QUERIES - 1)], anyRoom, 10).size());
+        run(filter, "ReservationService.findRooms+sort10", i -> Harness.sink +=
+                reservationService.findRooms(queryCheckIns[i & (QUERIES - 1)], queryCheckOuts[i & (QUERIES - 1)])
+                        .stream().sorted(Comparator.comparing(IRoom::getRoomPrice)).limit(10).count());
+        // Stays priced night by night with weekend and seasonal rates: one quote, and every available room
+        // ranked by the total price of the stay.
+        setRates();
+        IRoom quotedRoom = rooms.get(0);
+        run(filter, "ReservationService.quoteStay", i -> Harness.sink += (long) reservationService.quoteStay(
+                quotedRoom, queryCheckIns[i & (QUERIES - 1)], queryCheckOuts[i & (QUERIES - 1)]).getTotalPrice());
+        run(filter, "ReservationService.findRoomsByStayPrice10", i -> Harness.sink +=
+                reservationService.findRoomsByStayPrice(queryCheckIns[i & (QUERIES - 1)],
+                        queryCheckOuts[i & (QUERIES - 1)], anyRoom, 10).size());
+        // A year of occupancy and revenue over every generated booking, at the rates just set.
+        int today = EpochDays.toEpochDay(new Date());
+        Date yearStart = EpochDays.toDate(today);
+        Date yearEnd = EpochDays.toDate(today + 365);
+        run(filter, "ReservationService.getOccupancyReport(year)", i -> Harness.sink +=
+                reservationService.getOccupancyReport(yearStart, yearEnd).getStays());
+        OperationMetrics metrics = HotelMetrics.getInstance().operation("ServiceBenchmarks.record");
+        run(filter, "OperationMetrics.succeeded", i -> metrics.succeeded(metrics.start()));
+        run(filter, "ReservationService.getCustomersReservation", i -> Harness.sink +=
+                reservationService.getCustomersReservation(customerService.getCustomer(
+                        customerEmails[random.nextInt(customerCount)])).size());
+        run(filter, "CustomerService.getCustomer", i -> Harness.sink +=
+                customerService.getCustomer(customerEmails[random.nextInt(customerCount)]).hashCode());
+        run(filter, "AdminResource.getAllRooms", i -> Harness.sink += adminResource.getAllRooms().size());
+        run(filter, "ReservationService.reserveARoom", i -> {
+            int day = firstFreeDay + i / roomCount;
+            Harness.sink += reservationService.reserveARoom(
+                    customerService.getCustomer(customerEmails[i % customerCount]), rooms.get(i % roomCount),
+                    EpochDays.toDate(day), EpochDays.toDate(day + 1)).hashCode();
+        });
+        // Groups of 50 rooms, booked night after night past the single bookings above.
+        int groupSize = Math.min(50, roomCount);
+        int groupFirstDay = firstFreeDay + 1_000;
+        run(filter, "ReservationService.reserveRooms50", i -> {
+            int firstRoom = (i * groupSize) % roomCount;
+            int day = groupFirstDay + (int) ((long) i * groupSize / roomCount);
+            List<IRoom> group = new ArrayList<>(groupSize);
+            for (int r = 0; r < groupSize; r++) {
+                group.add(rooms.get((firstRoom + r) % roomCount));
+            }
+            Harness.sink += reservationService.reserveRooms(
+                    customerService.getCustomer(customerEmails[i % customerCount]), group,
+                    EpochDays.toDate(day), EpochDays.toDate(day + 1)).size();
+        });
+        // Stays of their own, before every other booking, moved a night back and forth, and cancelled and made
+        // again.
+        if (filter.matcher("ReservationService.changeReservationDates").find()
+                || filter.matcher("ReservationService.cancel+reserve").find()) {
+            int movingDay = today - 1_000;
+            Reservation[] moving = new Reservation[Math.min(roomCount, 1024)];
+            for (int r = 0; r < moving.length; r++) {
+                moving[r] = reservationService.reserveARoom(customerService.getCustomer(customerEmails[0]),
+                        rooms.get(r), EpochDays.toDate(movingDay), EpochDays.toDate(movingDay + 2));
+            }
+            run(filter, "ReservationService.changeReservationDates", i -> {
+                int r = i % moving.length;
+                int checkIn = EpochDays.toEpochDay(moving[r].getCheckInDate()) == movingDay ? movingDay + 1
+                        : movingDay;
+                moving[r] = reservationService.changeReservationDates(moving[r], EpochDays.toDate(checkIn),
+                        EpochDays.toDate(checkIn + 2));
+            });
+            run(filter, "ReservationService.cancel+reserve", i -> {
+                int r = i % moving.length;
+                reservationService.cancelReservation(moving[r]);
+                moving[r] = reservationService.reserveARoom(moving[r].getCustomer(), moving[r].getRoom(),
+                        moving[r].getCheckInDate(), moving[r].getCheckOutDate());
+            });
+        }
+        run(filter, "CustomerService.addCustomer", i ->
+                customerService.addCustomer("new" + i + "@bench.com", "New", "Guest"));
+    }
+
+    private void setRates() {
+        int today = EpochDays.toEpochDay(new Date());
+        RateCalendar rateCalendar = reservationService.getRateCalendar();
+        for (RoomType roomType: RoomType.values()) {
+            rateCalendar.setRate(roomType, EpochDays.toDate(today), EpochDays.toDate(today + 730),
+                    EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY), 1.3);
+            rateCalendar.setRate(roomType, EpochDays.toDate(today + 150), EpochDays.toDate(today + 240), 1.5);
+        }
+    }
+
+    private void run(Pattern filter, String name, IntConsumer operation) {
+        if (! filter.matcher(name).find()) {
+            return;
+        }
+        System.err.println("Running " + name + " (" + roomCount + " rooms, " + reservationsMade +
+                " reservations, " + customerCount + " customers)");
+        double[] nanosPerOperation = Harness.measure(operation);
+        System.out.printf(Locale.ROOT, "RESULT\t%s\t%d\t%d\t%d\t%.1f\t%.1f%n", name, roomCount, reservationCount,
+                customerCount, Harness.mean(nanosPerOperation), Harness.standardDeviation(nanosPerOperation));
+    }
+}
@@ -0,0 +1,117 @@
+package benchmark;
+
+import validation.InputValidator;
+
+import java.lang.management.ManagementFactory;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Compares InputValidator with the way input used to be checked: a regular expression compiled on every call for
+ * emails, a shared SimpleDateFormat parsing each date twice, and Double.parseDouble with a caught exception for
+ * prices. Each case runs on valid and invalid input, and reports the time and the bytes allocated per operation,
+ * the garbage every request leaves for the collector.
+ *
+ * Usage: java benchmark.ValidationBenchmark
+ *
+ * @author rachellai
+ */
+public final class ValidationBenchmark {
+    private static final int ALLOCATION_OPERATIONS = 200_000;
+    private static final String[] VALID_EMAILS = {"guest@hotel.com", "j.smith@mail.example.org", "a@b.io"};
+    private static final String[] INVALID_EMAILS = {"guest.hotel.com", "guest@hotel", "@hotel.com"};
+    private static final String[] VALID_DATES = {"01/15/2030", "12/31/2029", "02/29/2028"};
+    private static final String[] INVALID_DATES = {"02/30/2030", "13/01/2030", "2030-01-15"};
+    private static final String[] VALID_PRICES = {"120", "99.5", "149.99"};
+    private static final String[] INVALID_PRICES = {"12O", "ninety", "-"};
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        DateFormat simpleDateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        System.out.printf(Locale.ROOT, "%-28s %12s %12s %14s %14s%n", "Case", "before ns/op", "after ns/op",
+                "before B/op", "after B/op");
+        compare("email, valid", i -> Harness.sink += legacyIsValidEmail(pick(VALID_EMAILS, i)) ? 1 : 0,
+                i -> Harness.sink += InputValidator.isValidEmail(pick(VALID_EMAILS, i)) ? 1 : 0);
+        compare("email, invalid", i -> Harness.sink += legacyIsValidEmail(pick(INVALID_EMAILS, i)) ? 1 : 0,
+                i -> Harness.sink += InputValidator.isValidEmail(pick(INVALID_EMAILS, i)) ? 1 : 0);
+        compare("date, valid", i -> Harness.sink += legacyParseDate(simpleDateFormat, pick(VALID_DATES, i)),
+                i -> Harness.sink += InputValidator.parseDate(pick(VALID_DATES, i)));
+        compare("date, invalid", i -> Harness.sink += legacyParseDate(simpleDateFormat, pick(INVALID_DATES, i)),
+                i -> Harness.sink += InputValidator.parseDate(pick(INVALID_DATES, i)));
+        compare("price, valid", i -> Harness.sink += (long) legacyParsePrice(pick(VALID_PRICES, i)),
+                i -> Harness.sink += (long) InputValidator.parsePrice(pick(VALID_PRICES, i)));
+        compare("price, invalid", i -> Harness.sink += Double.isNaN(legacyParsePrice(pick(INVALID_PRICES, i)))
+                ? 1 : 0, i -> Harness.sink += Double.isNaN(InputValidator.parsePrice(pick(INVALID_PRICES, i)))
+                ? 1 : 0);
+    }
+
+    private static void compare(String name, IntConsumer before, IntConsumer after) {
+        double beforeNanos = Harness.mean(Harness.measure(before));
+        double afterNanos = Harness.mean(Harness.measure(after));
+        System.out.printf(Locale.ROOT, "%-28s %12.1f %12.1f %14.1f %14.1f%n", name, beforeNanos, afterNanos,
+                bytesPerOperation(before), bytesPerOperation(after));
+    }
+
+    /**
+     * Bytes allocated by this thread per operation, after the measurement has warmed the operation up
+     */
+    private static double bytesPerOperation(IntConsumer operation) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ALLOCATION_OPERATIONS; i++) {
+            operation.accept(i);
+        }
+        return (double) (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / ALLOCATION_OPERATIONS;
+    }
+
+    private static String pick(String[] inputs, int sequence) {
+        return inputs[sequence % inputs.length];
+    }
+
+    /**
+     * The email check Customer and MainMenu used to make
+     */
+    private static boolean legacyIsValidEmail(String email) {
+        Pattern emailPattern = Pattern.compile("^(.+)@(.+)[.](.+)$");
+        return emailPattern.matcher(email).matches();
+    }
+
+    /**
+     * The date check MainMenu used to make: validate by parsing, building the error message on failure, then
+     * parse again
+     */
+    private static long legacyParseDate(DateFormat simpleDateFormat, String input) {
+        simpleDateFormat.setLenient(false);
+        try {
+            simpleDateFormat.parse(input);
+        } catch (ParseException ex) {
+            return ex.getLocalizedMessage().length();
+        }
+        try {
+            simpleDateFormat.setLenient(false);
+            Date date = simpleDateFormat.parse(input);
+            return date.getTime();
+        } catch (ParseException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * The price check AdminMenu used to make: parse to validate, then parse again
+     */
+    private static double legacyParsePrice(String input) {
+        try {
+            Double.parseDouble(input);
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(input);
+    }
+}
@@ -0,0 +1,101 @@
+package feed;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+
+/**
+ * ChangeEvent is one slot of the change feed's ring buffer. Slots are allocated once and reused, so a
+ * subscriber may read an event only while it is being delivered and must copy whatever it keeps.
+ *
+ * @author rachellai
+ */
+public final class ChangeEvent {
+
+    /**
+     * Kind of change an event describes
+     */
+    public enum Type {
+        CUSTOMER_ADDED,
+        ROOM_ADDED,
+        RESERVATION_ADDED,
+        RESERVATION_CANCELLED,
+        RESERVATION_CHANGED
+    }
+
+    private long sequence;
+    private Type type;
+    private Customer customer;
+    private IRoom room;
+    private Reservation reservation;
+    private Reservation previousReservation;
+
+    ChangeEvent() {
+    }
+
+    void set(long sequence, Type type, Customer customer, IRoom room, Reservation reservation,
+             Reservation previousReservation) {
+        this.sequence = sequence;
+        this.type = type;
+        this.customer = customer;
+        this.room = room;
+        this.reservation = reservation;
+        this.previousReservation = previousReservation;
+    }
+
+    /**
+     * @return          position of the event in the feed, counting from 0 when the feed was opened
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return          registered customer, or the customer of the reservation; null for a room
+     */
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    /**
+     * @return          added room, or the room of the reservation; null for a customer
+     */
+    public IRoom getRoom() {
+        return room;
+    }
+
+    /**
+     * @return          reservation that was made or cancelled, or the changed reservation with its new dates;
+     *                  null for a customer or a room
+     */
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    /**
+     * @return          changed reservation with its old dates, or null for any other event
+     */
+    public Reservation getPreviousReservation() {
+        return previousReservation;
+    }
+
+    /**
+     *
+     * @return          String of sequence, type and subject of the event
+     */
+    @Override
+    public String toString() {
+        Object subject = switch (type) {
+            case CUSTOMER_ADDED -> customer;
+            case ROOM_ADDED -> room;
+            case RESERVATION_ADDED, RESERVATION_CANCELLED -> reservation;
+            case RESERVATION_CHANGED -> previousReservation + System.lineSeparator() + "Moved to: " +
+                    reservation.getCheckInDate() + " - " + reservation.getCheckOutDate() + ".";
+        };
+        return "#" + sequence + " " + type + ": " + subject;
+    }
+}
@@ -0,0 +1,298 @@
+package feed;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import service.CustomerService;
+import service.MutationListener;
+import service.ReservationService;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChangeFeed publishes every customer registration, room addition, booking, cancellation and date change made
+ * through the services to any number of in-process subscribers, e.g. housekeeping, billing or analytics.
+ *
+ * Events go through a ring buffer of pre-allocated slots. A booking thread claims a slot with one atomic
+ * increment, fills it and marks it published; it never takes a lock and never waits for a subscriber unless
+ * the ring is full. Each subscriber has its own thread that delivers all published events as one batch and
+ * then moves its position once. A slot is reused only after every subscriber has consumed it, so a subscriber
+ * that falls a whole ring behind slows bookings down instead of missing events (backpressure).
+ *
+ * Events are published while the service still holds the lock of the change, so the events of one room or
+ * customer come in the order the changes were applied; the rooms or reservations added together take
+ * consecutive sequences. A subscriber must therefore not make changes through the services itself: with the
+ * ring full, the producer it would wait for may hold the lock it needs.
+ *
+ * @author rachellai
+ */
+public final class ChangeFeed implements MutationListener, AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final ChangeEvent[] events;
+    private final AtomicLongArray publishedSequences;
+    private final int mask;
+    private final AtomicLong nextClaim = new AtomicLong();
+    private final AtomicLong gatingSequence = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder producerWaits = new LongAdder();
+    private final CustomerService customerService;
+    private final ReservationService reservationService;
+    private volatile boolean open = true;
+
+    private ChangeFeed(int minimumCapacity, CustomerService customerService,
+                       ReservationService reservationService) {
+        int capacity = Integer.highestOneBit(Math.max(2, minimumCapacity) - 1) << 1;
+        this.events = new ChangeEvent[capacity];
+        this.publishedSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new ChangeEvent();
+            publishedSequences.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.customerService = customerService;
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * Starts publishing the changes made through the services, with a ring of 65536 events
+     *
+     * @param customerService       CustomerService to publish registrations of
+     * @param reservationService    ReservationService to publish rooms and bookings of
+     * @return                      open feed without subscribers
+     */
+    public static ChangeFeed open(CustomerService customerService, ReservationService reservationService) {
+        return open(DEFAULT_CAPACITY, customerService, reservationService);
+    }
+
+    /**
+     * Starts publishing the changes made through the services
+     *
+     * @param capacity              minimum number of events in the ring, rounded up to a power of two
+     * @param customerService       CustomerService to publish registrations of
+     * @param reservationService    ReservationService to publish rooms and bookings of
+     * @return                      open feed without subscribers
+     */
+    public static ChangeFeed open(int capacity, CustomerService customerService,
+                                  ReservationService reservationService) {
+        ChangeFeed feed = new ChangeFeed(capacity, customerService, reservationService);
+        customerService.addListener(feed);
+        reservationService.addListener(feed);
+        return feed;
+    }
+
+    /**
+     * Starts a consumer thread that delivers every event published from now on
+     *
+     * @param name          name of the subscriber
+     * @param subscriber    ChangeSubscriber to deliver events to
+     * @return              subscription; close it to stop delivering
+     */
+    public synchronized Subscription subscribe(String name, ChangeSubscriber subscriber) {
+        if (! open) {
+            throw new IllegalStateException("Change feed is closed.");
+        }
+        long firstSequence = nextClaim.get();
+        Subscription subscription = new Subscription(this, name, subscriber, firstSequence);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * @return              subscriptions that are still delivering
+     */
+    public List<Subscription> getSubscriptions() {
+        return Collections.unmodifiableList(subscriptions);
+    }
+
+    /**
+     * @return              number of events claimed so far; all but the ones being filled are published
+     */
+    public long getPublished() {
+        return nextClaim.get();
+    }
+
+    /**
+     * @return              number of times a producer found the ring full and had to wait for subscribers
+     */
+    public long getProducerWaits() {
+        return producerWaits.sum();
+    }
+
+    /**
+     * @return              number of events the ring holds
+     */
+    public int getCapacity() {
+        return events.length;
+    }
+
+    @Override
+    public void customerAdded(Customer customer) {
+        long sequence = claim(1);
+        fill(sequence, ChangeEvent.Type.CUSTOMER_ADDED, customer, null, null, null);
+        wakeSubscribers();
+    }
+
+    @Override
+    public void roomAdded(IRoom room) {
+        long sequence = claim(1);
+        fill(sequence, ChangeEvent.Type.ROOM_ADDED, null, room, null, null);
+        wakeSubscribers();
+    }
+
+    /**
+     * Publishes rooms added together under consecutive sequences, a ring at a time
+     */
+    @Override
+    public void roomsAdded(List<IRoom> rooms) {
+        int published = 0;
+        while (published < rooms.size()) {
+            int count = Math.min(rooms.size() - published, events.length);
+            long first = claim(count);
+            for (int i = 0; i < count; i++) {
+                fill(first + i, ChangeEvent.Type.ROOM_ADDED, null, rooms.get(published + i), null, null);
+            }
+            published += count;
+            wakeSubscribers();
+        }
+    }
+
+    @Override
+    public void reservationAdded(Reservation reservation) {
+        long sequence = claim(1);
+        fill(sequence, ChangeEvent.Type.RESERVATION_ADDED, reservation.getCustomer(), reservation.getRoom(),
+                reservation, null);
+        wakeSubscribers();
+    }
+
+    /**
+     * Publishes the reservations of a group booking under consecutive sequences
+     */
+    @Override
+    public void reservationsAdded(List<Reservation> reservations) {
+        int published = 0;
+        while (published < reservations.size()) {
+            int count = Math.min(reservations.size() - published, events.length);
+            long first = claim(count);
+            for (int i = 0; i < count; i++) {
+                Reservation reservation = reservations.get(published + i);
+                fill(first + i, ChangeEvent.Type.RESERVATION_ADDED, reservation.getCustomer(),
+                        reservation.getRoom(), reservation, null);
+            }
+            published += count;
+            wakeSubscribers();
+        }
+    }
+
+    @Override
+    public void reservationCancelled(Reservation reservation) {
+        long sequence = claim(1);
+        fill(sequence, ChangeEvent.Type.RESERVATION_CANCELLED, reservation.getCustomer(), reservation.getRoom(),
+                reservation, null);
+        wakeSubscribers();
+    }
+
+    @Override
+    public void reservationChanged(Reservation previous, Reservation changed) {
+        long sequence = claim(1);
+        fill(sequence, ChangeEvent.Type.RESERVATION_CHANGED, changed.getCustomer(), changed.getRoom(), changed,
+                previous);
+        wakeSubscribers();
+    }
+
+    /**
+     * Stops publishing, delivers the events already published to every subscriber and stops their threads
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (! open) {
+                return;
+            }
+            open = false;
+        }
+        customerService.removeListener(this);
+        reservationService.removeListener(this);
+        for (Subscription subscription: subscriptions) {
+            subscription.stop(true);
+        }
+    }
+
+    void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Finds the last event of the run of published events starting at a sequence
+     *
+     * @param from          sequence of the first event to look at
+     * @return              sequence of the last published event of the run, or from - 1 if from is not published
+     */
+    long lastPublished(long from) {
+        long sequence = from;
+        long limit = from + events.length;
+        while (sequence < limit && publishedSequences.get((int) sequence & mask) == sequence) {
+            sequence++;
+        }
+        return sequence - 1;
+    }
+
+    ChangeEvent eventAt(long sequence) {
+        return events[(int) sequence & mask];
+    }
+
+    /**
+     * Claims consecutive slots, waiting while any of them still holds an event a subscriber has not consumed
+     *
+     * @param count         number of slots, at most the capacity
+     * @return              sequence of the first claimed slot
+     */
+    private long claim(int count) {
+        boolean waited = false;
+        while (true) {
+            long first = nextClaim.get();
+            long wrapPoint = first + count - events.length;
+            if (wrapPoint > gatingSequence.get()) {
+                long consumed = slowestPosition(first);
+                if (wrapPoint > consumed) {
+                    if (! waited) {
+                        producerWaits.increment();
+                        waited = true;
+                    }
+                    LockSupport.parkNanos(1_000);
+                    continue;
+                }
+                gatingSequence.set(consumed);
+            } else if (nextClaim.compareAndSet(first, first + count)) {
+                return first;
+            }
+        }
+    }
+
+    private long slowestPosition(long claimed) {
+        long slowest = claimed;
+        for (Subscription subscription: subscriptions) {
+            slowest = Math.min(slowest, subscription.getPosition());
+        }
+        return slowest;
+    }
+
+    private void fill(long sequence, ChangeEvent.Type type, Customer customer, IRoom room,
+                      Reservation reservation, Reservation previousReservation) {
+        int slot = (int) sequence & mask;
+        events[slot].set(sequence, type, customer, room, reservation, previousReservation);
+        publishedSequences.set(slot, sequence);
+    }
+
+    private void wakeSubscribers() {
+        for (Subscription subscription: subscriptions) {
+            subscription.wakeUp();
+        }
+    }
+}
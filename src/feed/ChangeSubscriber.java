@@ -0,0 +1,18 @@
+package feed;
+
+/**
+ * ChangeSubscriber consumes the change feed on its own thread. Events arrive in feed order, in batches of
+ * everything published since the previous batch; endOfBatch marks the last event of a batch, which is the
+ * moment to flush anything buffered.
+ *
+ * @author rachellai
+ */
+@FunctionalInterface
+public interface ChangeSubscriber {
+
+    /**
+     * @param event             event, valid only during the call
+     * @param endOfBatch        true if no further event is available right now
+     */
+    void onEvent(ChangeEvent event, boolean endOfBatch);
+}
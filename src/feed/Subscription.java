@@ -0,0 +1,157 @@
+package feed;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Subscription is one subscriber's consumer thread and position in the change feed. The position only moves
+ * once per batch, and the feed never overwrites an event that a subscription has not consumed yet.
+ *
+ * @author rachellai
+ */
+public final class Subscription implements AutoCloseable {
+    private static final int SPINS_BEFORE_PARKING = 64;
+    private static final long MAX_PARK_NANOS = 10_000_000;
+
+    private final ChangeFeed feed;
+    private final String name;
+    private final ChangeSubscriber subscriber;
+    private final AtomicLong nextSequence;
+    private final LongAdder failures = new LongAdder();
+    private volatile RuntimeException lastFailure;
+    private final Thread consumer;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+    private volatile boolean drain;
+
+    /**
+     * Constructor
+     *
+     * @param feed              feed to consume
+     * @param name              name of the subscriber, used for the thread name
+     * @param subscriber        ChangeSubscriber to deliver events to
+     * @param firstSequence     sequence of the first event to deliver
+     */
+    Subscription(ChangeFeed feed, String name, ChangeSubscriber subscriber, long firstSequence) {
+        this.feed = feed;
+        this.name = name;
+        this.subscriber = subscriber;
+        this.nextSequence = new AtomicLong(firstSequence);
+        this.consumer = new Thread(this::consumeLoop, "change-feed-" + name);
+        this.consumer.setDaemon(true);
+    }
+
+    void start() {
+        consumer.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return              sequence of the next event to deliver, i.e. the number of events consumed so far
+     */
+    public long getPosition() {
+        return nextSequence.get();
+    }
+
+    /**
+     * @return              events published but not consumed yet
+     */
+    public long getLag() {
+        return Math.max(0, feed.getPublished() - nextSequence.get());
+    }
+
+    /**
+     * @return              events on which the subscriber threw
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return              what the subscriber threw on the last event it failed on, or null if it never failed
+     */
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops delivering events after the current batch and releases the subscription's hold on the ring
+     */
+    @Override
+    public void close() {
+        stop(false);
+    }
+
+    /**
+     * @param drainFirst    deliver every event published so far before stopping
+     */
+    void stop(boolean drainFirst) {
+        drain = drainFirst;
+        running = false;
+        LockSupport.unpark(consumer);
+        if (Thread.currentThread() != consumer) {
+            try {
+                consumer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        feed.unsubscribe(this);
+    }
+
+    /**
+     * Wakes the consumer if it is parked waiting for events
+     */
+    void wakeUp() {
+        if (sleeping) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Delivers every contiguous published event as one batch, then publishes the new position. When nothing is
+     * published the thread spins briefly and then parks until a producer wakes it.
+     */
+    private void consumeLoop() {
+        long next = nextSequence.get();
+        int idleSpins = 0;
+        while (running || drain) {
+            long last = feed.lastPublished(next);
+            if (last < next) {
+                if (! running) {
+                    break;
+                }
+                if (idleSpins++ < SPINS_BEFORE_PARKING) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                sleeping = true;
+                if (feed.lastPublished(next) < next && running) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            idleSpins = 0;
+            for (long sequence = next; sequence <= last; sequence++) {
+                deliver(feed.eventAt(sequence), sequence == last);
+            }
+            next = last + 1;
+            nextSequence.set(next);
+        }
+    }
+
+    private void deliver(ChangeEvent event, boolean endOfBatch) {
+        try {
+            subscriber.onEvent(event, endOfBatch);
+        } catch (RuntimeException ex) {
+            // The event is skipped; the failure is left for the caller to read.
+            lastFailure = ex;
+            failures.increment();
+        }
+    }
+}
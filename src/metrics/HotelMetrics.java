@@ -0,0 +1,90 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HotelMetrics holds the metrics of every instrumented operation. Each operation is registered as an MBean
+ * named hotel:type=Operation,name=&lt;operation&gt; when it is first used, so JMX clients such as JConsole see
+ * it live.
+ *
+ * @author rachellai
+ */
+public final class HotelMetrics {
+    private static final String DOMAIN = "hotel";
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    private HotelMetrics() {
+    }
+
+    public static HotelMetrics getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the metrics of an operation, creating and registering them on first use
+     *
+     * @param name          operation name, e.g. HotelResource.findARoom
+     * @return              metrics shared by every caller using the name
+     */
+    public OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, HotelMetrics::register);
+    }
+
+    /**
+     * @return              metrics of every operation, sorted by name
+     */
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> sorted = new ArrayList<>(operations.values());
+        sorted.sort(Comparator.comparing(OperationMetrics::getName));
+        return sorted;
+    }
+
+    /**
+     * Clears the metrics of every operation
+     */
+    public void reset() {
+        for (OperationMetrics metrics: operations.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * @return              text table of every operation's counts and latencies in microseconds
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%-42s %10s %9s %9s %7s %10s %9s %9s %9s %9s %10s", "Operation", "Calls", "Conflicts",
+                "Not found", "Failed", "Calls/s", "Mean us", "p50 us", "p99 us", "p99.9 us", "Max us"));
+        for (OperationMetrics metrics: getOperations()) {
+            report.append(System.lineSeparator()).append(metrics);
+        }
+        return report.toString();
+    }
+
+    private static OperationMetrics register(String name) {
+        OperationMetrics metrics = new OperationMetrics(name);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Operation,name=" + ObjectName.quote(name));
+            if (! server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+            }
+        } catch (JMException ex) {
+            throw new IllegalStateException("Could not register the metrics of " + name, ex);
+        }
+        return metrics;
+    }
+
+    /**
+     * Creates the registry on first use of getInstance; class initialization publishes it safely.
+     */
+    private static final class InstanceHolder {
+        private static final HotelMetrics INSTANCE = new HotelMetrics();
+    }
+}
@@ -0,0 +1,171 @@
+package metrics;
+
+import service.ReservationConflictException;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OperationMetrics records the latency and outcome of every call of one operation. A call takes a start time
+ * and reports exactly one outcome with it:
+ *
+ * <pre>
+ *     long start = metrics.start();
+ *     try {
+ *         Result result = operation();
+ *         metrics.succeeded(start);
+ *         return result;
+ *     } catch (RuntimeException ex) {
+ *         metrics.failed(start, ex);
+ *         throw ex;
+ *     }
+ * </pre>
+ *
+ * @author rachellai
+ */
+public final class OperationMetrics implements OperationMetricsMBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long resetAt = System.nanoTime();
+
+    /**
+     * Constructor
+     *
+     * @param name          operation name, e.g. HotelResource.findARoom
+     */
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return              start time of a call to pass to its outcome
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @param start         start time of the call
+     */
+    public void succeeded(long start) {
+        latency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records a call that looked up a customer or room that does not exist
+     *
+     * @param start         start time of the call
+     */
+    public void notFound(long start) {
+        latency.record(System.nanoTime() - start);
+        notFound.increment();
+    }
+
+    /**
+     * Records a call that threw; booking conflicts are counted apart from other failures
+     *
+     * @param start         start time of the call
+     * @param ex            exception thrown by the call
+     */
+    public void failed(long start, Exception ex) {
+        latency.record(System.nanoTime() - start);
+        if (ex instanceof ReservationConflictException) {
+            conflicts.increment();
+        } else {
+            failures.increment();
+        }
+    }
+
+    /**
+     * @return              point-in-time copy of the latency histogram
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.snapshot().getCount();
+    }
+
+    @Override
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    @Override
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public double getThroughput() {
+        return throughput(latency.snapshot().getCount());
+    }
+
+    @Override
+    public double getMeanNanos() {
+        return latency.snapshot().getMean();
+    }
+
+    @Override
+    public long getMedianNanos() {
+        return latency.snapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long get99thPercentileNanos() {
+        return latency.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long get999thPercentileNanos() {
+        return latency.snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return latency.snapshot().getMax();
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        conflicts.reset();
+        notFound.reset();
+        failures.reset();
+        resetAt = System.nanoTime();
+    }
+
+    private double throughput(long count) {
+        double seconds = (System.nanoTime() - resetAt) / 1e9;
+        return seconds <= 0 ? 0 : count / seconds;
+    }
+
+    /**
+     *
+     * @return          String of one report line: name, counts, calls per second and latencies in microseconds
+     */
+    @Override
+    public String toString() {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        return String.format(Locale.ROOT, "%-42s %10d %9d %9d %7d %10.1f %9.1f %9.1f %9.1f %9.1f %10.1f", name,
+                snapshot.getCount(), conflicts.sum(), notFound.sum(), failures.sum(),
+                throughput(snapshot.getCount()), snapshot.getMean() / 1e3,
+                snapshot.getValueAtPercentile(50) / 1e3, snapshot.getValueAtPercentile(99) / 1e3,
+                snapshot.getValueAtPercentile(99.9) / 1e3, snapshot.getMax() / 1e3);
+    }
+}
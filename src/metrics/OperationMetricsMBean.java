@@ -0,0 +1,40 @@
+package metrics;
+
+/**
+ * Management interface of one operation's counters and latency percentiles, as seen in JMX clients. Latencies
+ * are in nanoseconds and cover every call since the last reset, whatever its outcome.
+ *
+ * @author rachellai
+ */
+public interface OperationMetricsMBean {
+
+    String getName();
+
+    long getCount();
+
+    long getConflicts();
+
+    long getNotFound();
+
+    long getFailures();
+
+    /**
+     * @return          calls per second since the last reset
+     */
+    double getThroughput();
+
+    double getMeanNanos();
+
+    long getMedianNanos();
+
+    long get99thPercentileNanos();
+
+    long get999thPercentileNanos();
+
+    long getMaxNanos();
+
+    /**
+     * Clears the counters and the latency histogram
+     */
+    void reset();
+}
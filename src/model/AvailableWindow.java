@@ -0,0 +1,48 @@
+package model;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * AvailableWindow is a stay of a given length and the rooms that are free for all of its nights.
+ *
+ * @author rachellai
+ */
+public class AvailableWindow {
+    private final Date checkInDate;
+    private final Date checkOutDate;
+    private final Collection<IRoom> rooms;
+
+    /**
+     * Constructor
+     *
+     * @param checkInDate       check-in date
+     * @param checkOutDate      check-out date
+     * @param rooms             rooms free from check-in to check-out
+     */
+    public AvailableWindow(Date checkInDate, Date checkOutDate, Collection<IRoom> rooms) {
+        this.checkInDate = checkInDate;
+        this.checkOutDate = checkOutDate;
+        this.rooms = rooms;
+    }
+
+    public Date getCheckInDate() {
+        return checkInDate;
+    }
+
+    public Date getCheckOutDate() {
+        return checkOutDate;
+    }
+
+    public Collection<IRoom> getRooms() {
+        return rooms;
+    }
+
+    /**
+     *
+     * @return          String of window dates and number of free rooms
+     */
+    @Override
+    public String toString() {
+        return "From " + checkInDate + " till " + checkOutDate + ": " + rooms.size() + " free rooms.";
+    }
+}
@@ -1,5 +1,6 @@
 package model;
-import java.util.regex.Pattern;
+import validation.InputValidator;
+
 public class Customer {
     private final String firstName;
     private final String lastName;
@@ -50,9 +51,7 @@ public class Customer {
      * @return          boolean that checks whether email is in right format
      */
     public boolean isValid(String email) {
-        final String emailRegex = "^(.+)@(.+)[.](.+)$";
-        Pattern emailPattern = Pattern.compile(emailRegex);
-        return emailPattern.matcher(email).matches();
+        return InputValidator.isValidEmail(email);
     }
 
     public boolean equals(Object o) {
@@ -63,4 +62,9 @@ public class Customer {
 
         return email.equals(customer.email);
     }
+
+    @Override
+    public int hashCode() {
+        return email.hashCode();
+    }
 }
@@ -1,5 +1,6 @@
 package model;
 import java.util.Date;
+import java.util.Objects;
 
 /**
  * Reservation is made by a customer at given dates.
@@ -7,10 +8,10 @@ import java.util.Date;
  * @author rachellai
  */
 public class Reservation {
-    private Customer customer;
-    private IRoom room;
-    private Date checkInDate;
-    private Date checkOutDate;
+    private final Customer customer;
+    private final IRoom room;
+    private final Date checkInDate;
+    private final Date checkOutDate;
 
     /**
      * Constructor
@@ -54,4 +55,25 @@ public class Reservation {
                 room + System.lineSeparator() +
                 "Dates: " + checkInDate + " - " + checkOutDate + ".";
     }
+
+    /**
+     * Two reservations are equal when the same customer booked the same room number for the same dates.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {return true;}
+        if (o == null || getClass() != o.getClass()) {return false;}
+
+        Reservation reservation = (Reservation) o;
+
+        return customer.equals(reservation.customer) &&
+                room.getRoomNumber().equals(reservation.room.getRoomNumber()) &&
+                checkInDate.equals(reservation.checkInDate) &&
+                checkOutDate.equals(reservation.checkOutDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(customer, room.getRoomNumber(), checkInDate, checkOutDate);
+    }
 }
@@ -0,0 +1,55 @@
+package model;
+import java.util.Date;
+
+/**
+ * StayQuote is the total price of a room for the nights of a stay, with each night at its own rate.
+ *
+ * @author rachellai
+ */
+public class StayQuote {
+    private final IRoom room;
+    private final Date checkInDate;
+    private final Date checkOutDate;
+    private final double totalPrice;
+
+    /**
+     * Constructor
+     *
+     * @param room              room quoted
+     * @param checkInDate       check-in date
+     * @param checkOutDate      check-out date
+     * @param totalPrice        price of every night from check-in to check-out
+     */
+    public StayQuote(IRoom room, Date checkInDate, Date checkOutDate, double totalPrice) {
+        this.room = room;
+        this.checkInDate = checkInDate;
+        this.checkOutDate = checkOutDate;
+        this.totalPrice = totalPrice;
+    }
+
+    public IRoom getRoom() {
+        return room;
+    }
+
+    public Date getCheckInDate() {
+        return checkInDate;
+    }
+
+    public Date getCheckOutDate() {
+        return checkOutDate;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    /**
+     *
+     * @return          String of the room and the total price of the stay
+     */
+    @Override
+    public String toString() {
+        return room + " From " + checkInDate + " till " + checkOutDate + ": " +
+                String.format("%.2f", totalPrice) + " in total.";
+    }
+}
@@ -0,0 +1,32 @@
+package persistence;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a framed record has a length out of range or a payload that fails its checksum.
+ *
+ * @author rachellai
+ */
+final class CorruptFrameException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long frameBytes;
+
+    /**
+     * Constructor
+     *
+     * @param message       description of the damage
+     * @param frameBytes    size of the frame as its header gives it, or -1 if the header is damaged
+     */
+    CorruptFrameException(String message, long frameBytes) {
+        super(message);
+        this.frameBytes = frameBytes;
+    }
+
+    /**
+     * @return              size of the frame as its header gives it, or -1 if the header is damaged
+     */
+    long getFrameBytes() {
+        return frameBytes;
+    }
+}
@@ -0,0 +1,60 @@
+package persistence;
+
+import metrics.LatencyHistogram;
+
+import java.util.Locale;
+
+/**
+ * FollowerStatus is a point-in-time view of one follower of a ReplicationLeader: how far behind it is in
+ * messages, and how long messages took from being sent to being applied and acknowledged.
+ *
+ * @author rachellai
+ */
+public final class FollowerStatus {
+    private final String address;
+    private final long acknowledgedSequence;
+    private final long lagMessages;
+    private final LatencyHistogram.Snapshot lag;
+
+    /**
+     * Constructor
+     *
+     * @param address                   remote address of the follower
+     * @param acknowledgedSequence      last message the follower applied
+     * @param lagMessages               messages sent or queued but not acknowledged
+     * @param lag                       replication lag of acknowledged messages, in nanoseconds
+     */
+    FollowerStatus(String address, long acknowledgedSequence, long lagMessages, LatencyHistogram.Snapshot lag) {
+        this.address = address;
+        this.acknowledgedSequence = acknowledgedSequence;
+        this.lagMessages = lagMessages;
+        this.lag = lag;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public long getAcknowledgedSequence() {
+        return acknowledgedSequence;
+    }
+
+    public long getLagMessages() {
+        return lagMessages;
+    }
+
+    public LatencyHistogram.Snapshot getLag() {
+        return lag;
+    }
+
+    /**
+     *
+     * @return          String of the follower's position and lag percentiles in milliseconds
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Follower %s: at message %d, %d behind, lag p50 %.2f ms, p99 %.2f ms, " +
+                "max %.2f ms", address, acknowledgedSequence, lagMessages, lag.getValueAtPercentile(50) / 1e6,
+                lag.getValueAtPercentile(99) / 1e6, lag.getMax() / 1e6);
+    }
+}
@@ -0,0 +1,468 @@
+package persistence;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomType;
+import service.CustomerService;
+import service.MutationListener;
+import service.ReservationService;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Journal is an append-only write-ahead log of customers, rooms and reservations added through the services, of
+ * reservations cancelled or moved to other dates, and of the nightly rates set for room types.
+ * The service tells the journal about a change before applying it, while it holds the lock of the change,
+ * and the journal returns only once the change's record is on disk. A change whose record can't be written is
+ * not applied, so no change is seen in memory that would be gone after a restart, and the records are in the
+ * order the changes were applied. Concurrent changes are written and flushed together by a single writer
+ * thread (group commit), so they share one fsync. Once a write fails, every later one fails too.
+ *
+ * The directory holds journal-N.log files and checkpoint-N.dat snapshots. A checkpoint N holds exactly the
+ * changes written to journals before N; on startup the newest checkpoint is mapped and the journals from N on
+ * are replayed. A torn record at the end of the newest journal is cut off; a damaged record anywhere else, or
+ * a record that can't be applied, is reported as corruption rather than skipped.
+ *
+ * @author rachellai
+ */
+public final class Journal implements MutationListener, AutoCloseable {
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX = ".dat";
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+
+    private final Path directory;
+    private final CustomerService customerService;
+    private final ReservationService reservationService;
+    private final int checkpointInterval;
+    private final BlockingQueue<PendingWrite> pendingWrites;
+    private final Thread writer;
+    private final ExecutorService checkpointer;
+    private final AtomicBoolean checkpointRunning;
+    private volatile boolean open;
+    private volatile IOException failure;
+    private FileChannel channel;
+    private int journalSequence;
+    private int recordsSinceCheckpoint;
+
+    private Journal(Path directory, CustomerService customerService, ReservationService reservationService,
+                    int checkpointInterval, int journalSequence) throws IOException {
+        this.directory = directory;
+        this.customerService = customerService;
+        this.reservationService = reservationService;
+        this.checkpointInterval = checkpointInterval;
+        this.pendingWrites = new LinkedBlockingQueue<>();
+        this.checkpointRunning = new AtomicBoolean();
+        this.journalSequence = journalSequence;
+        this.channel = openJournal(journalSequence);
+        this.open = true;
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Restores the services from the directory and starts journaling their changes
+     *
+     * @param directory             directory holding journals and checkpoints; created if missing
+     * @param customerService       CustomerService to restore and journal
+     * @param reservationService    ReservationService to restore and journal
+     * @return                      open journal
+     * @throws IOException          if the directory can't be read or written
+     */
+    public static Journal open(Path directory, CustomerService customerService,
+                               ReservationService reservationService) throws IOException {
+        return open(directory, customerService, reservationService, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Restores the services from the directory and starts journaling their changes
+     *
+     * @param directory             directory holding journals and checkpoints; created if missing
+     * @param customerService       CustomerService to restore and journal
+     * @param reservationService    ReservationService to restore and journal
+     * @param checkpointInterval    number of journaled records after which a checkpoint is taken
+     * @return                      open journal
+     * @throws IOException          if the directory can't be read or written
+     */
+    public static Journal open(Path directory, CustomerService customerService,
+                               ReservationService reservationService, int checkpointInterval) throws IOException {
+        Files.createDirectories(directory);
+        int checkpointSequence = latestSequence(directory, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+        if (checkpointSequence >= 0) {
+            Snapshot.load(directory.resolve(CHECKPOINT_PREFIX + checkpointSequence + CHECKPOINT_SUFFIX),
+                    customerService, reservationService);
+        }
+        int lastJournal = -1;
+        List<Integer> journals = sequences(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX);
+        for (int sequence: journals) {
+            Path journalFile = journalPath(directory, sequence);
+            if (sequence >= checkpointSequence) {
+                replay(journalFile, customerService, reservationService,
+                        sequence == journals.get(journals.size() - 1));
+            }
+            lastJournal = sequence;
+            if (Files.size(journalFile) == 0) {
+                Files.delete(journalFile);
+            }
+        }
+
+        Journal journal = new Journal(directory, customerService, reservationService, checkpointInterval,
+                Math.max(lastJournal, checkpointSequence) + 1);
+        journal.writer.start();
+        customerService.addListener(journal);
+        reservationService.addListener(journal);
+        return journal;
+    }
+
+    @Override
+    public void customerAdded(Customer customer) {
+        append(RecordCodec.customer(customer));
+    }
+
+    @Override
+    public void roomAdded(IRoom room) {
+        append(RecordCodec.room(room));
+    }
+
+    /**
+     * Writes the records of rooms added together as one write
+     */
+    @Override
+    public void roomsAdded(List<IRoom> rooms) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(rooms.size() * 32);
+        for (IRoom room: rooms) {
+            records.writeBytes(RecordCodec.room(room));
+        }
+        append(records.toByteArray());
+    }
+
+    @Override
+    public void reservationAdded(Reservation reservation) {
+        append(RecordCodec.reservation(reservation));
+    }
+
+    /**
+     * Writes the records of a group booking as one write, so they are flushed by the same fsync
+     */
+    @Override
+    public void reservationsAdded(List<Reservation> reservations) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(reservations.size() * 48);
+        for (Reservation reservation: reservations) {
+            records.writeBytes(RecordCodec.reservation(reservation));
+        }
+        append(records.toByteArray());
+    }
+
+    @Override
+    public void reservationCancelled(Reservation reservation) {
+        append(RecordCodec.cancellation(reservation));
+    }
+
+    @Override
+    public void reservationChanged(Reservation previous, Reservation changed) {
+        append(RecordCodec.dateChange(previous, changed));
+    }
+
+    @Override
+    public void ratesChanged(RoomType roomType, int firstDay, int[] nightlyRates) {
+        append(RecordCodec.rates(roomType, firstDay, nightlyRates));
+    }
+
+    /**
+     * Writes the current state of the services to a new checkpoint and deletes the journals it replaces.
+     * The writer switches to a new journal at the very point the checkpoint is cut, while no change is being
+     * made; changes made while the checkpoint is written go to the new journal and are not blocked.
+     *
+     * @throws IOException          if the checkpoint can't be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        // A null record asks the writer to switch journals.
+        PendingWrite marker = new PendingWrite(null);
+        Path temporary = directory.resolve(CHECKPOINT_PREFIX + "next.tmp");
+        Snapshot.write(temporary, customerService, reservationService, () -> enqueue(marker));
+        int sequence = await(marker);
+        Files.move(temporary, directory.resolve(CHECKPOINT_PREFIX + sequence + CHECKPOINT_SUFFIX),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (int older: sequences(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX)) {
+            if (older < sequence) {
+                Files.deleteIfExists(journalPath(directory, older));
+            }
+        }
+        for (int older: sequences(directory, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX)) {
+            if (older < sequence) {
+                Files.deleteIfExists(directory.resolve(CHECKPOINT_PREFIX + older + CHECKPOINT_SUFFIX));
+            }
+        }
+    }
+
+    /**
+     * Stops journaling, flushes pending records and closes the journal file
+     */
+    @Override
+    public void close() throws IOException {
+        if (! open) {
+            return;
+        }
+        customerService.removeListener(this);
+        reservationService.removeListener(this);
+        open = false;
+        try {
+            checkpointer.shutdown();
+            checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        PendingWrite abandoned;
+        while ((abandoned = pendingWrites.poll()) != null) {
+            abandoned.done.completeExceptionally(new IOException("Journal is closed."));
+        }
+        channel.close();
+    }
+
+    /**
+     * Queues a record and waits until it is on disk
+     *
+     * @throws UncheckedIOException if the record can't be written
+     */
+    private void append(byte[] record) {
+        if (! open) {
+            throw new IllegalStateException("Journal is closed.");
+        }
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException(failed);
+        }
+        PendingWrite write = new PendingWrite(record);
+        enqueue(write);
+        await(write);
+    }
+
+    private void enqueue(PendingWrite write) {
+        pendingWrites.add(write);
+    }
+
+    private int await(PendingWrite write) {
+        try {
+            return write.done.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Takes every write that is pending, writes the batch with one write call and one fsync, then wakes up all
+     * threads waiting for it.
+     */
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        while (open || ! pendingWrites.isEmpty()) {
+            try {
+                // Wake up now and then to notice close().
+                PendingWrite first = pendingWrites.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            pendingWrites.drainTo(batch);
+            int records = 0;
+            try {
+                IOException failed = failure;
+                if (failed != null) {
+                    throw failed;
+                }
+                buffer.clear();
+                for (PendingWrite write: batch) {
+                    if (write.record == null) {
+                        buffer = flush(buffer);
+                        channel.force(false);
+                        channel.close();
+                        journalSequence++;
+                        channel = openJournal(journalSequence);
+                        recordsSinceCheckpoint = 0;
+                        write.done.complete(journalSequence);
+                        continue;
+                    }
+                    if (buffer.remaining() < write.record.length) {
+                        buffer = flush(buffer);
+                        if (buffer.capacity() < write.record.length) {
+                            buffer = ByteBuffer.allocateDirect(write.record.length);
+                        }
+                    }
+                    buffer.put(write.record);
+                    records++;
+                }
+                flush(buffer);
+                channel.force(false);
+                for (PendingWrite write: batch) {
+                    write.done.complete(journalSequence);
+                }
+            } catch (IOException ex) {
+                failure = ex;
+                for (PendingWrite write: batch) {
+                    write.done.completeExceptionally(ex);
+                }
+            }
+            batch.clear();
+            recordsSinceCheckpoint += records;
+            if (recordsSinceCheckpoint >= checkpointInterval && open && checkpointRunning.compareAndSet(false, true)) {
+                recordsSinceCheckpoint = 0;
+                checkpointer.execute(this::checkpointInBackground);
+            }
+        }
+    }
+
+    private ByteBuffer flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void checkpointInBackground() {
+        try {
+            checkpoint();
+        } catch (IOException | UncheckedIOException ex) {
+            // The journals are kept until a checkpoint succeeds, so nothing is lost; the next interval retries.
+        } finally {
+            checkpointRunning.set(false);
+        }
+    }
+
+    private FileChannel openJournal(int sequence) throws IOException {
+        return FileChannel.open(journalPath(directory, sequence), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static Path journalPath(Path directory, int sequence) {
+        return directory.resolve(JOURNAL_PREFIX + sequence + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Applies every record of a journal. Only the newest journal can end in a record that was being written when
+     * the process stopped; such a torn record at its very end is cut off. Damage anywhere else means records
+     * after it would be lost or applied to a state that has diverged, so replay stops.
+     *
+     * @param newest                whether no later journal follows this one
+     * @throws IOException          if the file can't be read, is damaged other than at the end of the newest
+     *                              journal, or holds a record that can't be applied
+     */
+    private static void replay(Path file, CustomerService customerService, ReservationService reservationService,
+                               boolean newest) throws IOException {
+        long validBytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    payload = RecordCodec.readPayload(in);
+                } catch (EOFException | CorruptFrameException ex) {
+                    if (newest && isTornTail(file, validBytes, ex)) {
+                        break;
+                    }
+                    throw new IOException("Damaged record in " + file + " at byte " + validBytes + ": " +
+                            (ex instanceof EOFException ? "the file ends inside it." : ex.getMessage()), ex);
+                }
+                if (payload == null) {
+                    return;
+                }
+                RecordCodec.apply(payload, customerService, reservationService);
+                validBytes += RecordCodec.FRAME_HEADER_BYTES + payload.length;
+            }
+        }
+        try (FileChannel truncated = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            truncated.truncate(validBytes);
+        }
+    }
+
+    /**
+     * Tells whether a bad record is the torn end of a write: it runs to or past the end of the file, or
+     * everything from it on is zeros, as a file system leaves a file extended by a write that never landed
+     *
+     * @param position      start of the bad record
+     * @param damage        EOFException if the file ends inside the record, otherwise what is wrong with it
+     */
+    private static boolean isTornTail(Path file, long position, IOException damage) throws IOException {
+        if (damage instanceof EOFException) {
+            return true;
+        }
+        long frameBytes = ((CorruptFrameException) damage).getFrameBytes();
+        if (frameBytes > 0 && position + frameBytes >= Files.size(file)) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            channel.position(position);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() != 0) {
+                        return false;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        return true;
+    }
+
+    private static int latestSequence(Path directory, String prefix, String suffix) throws IOException {
+        List<Integer> sequences = sequences(directory, prefix, suffix);
+        return sequences.isEmpty() ? -1 : sequences.get(sequences.size() - 1);
+    }
+
+    /**
+     * @return          sorted sequence numbers of the files named prefix + number + suffix
+     */
+    private static List<Integer> sequences(Path directory, String prefix, String suffix) throws IOException {
+        List<Integer> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> {
+                        try {
+                            sequences.add(Integer.parseInt(name.substring(prefix.length(),
+                                    name.length() - suffix.length())));
+                        } catch (NumberFormatException ex) {
+                            // Not one of ours.
+                        }
+                    });
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    /**
+     * A record waiting to be written, or a request to switch journals when the record is null
+     */
+    private static final class PendingWrite {
+        private final byte[] record;
+        private final CompletableFuture<Integer> done = new CompletableFuture<>();
+
+        PendingWrite(byte[] record) {
+            this.record = record;
+        }
+    }
+}
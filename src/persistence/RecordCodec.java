@@ -0,0 +1,268 @@
+package persistence;
+
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import service.CustomerService;
+import service.EpochDays;
+import service.ReservationService;
+
+import java.io.*;
+import java.util.zip.CRC32;
+
+/**
+ * RecordCodec encodes customer, room and reservation records, the cancellations and date changes of
+ * reservations and the nightly rates of room types, for the journal and checkpoints, and applies them
+ * back to the services on replay. Every record is framed as [payload length][CRC32 of payload][payload] so a
+ * torn write at the end of a file, and damage anywhere else, is detected.
+ *
+ * @author rachellai
+ */
+final class RecordCodec {
+    static final byte CUSTOMER = 'C';
+    static final byte ROOM = 'R';
+    static final byte RESERVATION = 'B';
+    static final byte CANCELLATION = 'X';
+    static final byte DATE_CHANGE = 'M';
+    static final byte RATE = 'P';
+    static final int FRAME_HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 16;
+
+    private RecordCodec() {
+    }
+
+    static byte[] customer(Customer customer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CUSTOMER);
+            out.writeUTF(customer.getEmail());
+            out.writeUTF(customer.getFirstName());
+            out.writeUTF(customer.getLastName());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    static byte[] room(IRoom room) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ROOM);
+            out.writeUTF(room.getRoomNumber());
+            out.writeDouble(room.getRoomPrice());
+            out.writeByte(room.getRoomType().ordinal());
+            out.writeBoolean(room instanceof FreeRoom);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    static byte[] reservation(Reservation reservation) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RESERVATION);
+            writeReservation(out, reservation);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    static byte[] cancellation(Reservation reservation) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CANCELLATION);
+            writeReservation(out, reservation);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    static byte[] dateChange(Reservation previous, Reservation changed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(56);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DATE_CHANGE);
+            writeReservation(out, previous);
+            out.writeInt(EpochDays.toEpochDay(changed.getCheckInDate()));
+            out.writeInt(EpochDays.toEpochDay(changed.getCheckOutDate()));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    /**
+     * Encodes the whole calendar of a room type, so applying the record replaces it
+     */
+    static byte[] rates(RoomType roomType, int firstDay, int[] nightlyRates) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(10 + nightlyRates.length * 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RATE);
+            out.writeByte(roomType.ordinal());
+            out.writeInt(firstDay);
+            out.writeInt(nightlyRates.length);
+            for (int rate: nightlyRates) {
+                out.writeInt(rate);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    private static void writeReservation(DataOutputStream out, Reservation reservation) throws IOException {
+        out.writeUTF(reservation.getCustomer().getEmail());
+        out.writeUTF(reservation.getRoom().getRoomNumber());
+        out.writeInt(EpochDays.toEpochDay(reservation.getCheckInDate()));
+        out.writeInt(EpochDays.toEpochDay(reservation.getCheckOutDate()));
+    }
+
+    /**
+     * Reads the customer, room and dates of a reservation written by writeReservation
+     *
+     * @throws IllegalArgumentException if its customer or room isn't registered
+     */
+    private static Reservation readReservation(DataInputStream in, CustomerService customerService,
+                                               ReservationService reservationService) throws IOException {
+        Customer customer = customerService.getCustomer(in.readUTF());
+        IRoom room = reservationService.getARoom(in.readUTF());
+        int checkInDay = in.readInt();
+        int checkOutDay = in.readInt();
+        if (customer == null) {
+            throw new IllegalArgumentException("There is no customer registered with this email.");
+        }
+        return new Reservation(customer, room, EpochDays.toDate(checkInDay), EpochDays.toDate(checkOutDay));
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        byte[] framed = new byte[FRAME_HEADER_BYTES + payload.length];
+        writeInt(framed, 0, payload.length);
+        writeInt(framed, 4, (int) crc.getValue());
+        System.arraycopy(payload, 0, framed, FRAME_HEADER_BYTES, payload.length);
+        return framed;
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Reads the next framed record
+     *
+     * @param in            stream positioned at the start of a frame
+     * @return              payload of the record, or null if the stream ends before the frame starts
+     * @throws EOFException if the stream ends inside the frame, e.g. after a torn write
+     * @throws CorruptFrameException if the frame's length is out of range or its payload fails the checksum
+     * @throws IOException  if reading fails
+     */
+    static byte[] readPayload(DataInputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8
+                | in.readUnsignedByte();
+        int checksum = in.readInt();
+        if (length <= 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new CorruptFrameException("Record length " + length + " is out of range.", -1);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            throw new CorruptFrameException("Record of " + length + " bytes fails its checksum.",
+                    FRAME_HEADER_BYTES + length);
+        }
+        return payload;
+    }
+
+    /**
+     * Applies a record to the services. A record whose change the services already hold exactly, e.g. a customer
+     * or room that a checkpoint read after it was cut, is skipped; any other record that can't be applied means
+     * the journal or stream is corrupt, and replay stops instead of going on from a state that has diverged.
+     *
+     * @param payload               payload of a record
+     * @param customerService       CustomerService to apply customer records to
+     * @param reservationService    ReservationService to apply room and reservation records to
+     * @throws IOException          if the payload is malformed or can't be applied
+     */
+    static void apply(byte[] payload, CustomerService customerService, ReservationService reservationService)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        try {
+            switch (type) {
+                case CUSTOMER -> applyCustomer(in, customerService);
+                case ROOM -> applyRoom(in, reservationService);
+                case RESERVATION -> {
+                    Reservation reservation = readReservation(in, customerService, reservationService);
+                    if (! reservationService.hasReservation(reservation)) {
+                        reservationService.reserveARoom(reservation.getCustomer(), reservation.getRoom(),
+                                reservation.getCheckInDate(), reservation.getCheckOutDate());
+                    }
+                }
+                case CANCELLATION -> reservationService.cancelReservation(readReservation(in, customerService,
+                        reservationService));
+                case DATE_CHANGE -> {
+                    Reservation reservation = readReservation(in, customerService, reservationService);
+                    Reservation changed = new Reservation(reservation.getCustomer(), reservation.getRoom(),
+                            EpochDays.toDate(in.readInt()), EpochDays.toDate(in.readInt()));
+                    if (! reservationService.hasReservation(changed)) {
+                        reservationService.changeReservationDates(reservation, changed.getCheckInDate(),
+                                changed.getCheckOutDate());
+                    }
+                }
+                case RATE -> {
+                    RoomType roomType = RoomType.values()[in.readByte()];
+                    int firstDay = in.readInt();
+                    int[] nightlyRates = new int[in.readInt()];
+                    for (int i = 0; i < nightlyRates.length; i++) {
+                        nightlyRates[i] = in.readInt();
+                    }
+                    reservationService.getRateCalendar().restoreRates(roomType, firstDay, nightlyRates);
+                }
+                default -> throw new IOException("Unknown record type " + type);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt record of type " + (char) type + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static void applyCustomer(DataInputStream in, CustomerService customerService) throws IOException {
+        String email = in.readUTF();
+        String firstName = in.readUTF();
+        String lastName = in.readUTF();
+        Customer existing = customerService.getCustomer(email);
+        if (existing == null) {
+            customerService.addCustomer(email, firstName, lastName);
+        } else if (! existing.getFirstName().equals(firstName) || ! existing.getLastName().equals(lastName)) {
+            throw new IllegalArgumentException("Customer " + email + " is already registered with another name.");
+        }
+    }
+
+    private static void applyRoom(DataInputStream in, ReservationService reservationService) throws IOException {
+        String roomNumber = in.readUTF();
+        double price = in.readDouble();
+        RoomType roomType = RoomType.values()[in.readByte()];
+        boolean free = in.readBoolean();
+        IRoom existing = reservationService.getRooms().get(roomNumber);
+        if (existing == null) {
+            reservationService.addRoom(free ? new FreeRoom(roomNumber, roomType)
+                    : new Room(roomNumber, price, roomType));
+        } else if (Double.compare(existing.getRoomPrice(), price) != 0 || existing.getRoomType() != roomType
+                || (existing instanceof FreeRoom) != free) {
+            throw new IllegalArgumentException("Room " + roomNumber + " already exists with another price or type.");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package persistence;
+
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReplicationFollower keeps empty services in step with a ReplicationLeader in another process: it loads the
+ * leader's snapshot, then applies the leader's changes in order on one thread and acknowledges them. The
+ * follower's services must only be read; changes are made on the leader.
+ *
+ * A follower may serve reads only while it is fresh: connected, and having applied a message from the leader
+ * within the staleness bound. Since the leader sends a heartbeat every 50 ms, a follower that keeps up is never
+ * more than a few heartbeats stale.
+ *
+ * A message that is damaged or holds a record that can't be applied means the services no longer match the
+ * leader. The follower then disconnects without acknowledging the message and needs a resync: the services
+ * have to be loaded again from a new snapshot, in a fresh process since they can only be restored when empty.
+ *
+ * @author rachellai
+ */
+public final class ReplicationFollower implements AutoCloseable {
+    private static final long DEFAULT_MAX_STALENESS_MILLIS = 1_000;
+    private static final int ACKNOWLEDGE_EVERY = 512;
+
+    private final Socket socket;
+    private final CustomerService customerService;
+    private final ReservationService reservationService;
+    private final long maxStalenessNanos;
+    private final Thread applier;
+    private volatile long appliedSequence;
+    private volatile long lastAppliedNanos;
+    private volatile boolean connected = true;
+    private volatile boolean resyncNeeded;
+    private volatile IOException failure;
+
+    private ReplicationFollower(Socket socket, CustomerService customerService,
+                                ReservationService reservationService, long maxStalenessMillis) {
+        this.socket = socket;
+        this.customerService = customerService;
+        this.reservationService = reservationService;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+        this.applier = new Thread(this::applyLoop, "replication-follower");
+        this.applier.setDaemon(true);
+    }
+
+    /**
+     * Connects to a leader, loads its snapshot into the services and starts applying its changes
+     *
+     * @param leader                address of the leader
+     * @param customerService       empty CustomerService
+     * @param reservationService    empty ReservationService
+     * @return                      follower that has loaded the snapshot
+     * @throws IOException          if the leader can't be reached or sends something unexpected
+     */
+    public static ReplicationFollower connect(InetSocketAddress leader, CustomerService customerService,
+                                              ReservationService reservationService) throws IOException {
+        return connect(leader, customerService, reservationService, DEFAULT_MAX_STALENESS_MILLIS);
+    }
+
+    /**
+     * Connects to a leader, loads its snapshot into the services and starts applying its changes
+     *
+     * @param leader                address of the leader
+     * @param customerService       empty CustomerService
+     * @param reservationService    empty ReservationService
+     * @param maxStalenessMillis    longest time without a message from the leader during which reads are served
+     * @return                      follower that has loaded the snapshot
+     * @throws IOException          if the leader can't be reached or sends something unexpected
+     */
+    public static ReplicationFollower connect(InetSocketAddress leader, CustomerService customerService,
+                                              ReservationService reservationService, long maxStalenessMillis)
+            throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(leader);
+            socket.setTcpNoDelay(true);
+            ReplicationFollower follower = new ReplicationFollower(socket, customerService, reservationService,
+                    maxStalenessMillis);
+            follower.loadSnapshot();
+            follower.applier.start();
+            return follower;
+        } catch (IOException | RuntimeException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return          highest number of the messages applied
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return          milliseconds since the last message from the leader was applied
+     */
+    public long getStalenessMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastAppliedNanos);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return          what ended the connection to the leader, or null if it is connected, was closed here or
+     *                  was closed by the leader
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return          true if a message from the leader could not be applied, so the services may no longer
+     *                  match the leader and must be loaded again from a snapshot
+     */
+    public boolean isResyncNeeded() {
+        return resyncNeeded;
+    }
+
+    /**
+     * @return          null if reads may be served, otherwise the reason they may not
+     */
+    public String unavailableReason() {
+        if (resyncNeeded) {
+            return "The replica could not apply a change from the leader and must be loaded again.";
+        }
+        if (! connected) {
+            IOException lost = failure;
+            return "The replica lost its connection to the leader" +
+                    (lost == null ? "." : ": " + lost.getLocalizedMessage());
+        }
+        if (System.nanoTime() - lastAppliedNanos > maxStalenessNanos) {
+            return "The replica is " + getStalenessMillis() + " ms behind the leader.";
+        }
+        return null;
+    }
+
+    /**
+     * Waits until the connection to the leader is lost or closed
+     *
+     * @throws InterruptedException     if the waiting thread is interrupted
+     */
+    public void awaitDisconnect() throws InterruptedException {
+        applier.join();
+    }
+
+    /**
+     * Disconnects from the leader; the services keep the state applied so far
+     */
+    @Override
+    public void close() throws IOException {
+        connected = false;
+        socket.close();
+        try {
+            applier.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        if (in.readInt() != ReplicationLeader.MAGIC) {
+            throw new IOException("The peer is not a replication leader.");
+        }
+        long length = in.readLong();
+        Path snapshot = Files.createTempFile("replica-", ".dat");
+        try {
+            try (OutputStream out = Files.newOutputStream(snapshot)) {
+                byte[] buffer = new byte[1 << 16];
+                long remaining = length;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException("The leader closed the connection during the snapshot.");
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+            Snapshot.load(snapshot, customerService, reservationService);
+        } finally {
+            // The snapshot stays mapped; the file can go once the mapping is released.
+            snapshot.toFile().deleteOnExit();
+        }
+        lastAppliedNanos = System.nanoTime();
+    }
+
+    /**
+     * Applies messages in order and acknowledges what was applied whenever no more input is waiting, and at
+     * least every 512 messages
+     */
+    private void applyLoop() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            long oldestUnacknowledgedNanos = 0;
+            int unacknowledged = 0;
+            while (connected) {
+                long sequence = in.readLong();
+                long sentNanos = in.readLong();
+                int length = in.readInt();
+                if (length < 0) {
+                    resyncNeeded = true;
+                    throw new IOException("Message " + sequence + " from the leader has a negative length.");
+                }
+                byte[] records = new byte[length];
+                in.readFully(records);
+                apply(sequence, records);
+                // Unrelated changes may come out of number order; the position is the highest number applied.
+                appliedSequence = Math.max(appliedSequence, sequence);
+                lastAppliedNanos = System.nanoTime();
+                if (unacknowledged++ == 0) {
+                    oldestUnacknowledgedNanos = sentNanos;
+                }
+                if (in.available() == 0 || unacknowledged >= ACKNOWLEDGE_EVERY) {
+                    out.writeLong(appliedSequence);
+                    out.writeLong(oldestUnacknowledgedNanos);
+                    out.flush();
+                    unacknowledged = 0;
+                }
+            }
+        } catch (EOFException ex) {
+            // The leader closed the connection between messages.
+        } catch (IOException ex) {
+            if (connected) {
+                failure = ex;
+            }
+        } finally {
+            connected = false;
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Closing anyway.
+            }
+        }
+    }
+
+    /**
+     * Applies the records of a message
+     *
+     * @throws IOException  if a record is damaged or can't be applied; the follower then needs a resync
+     */
+    private void apply(long sequence, byte[] records) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(records));
+        try {
+            byte[] payload;
+            while ((payload = RecordCodec.readPayload(in)) != null) {
+                RecordCodec.apply(payload, customerService, reservationService);
+            }
+        } catch (IOException | RuntimeException ex) {
+            resyncNeeded = true;
+            throw new IOException("Message " + sequence + " from the leader can't be applied: " +
+                    (ex instanceof EOFException ? "it ends inside a record." : ex.getMessage()), ex);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package persistence;
+
+import metrics.LatencyHistogram;
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomType;
+import service.CustomerService;
+import service.MutationListener;
+import service.ReservationService;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReplicationLeader streams every change made through the services to follower processes, which apply them to
+ * their own services and serve searches from them (see ReplicationFollower).
+ *
+ * A follower that connects first receives a snapshot and then every change made since it was registered, as
+ * journal records. The follower is registered at the very point the snapshot is cut, so every reservation
+ * change is either in the snapshot or in the stream; customers, rooms and rates added while the snapshot is
+ * written may be in both and are recognized as duplicates, as on journal replay. A heartbeat is sent every
+ * 50 ms so followers can tell a quiet leader from a lost one.
+ *
+ * Messages are numbered from an atomic counter and queued for every follower without taking a lock or
+ * waiting, so replicating never serializes changes that the services make in parallel. A change is queued
+ * while the service holds the lock that orders it, so the changes of one room, customer or room type reach a
+ * follower in order; changes that don't depend on each other may reach it out of number order.
+ *
+ * Lag is bounded: at most 4096 messages are sent to a follower ahead of its acknowledgements, and at most the
+ * queue capacity, 65536 by default, wait in its queue. A follower whose queue is full is disconnected at once
+ * instead of slowing the changes down, and it stops serving reads. The time from sending a message to its
+ * acknowledgement is recorded per follower.
+ *
+ * Wire format, big-endian: the leader sends the magic number, the snapshot length and the snapshot, then
+ * messages of [sequence][send time][length][framed records], where a length of 0 is a heartbeat. The follower
+ * sends acknowledgements of [highest applied sequence][send time of the oldest message applied since the
+ * previous acknowledgement].
+ *
+ * @author rachellai
+ */
+public final class ReplicationLeader implements MutationListener, AutoCloseable {
+    static final int MAGIC = 0x48525031;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+    private static final int MAX_UNACKNOWLEDGED = 1 << 12;
+    private static final long HEARTBEAT_MILLIS = 50;
+    private static final byte[] HEARTBEAT = new byte[0];
+
+    private final ServerSocket serverSocket;
+    private final CustomerService customerService;
+    private final ReservationService reservationService;
+    private final int queueCapacity;
+    private final List<FollowerLink> links = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+    private final ScheduledExecutorService heartbeat;
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final AtomicLong droppedFollowers = new AtomicLong();
+    private volatile String lastError;
+    private volatile boolean open = true;
+
+    private ReplicationLeader(ServerSocket serverSocket, int queueCapacity, CustomerService customerService,
+                              ReservationService reservationService) {
+        this.serverSocket = serverSocket;
+        this.queueCapacity = queueCapacity;
+        this.customerService = customerService;
+        this.reservationService = reservationService;
+        this.acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        this.acceptor.setDaemon(true);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts listening for followers and streaming every change made from now on, queuing up to 65536 messages
+     * per follower
+     *
+     * @param address               address to listen on, e.g. a loopback port; port 0 picks a free port
+     * @param customerService       CustomerService to replicate
+     * @param reservationService    ReservationService to replicate
+     * @return                      running leader
+     * @throws IOException          if the address can't be bound
+     */
+    public static ReplicationLeader start(InetSocketAddress address, CustomerService customerService,
+                                          ReservationService reservationService) throws IOException {
+        return start(address, DEFAULT_QUEUE_CAPACITY, customerService, reservationService);
+    }
+
+    /**
+     * Starts listening for followers and streaming every change made from now on
+     *
+     * @param address               address to listen on, e.g. a loopback port; port 0 picks a free port
+     * @param queueCapacity         messages queued per follower before it is disconnected
+     * @param customerService       CustomerService to replicate
+     * @param reservationService    ReservationService to replicate
+     * @return                      running leader
+     * @throws IOException          if the address can't be bound
+     */
+    public static ReplicationLeader start(InetSocketAddress address, int queueCapacity,
+                                          CustomerService customerService, ReservationService reservationService)
+            throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        ReplicationLeader leader = new ReplicationLeader(serverSocket, queueCapacity, customerService,
+                reservationService);
+        customerService.addListener(leader);
+        reservationService.addListener(leader);
+        leader.acceptor.start();
+        leader.heartbeat.scheduleAtFixedRate(() -> leader.publish(HEARTBEAT), HEARTBEAT_MILLIS,
+                HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+        return leader;
+    }
+
+    /**
+     * @return          port followers connect to
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return          number of the last message sent, counting heartbeats
+     */
+    public long getSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * @return          position and lag of every connected follower
+     */
+    public List<FollowerStatus> getFollowers() {
+        List<FollowerStatus> followers = new ArrayList<>();
+        long sequence = getSequence();
+        for (FollowerLink link: links) {
+            long acknowledged = link.acknowledgedSequence.get();
+            followers.add(new FollowerStatus(link.address, acknowledged,
+                    Math.max(0, sequence - link.acknowledgedOrBefore()), link.lag.snapshot()));
+        }
+        return followers;
+    }
+
+    /**
+     * @return          number of followers disconnected because they fell behind or their connection failed
+     */
+    public long getDroppedFollowers() {
+        return droppedFollowers.get();
+    }
+
+    /**
+     * @return          why the last follower was dropped or could not be accepted, or null if none was
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public void customerAdded(Customer customer) {
+        publish(RecordCodec.customer(customer));
+    }
+
+    @Override
+    public void roomAdded(IRoom room) {
+        publish(RecordCodec.room(room));
+    }
+
+    /**
+     * Sends the records of rooms added together as one message
+     */
+    @Override
+    public void roomsAdded(List<IRoom> rooms) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(rooms.size() * 32);
+        for (IRoom room: rooms) {
+            records.writeBytes(RecordCodec.room(room));
+        }
+        publish(records.toByteArray());
+    }
+
+    @Override
+    public void reservationAdded(Reservation reservation) {
+        publish(RecordCodec.reservation(reservation));
+    }
+
+    /**
+     * Sends the records of a group booking as one message, so followers apply them together
+     */
+    @Override
+    public void reservationsAdded(List<Reservation> reservations) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(reservations.size() * 48);
+        for (Reservation reservation: reservations) {
+            records.writeBytes(RecordCodec.reservation(reservation));
+        }
+        publish(records.toByteArray());
+    }
+
+    @Override
+    public void reservationCancelled(Reservation reservation) {
+        publish(RecordCodec.cancellation(reservation));
+    }
+
+    @Override
+    public void reservationChanged(Reservation previous, Reservation changed) {
+        publish(RecordCodec.dateChange(previous, changed));
+    }
+
+    @Override
+    public void ratesChanged(RoomType roomType, int firstDay, int[] nightlyRates) {
+        publish(RecordCodec.rates(roomType, firstDay, nightlyRates));
+    }
+
+    /**
+     * Stops replicating and disconnects every follower
+     */
+    @Override
+    public void close() throws IOException {
+        if (! open) {
+            return;
+        }
+        open = false;
+        customerService.removeListener(this);
+        reservationService.removeListener(this);
+        heartbeat.shutdownNow();
+        serverSocket.close();
+        for (FollowerLink link: links) {
+            link.disconnect();
+        }
+    }
+
+    /**
+     * Numbers a message and queues it for every follower, disconnecting a follower whose queue is full
+     */
+    private void publish(byte[] records) {
+        Message message = new Message(lastSequence.incrementAndGet(), System.nanoTime(), records);
+        for (FollowerLink link: links) {
+            if (! link.offer(message)) {
+                link.drop("it is more than " + (queueCapacity + MAX_UNACKNOWLEDGED) + " messages behind.");
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (open) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                new FollowerLink(socket).start();
+            } catch (IOException ex) {
+                if (open) {
+                    lastError = "Could not accept a follower: " + ex.getLocalizedMessage();
+                }
+            }
+        }
+    }
+
+    /**
+     * A change or heartbeat with its number and the leader's clock at sending time
+     */
+    private static final class Message {
+        private final long sequence;
+        private final long sentNanos;
+        private final byte[] records;
+
+        Message(long sequence, long sentNanos, byte[] records) {
+            this.sequence = sequence;
+            this.sentNanos = sentNanos;
+            this.records = records;
+        }
+    }
+
+    /**
+     * Connection to one follower, with a sender thread that writes the snapshot and then the queued messages,
+     * and a reader thread that takes the acknowledgements
+     */
+    private final class FollowerLink {
+        private final Socket socket;
+        private final String address;
+        private final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicLong acknowledgedSequence = new AtomicLong();
+        private final LatencyHistogram lag = new LatencyHistogram();
+        private final Thread sender;
+        private final Thread acknowledgementReader;
+        private volatile long firstSequence;
+        private volatile boolean connected = true;
+
+        FollowerLink(Socket socket) {
+            this.socket = socket;
+            this.address = String.valueOf(socket.getRemoteSocketAddress());
+            this.sender = new Thread(this::sendLoop, "replication-sender-" + address);
+            this.sender.setDaemon(true);
+            this.acknowledgementReader = new Thread(this::acknowledgementLoop, "replication-ack-" + address);
+            this.acknowledgementReader.setDaemon(true);
+        }
+
+        void start() {
+            sender.start();
+            acknowledgementReader.start();
+        }
+
+        /**
+         * Queues a message numbered from the follower's registration on, without waiting
+         *
+         * @return              false if the queue is full
+         */
+        boolean offer(Message message) {
+            if (! connected || message.sequence < firstSequence) {
+                return true;
+            }
+            return queue.offer(message);
+        }
+
+        /**
+         * Disconnects the follower and records why, unless it is already disconnected or the leader is closing
+         */
+        void drop(String reason) {
+            if (connected && open) {
+                lastError = "Dropped follower " + address + ": " + reason;
+                droppedFollowers.incrementAndGet();
+            }
+            disconnect();
+        }
+
+        void disconnect() {
+            connected = false;
+            links.remove(this);
+            queue.clear();
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Closing anyway.
+            }
+        }
+
+        /**
+         * Sends the snapshot, then the queued messages, flushing whenever the queue runs empty
+         */
+        private void sendLoop() {
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                        1 << 16));
+                sendSnapshot(out);
+                while (connected) {
+                    Message message = queue.poll(HEARTBEAT_MILLIS * 4, TimeUnit.MILLISECONDS);
+                    if (message == null) {
+                        continue;
+                    }
+                    while (message != null) {
+                        if (! awaitWindow(message.sequence, out)) {
+                            return;
+                        }
+                        out.writeLong(message.sequence);
+                        out.writeLong(message.sentNanos);
+                        out.writeInt(message.records.length);
+                        out.write(message.records);
+                        message = queue.poll();
+                    }
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException ex) {
+                drop("the connection failed: " + ex.getLocalizedMessage());
+            } finally {
+                disconnect();
+            }
+        }
+
+        /**
+         * Waits until the follower has acknowledged enough messages for the given one to be sent, flushing
+         * first so the follower has something to acknowledge
+         *
+         * @return              false if the follower disconnected while waiting
+         */
+        private boolean awaitWindow(long sequence, DataOutputStream out) throws IOException, InterruptedException {
+            if (sequence - acknowledgedOrBefore() <= MAX_UNACKNOWLEDGED) {
+                return true;
+            }
+            out.flush();
+            synchronized (this) {
+                while (connected && sequence - acknowledgedOrBefore() > MAX_UNACKNOWLEDGED) {
+                    wait(HEARTBEAT_MILLIS);
+                }
+            }
+            return connected;
+        }
+
+        private long acknowledgedOrBefore() {
+            return Math.max(acknowledgedSequence.get(), firstSequence - 1);
+        }
+
+        /**
+         * Starts queuing changes for the follower from the next message on. Runs where the snapshot is cut, while
+         * no change can be queued, so changes numbered before are in the snapshot and changes numbered after are
+         * not; a heartbeat numbered before that is still being queued is left out.
+         */
+        private void register() {
+            firstSequence = lastSequence.get() + 1;
+            links.add(this);
+        }
+
+        private void sendSnapshot(DataOutputStream out) throws IOException {
+            Path snapshot = Files.createTempFile("replica-", ".dat");
+            try {
+                Snapshot.write(snapshot, customerService, reservationService, this::register);
+                out.writeInt(MAGIC);
+                out.writeLong(Files.size(snapshot));
+                Files.copy(snapshot, out);
+                out.flush();
+            } finally {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+
+        private void acknowledgementLoop() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (connected) {
+                    long sequence = in.readLong();
+                    long oldestSentNanos = in.readLong();
+                    lag.record(System.nanoTime() - oldestSentNanos);
+                    synchronized (this) {
+                        acknowledgedSequence.set(sequence);
+                        notifyAll();
+                    }
+                }
+            } catch (IOException ex) {
+                // The sender notices the closed connection too.
+            } finally {
+                disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package persistence;
+
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Room;
+import model.RoomType;
+import service.CustomerArchive;
+import service.CustomerService;
+import service.RateCalendar;
+import service.ReservationService;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Snapshot is a compact binary image of all customers, rooms, reservations and nightly rates that is read
+ * through a memory mapping. Loading builds the rooms, the availability index and the reservation store straight
+ * from the mapped columns; customers are read in place when they are first looked up.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * header        magic, version, room count, customer count, reservation count, string bytes,
+ *               rate bytes (7 ints)
+ * rooms         string ref of number, price (double), type, free flag, 2 padding bytes      16 bytes each
+ * customers     string refs of email, first name, last name, sorted by email                12 bytes each
+ * reservations  room index, customer index, check-in day, check-out day, sorted by room
+ *               and check-in day                                                            16 bytes each
+ * rates         per room type with rates: type, first day, night count, then the rate of each night
+ *               in basis points                                                              4 bytes each
+ * strings       unsigned short length + UTF-8 bytes; a string ref is an offset in this section
+ * </pre>
+ * Version 1 snapshots have a 6-int header and no rates, and are still read.
+ *
+ * @author rachellai
+ */
+public final class Snapshot {
+    private static final int MAGIC = 0x48544C53;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 28;
+    private static final int VERSION_1_HEADER_BYTES = 24;
+    private static final int ROOM_BYTES = 16;
+    private static final int CUSTOMER_BYTES = 12;
+    private static final int RESERVATION_BYTES = 16;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Writes the current state of the services to a file and flushes it to disk
+     *
+     * @param file                  file to write
+     * @param customerService       CustomerService to read customers from
+     * @param reservationService    ReservationService to read rooms and reservations from
+     * @throws IOException          if the file can't be written
+     */
+    public static void write(Path file, CustomerService customerService, ReservationService reservationService)
+            throws IOException {
+        write(file, customerService, reservationService, () -> { });
+    }
+
+    /**
+     * Writes the state of the services at one point of their change order to a file and flushes it to disk.
+     * The reservations are the ones live when atCut runs, which is while no booking, room, customer or rate is
+     * being added or changed; customers, rooms and rates are read afterwards and may include later changes,
+     * which a journal or stream started at atCut repeats and replay recognizes as duplicates.
+     *
+     * @param file                  file to write
+     * @param customerService       CustomerService to read customers from
+     * @param reservationService    ReservationService to read rooms and reservations from
+     * @param atCut                 run at the point the snapshot is taken, e.g. to start a new journal there
+     * @throws IOException          if the file can't be written
+     */
+    public static void write(Path file, CustomerService customerService, ReservationService reservationService,
+                             Runnable atCut) throws IOException {
+        List<Stay> liveStays = new ArrayList<>();
+        RateCalendar rateCalendar = reservationService.getRateCalendar();
+        reservationService.forEachStay(() -> customerService.runBetweenRegistrations(
+                () -> rateCalendar.runBetweenChanges(atCut)),
+                (room, customer, checkInDay, checkOutDay) ->
+                        liveStays.add(new Stay(room, customer, checkInDay, checkOutDay)));
+        List<Customer> customers = new ArrayList<>(customerService.getAllCustomers());
+        customers.sort(Comparator.comparing(Customer::getEmail));
+        Map<String, Integer> customerIndexes = new HashMap<>();
+        for (int i = 0; i < customers.size(); i++) {
+            customerIndexes.put(customers.get(i).getEmail(), i);
+        }
+        List<IRoom> rooms = new ArrayList<>(reservationService.getRooms().values());
+        Map<String, Integer> roomIndexes = new HashMap<>();
+        for (int i = 0; i < rooms.size(); i++) {
+            roomIndexes.put(rooms.get(i).getRoomNumber(), i);
+        }
+        List<int[]> stays = new ArrayList<>(liveStays.size());
+        for (Stay stay: liveStays) {
+            Integer roomIndex = roomIndexes.get(stay.room.getRoomNumber());
+            Integer customerIndex = customerIndexes.get(stay.customer.getEmail());
+            if (roomIndex == null || customerIndex == null) {
+                throw new IllegalStateException("A reservation refers to a room or customer that was never added.");
+            }
+            stays.add(new int[] {roomIndex, customerIndex, stay.checkInDay, stay.checkOutDay});
+        }
+        stays.sort(Comparator.<int[]>comparingInt(stay -> stay[0]).thenComparingInt(stay -> stay[2]));
+        List<int[]> rates = new ArrayList<>();
+        rateCalendar.forEachRates((roomType, firstDay, nightlyRates) -> {
+            int[] calendar = new int[3 + nightlyRates.length];
+            calendar[0] = roomType.ordinal();
+            calendar[1] = firstDay;
+            calendar[2] = nightlyRates.length;
+            System.arraycopy(nightlyRates, 0, calendar, 3, nightlyRates.length);
+            rates.add(calendar);
+        });
+        int rateBytes = 0;
+        for (int[] calendar: rates) {
+            rateBytes += calendar.length * 4;
+        }
+
+        StringSection strings = new StringSection();
+        int[] roomNumberRefs = new int[rooms.size()];
+        for (int i = 0; i < rooms.size(); i++) {
+            roomNumberRefs[i] = strings.add(rooms.get(i).getRoomNumber());
+        }
+        int[] customerRefs = new int[customers.size() * 3];
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            customerRefs[i * 3] = strings.add(customer.getEmail());
+            customerRefs[i * 3 + 1] = strings.add(customer.getFirstName());
+            customerRefs[i * 3 + 2] = strings.add(customer.getLastName());
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rooms.size());
+            out.writeInt(customers.size());
+            out.writeInt(stays.size());
+            out.writeInt(strings.size());
+            out.writeInt(rateBytes);
+            for (int i = 0; i < rooms.size(); i++) {
+                IRoom room = rooms.get(i);
+                out.writeInt(roomNumberRefs[i]);
+                out.writeDouble(room.getRoomPrice());
+                out.writeByte(room.getRoomType().ordinal());
+                out.writeBoolean(room instanceof FreeRoom);
+                out.writeShort(0);
+            }
+            for (int ref: customerRefs) {
+                out.writeInt(ref);
+            }
+            for (int[] stay: stays) {
+                for (int field: stay) {
+                    out.writeInt(field);
+                }
+            }
+            for (int[] calendar: rates) {
+                for (int field: calendar) {
+                    out.writeInt(field);
+                }
+            }
+            strings.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Maps a snapshot and restores it into empty services
+     *
+     * @param file                  snapshot file
+     * @param customerService       empty CustomerService
+     * @param reservationService    empty ReservationService
+     * @throws IOException          if the file can't be read or is not a snapshot
+     */
+    public static void load(Path file, CustomerService customerService, ReservationService reservationService)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        MappedSnapshot snapshot = new MappedSnapshot(buffer, file);
+
+        List<IRoom> rooms = new ArrayList<>(snapshot.roomCount);
+        for (int i = 0; i < snapshot.roomCount; i++) {
+            rooms.add(snapshot.room(i));
+        }
+        int[] stayRooms = new int[snapshot.reservationCount];
+        int[] stayCustomers = new int[snapshot.reservationCount];
+        int[] checkInDays = new int[snapshot.reservationCount];
+        int[] checkOutDays = new int[snapshot.reservationCount];
+        for (int i = 0; i < snapshot.reservationCount; i++) {
+            int position = snapshot.reservationsOffset + i * RESERVATION_BYTES;
+            stayRooms[i] = buffer.getInt(position);
+            stayCustomers[i] = buffer.getInt(position + 4);
+            checkInDays[i] = buffer.getInt(position + 8);
+            checkOutDays[i] = buffer.getInt(position + 12);
+        }
+        customerService.restore(snapshot);
+        reservationService.restore(rooms, snapshot, stayRooms, stayCustomers, checkInDays, checkOutDays);
+        int position = snapshot.ratesOffset;
+        while (position < snapshot.stringsOffset) {
+            RoomType roomType = RoomType.values()[buffer.getInt(position)];
+            int firstDay = buffer.getInt(position + 4);
+            int[] nightlyRates = new int[buffer.getInt(position + 8)];
+            position += 12;
+            for (int i = 0; i < nightlyRates.length; i++, position += 4) {
+                nightlyRates[i] = buffer.getInt(position);
+            }
+            reservationService.getRateCalendar().restoreRates(roomType, firstDay, nightlyRates);
+        }
+    }
+
+    /**
+     * Read-only view over a mapped snapshot. Customers are found by binary search over the email-sorted table.
+     */
+    private static final class MappedSnapshot implements CustomerArchive {
+        private final ByteBuffer buffer;
+        private final int roomCount;
+        private final int customerCount;
+        private final int reservationCount;
+        private final int roomsOffset;
+        private final int customersOffset;
+        private final int reservationsOffset;
+        private final int ratesOffset;
+        private final int stringsOffset;
+
+        MappedSnapshot(ByteBuffer buffer, Path file) throws IOException {
+            this.buffer = buffer;
+            if (buffer.capacity() < VERSION_1_HEADER_BYTES || buffer.getInt(0) != MAGIC
+                    || (buffer.getInt(4) != VERSION && buffer.getInt(4) != 1)
+                    || (buffer.getInt(4) == VERSION && buffer.capacity() < HEADER_BYTES)) {
+                throw new IOException(file + " is not a hotel snapshot.");
+            }
+            boolean hasRates = buffer.getInt(4) == VERSION;
+            roomCount = buffer.getInt(8);
+            customerCount = buffer.getInt(12);
+            reservationCount = buffer.getInt(16);
+            roomsOffset = hasRates ? HEADER_BYTES : VERSION_1_HEADER_BYTES;
+            customersOffset = roomsOffset + roomCount * ROOM_BYTES;
+            reservationsOffset = customersOffset + customerCount * CUSTOMER_BYTES;
+            ratesOffset = reservationsOffset + reservationCount * RESERVATION_BYTES;
+            stringsOffset = ratesOffset + (hasRates ? buffer.getInt(24) : 0);
+            if ((long) stringsOffset + buffer.getInt(20) != buffer.capacity()) {
+                throw new IOException(file + " is truncated.");
+            }
+        }
+
+        IRoom room(int index) {
+            int position = roomsOffset + index * ROOM_BYTES;
+            String roomNumber = string(buffer.getInt(position));
+            RoomType roomType = RoomType.values()[buffer.get(position + 12)];
+            if (buffer.get(position + 13) != 0) {
+                return new FreeRoom(roomNumber, roomType);
+            }
+            return new Room(roomNumber, buffer.getDouble(position + 4), roomType);
+        }
+
+        String email(int customerIndex) {
+            return string(buffer.getInt(customersOffset + customerIndex * CUSTOMER_BYTES));
+        }
+
+        @Override
+        public int size() {
+            return customerCount;
+        }
+
+        @Override
+        public Customer customerAt(int customerIndex) {
+            int position = customersOffset + customerIndex * CUSTOMER_BYTES;
+            return new Customer(string(buffer.getInt(position + 4)), string(buffer.getInt(position + 8)),
+                    string(buffer.getInt(position)));
+        }
+
+        @Override
+        public int indexOf(String email) {
+            int low = 0;
+            int high = customerCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = email(middle).compareTo(email);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        private String string(int ref) {
+            int position = stringsOffset + ref;
+            byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort(position))];
+            buffer.get(position + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Collects strings as unsigned short length + UTF-8 bytes
+     */
+    private static final class StringSection {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+
+        int add(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF) {
+                throw new IllegalArgumentException("String is too long for a snapshot: " + value);
+            }
+            int ref = bytes.size();
+            bytes.write(encoded.length >>> 8);
+            bytes.write(encoded.length);
+            bytes.write(encoded, 0, encoded.length);
+            return ref;
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * A reservation read at the cut, before the customers and rooms are indexed
+     */
+    private static final class Stay {
+        private final IRoom room;
+        private final Customer customer;
+        private final int checkInDay;
+        private final int checkOutDay;
+
+        Stay(IRoom room, Customer customer, int checkInDay, int checkOutDay) {
+            this.room = room;
+            this.customer = customer;
+            this.checkInDay = checkInDay;
+            this.checkOutDay = checkOutDay;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package service;
+
+/**
+ * AvailabilityBackend selects the data structure ReservationService uses to answer availability queries. The
+ * application reads it from the hotel.availability.backend system property, e.g. -Dhotel.availability.backend=bitset.
+ *
+ * @author rachellai
+ */
+public enum AvailabilityBackend {
+    /**
+     * Per-room balanced trees of stays ordered by check-in day. Memory grows with the number of bookings.
+     */
+    INTERVAL,
+    /**
+     * Per-room bitmap with one bit per night. Range checks are a few word-wide operations.
+     */
+    BITSET;
+
+    AvailabilityIndex createIndex() {
+        return switch (this) {
+            case INTERVAL -> new IntervalAvailabilityIndex();
+            case BITSET -> new BitsetAvailabilityIndex();
+        };
+    }
+}
@@ -0,0 +1,209 @@
+package service;
+
+import model.IRoom;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * AvailabilityCache keeps the results of recent availability searches by night range. Entries are sorted by
+ * check-in day, so a booking removes exactly the cached ranges that overlap its nights by scanning a short
+ * slice of the map. When the cache is full the least recently used eighth of it is evicted in one pass.
+ *
+ * A search that runs while a booking is made may compute a result without that booking. To never keep such a
+ * result, every change is logged in a small ring of recent changes; a search stores its result first and then
+ * drops it again if a change that overlaps its range was logged since the search started. A change either is
+ * seen by that check or removes the stored entry itself.
+ *
+ * @author rachellai
+ */
+final class AvailabilityCache {
+    private static final int RECENT_CHANGES = 1024;
+    private static final long EVERY_NIGHT = range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    private final int capacity;
+    private final ConcurrentSkipListMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger longestStay = new AtomicInteger();
+    private final AtomicLong changeCount = new AtomicLong();
+    private final AtomicLongArray changedRanges = new AtomicLongArray(RECENT_CHANGES);
+    private final AtomicLongArray changeNumbers = new AtomicLongArray(RECENT_CHANGES);
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param capacity          maximum number of cached ranges
+     */
+    AvailabilityCache(int capacity) {
+        this.capacity = capacity;
+        for (int i = 0; i < RECENT_CHANGES; i++) {
+            changeNumbers.set(i, -1);
+        }
+    }
+
+    /**
+     * Returns the cached rooms available for a range, or searches and caches them
+     *
+     * @param checkInDay        check-in epoch day
+     * @param checkOutDay       check-out epoch day
+     * @param search            computes the available rooms
+     * @return                  read-only list of available rooms
+     */
+    List<IRoom> get(int checkInDay, int checkOutDay, Supplier<List<IRoom>> search) {
+        long key = range(checkInDay, checkOutDay);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.lastUsed = System.nanoTime();
+            hits.increment();
+            return entry.rooms;
+        }
+        misses.increment();
+        long firstChange = changeCount.get();
+        List<IRoom> rooms = Collections.unmodifiableList(search.get());
+        int nights = checkOutDay - checkInDay;
+        longestStay.accumulateAndGet(nights, Math::max);
+        Entry created = new Entry(checkInDay, checkOutDay, rooms);
+        if (entries.putIfAbsent(key, created) == null) {
+            size.incrementAndGet();
+            if (changedSince(firstChange, checkInDay, checkOutDay)) {
+                remove(key, created);
+            } else if (size.get() > capacity) {
+                evict();
+            }
+        }
+        return rooms;
+    }
+
+    /**
+     * Drops every cached range that shares a night with a booking
+     *
+     * @param checkInDay        check-in epoch day of the booking
+     * @param checkOutDay       check-out epoch day of the booking
+     */
+    void invalidate(int checkInDay, int checkOutDay) {
+        logChange(range(checkInDay, checkOutDay));
+        long from = range((int) Math.max(Integer.MIN_VALUE, (long) checkInDay - longestStay.get() + 1), 0);
+        long to = range(checkOutDay, 0);
+        for (Entry entry: entries.subMap(from, to).values()) {
+            if (entry.checkOutDay > checkInDay) {
+                remove(range(entry.checkInDay, entry.checkOutDay), entry);
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached range, e.g. after rooms were added
+     */
+    void invalidateAll() {
+        logChange(EVERY_NIGHT);
+        for (Map.Entry<Long, Entry> cached: entries.entrySet()) {
+            remove(cached.getKey(), cached.getValue());
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * @return          snapshot of the hit, miss, eviction and invalidation counts
+     */
+    CacheStatistics statistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size.get(),
+                capacity);
+    }
+
+    private void logChange(long changedRange) {
+        long number = changeCount.getAndIncrement();
+        int slot = (int) (number % RECENT_CHANGES);
+        changedRanges.set(slot, changedRange);
+        changeNumbers.set(slot, number);
+    }
+
+    /**
+     * Checks whether a change overlapping the range was logged at or after a change number. Changes that are
+     * not fully logged yet or already overwritten in the ring count as overlapping.
+     */
+    private boolean changedSince(long firstChange, int checkInDay, int checkOutDay) {
+        long lastChange = changeCount.get();
+        if (lastChange - firstChange > RECENT_CHANGES) {
+            return true;
+        }
+        for (long number = firstChange; number < lastChange; number++) {
+            int slot = (int) (number % RECENT_CHANGES);
+            long changedRange = changedRanges.get(slot);
+            if (changeNumbers.get(slot) != number) {
+                return true;
+            }
+            if ((int) (changedRange >> 32) < checkOutDay && checkInDay < (int) changedRange) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(long key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries down to seven eighths of the capacity. Only one thread evicts at a
+     * time; the others go on without waiting.
+     */
+    private void evict() {
+        if (! evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = size.get() - capacity * 7 / 8;
+            if (excess <= 0) {
+                return;
+            }
+            List<Entry> byLastUse = new ArrayList<>(entries.values());
+            byLastUse.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+            for (int i = 0; i < excess && i < byLastUse.size(); i++) {
+                Entry entry = byLastUse.get(i);
+                if (entries.remove(range(entry.checkInDay, entry.checkOutDay), entry)) {
+                    size.decrementAndGet();
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Packs a night range into a key that sorts by check-in day, then check-out day
+     */
+    private static long range(int checkInDay, int checkOutDay) {
+        return ((long) checkInDay << 32) | (checkOutDay & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Available rooms of one night range
+     */
+    private static final class Entry {
+        private final int checkInDay;
+        private final int checkOutDay;
+        private final List<IRoom> rooms;
+        private volatile long lastUsed = System.nanoTime();
+
+        Entry(int checkInDay, int checkOutDay, List<IRoom> rooms) {
+            this.checkInDay = checkInDay;
+            this.checkOutDay = checkOutDay;
+            this.rooms = rooms;
+        }
+    }
+}
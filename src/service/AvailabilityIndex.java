@@ -0,0 +1,106 @@
+package service;
+
+/**
+ * AvailabilityIndex answers whether a room is free for a range of nights. Rooms are identified by ordinals
+ * handed out in the order they are added, and stays are night ranges [checkInDay, checkOutDay) in epoch days.
+ * Reads never block; writes to one room must be serialized by the caller, writes to different rooms may run
+ * in parallel.
+ *
+ * @author rachellai
+ */
+interface AvailabilityIndex {
+
+    /**
+     * Registers the next room
+     *
+     * @return              ordinal of the new room
+     */
+    int addRoom();
+
+    /**
+     * Registers the next rooms at once
+     *
+     * @param count         number of rooms
+     * @return              ordinal of the first new room; the others follow it
+     */
+    int addRooms(int count);
+
+    /**
+     * Checks whether a room has no booking overlapping the nights [checkInDay, checkOutDay)
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param checkInDay        check-in epoch day
+     * @param checkOutDay       check-out epoch day
+     * @return                  true if the room is free for every night of the stay
+     */
+    boolean isAvailable(int roomOrdinal, int checkInDay, int checkOutDay);
+
+    /**
+     * Sets a bit in a bitmap for every booked night of a room in [fromDay, toDay). Bit {@code night & 63} of
+     * {@code nights[night >> 6]} stands for the night fromDay + night. Bits of free nights are left as they are.
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param fromDay           first night to look at
+     * @param toDay             night after the last one to look at
+     * @param nights            bitmap with at least toDay - fromDay bits
+     * @return                  true if any night in the range is booked
+     */
+    boolean markBookedNights(int roomOrdinal, int fromDay, int toDay, long[] nights);
+
+    /**
+     * Records a stay for a room. The caller must hold the room's lock and have checked that the room is
+     * available.
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param checkInDay        check-in epoch day
+     * @param checkOutDay       check-out epoch day
+     */
+    void occupy(int roomOrdinal, int checkInDay, int checkOutDay);
+
+    /**
+     * Frees the nights of a stay. The caller must hold the room's lock, and the stay must have been recorded.
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param checkInDay        check-in epoch day of the stay
+     * @param checkOutDay       check-out epoch day of the stay
+     */
+    void release(int roomOrdinal, int checkInDay, int checkOutDay);
+
+    /**
+     * Checks whether a stay could move to new nights: whether no other stay of the room overlaps them
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param checkInDay        check-in epoch day of the stay
+     * @param checkOutDay       check-out epoch day of the stay
+     * @param newCheckInDay     new check-in epoch day
+     * @param newCheckOutDay    new check-out epoch day
+     * @return                  true if the new nights are free apart from the stay itself
+     */
+    boolean canMove(int roomOrdinal, int checkInDay, int checkOutDay, int newCheckInDay, int newCheckOutDay);
+
+    /**
+     * Moves a stay to new nights if no other stay of the room overlaps them. The old and new nights are swapped
+     * in one write, so readers see the stay at one or the other and never see the room free of it. The caller
+     * must hold the room's lock, and the stay must have been recorded.
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param checkInDay        check-in epoch day of the stay
+     * @param checkOutDay       check-out epoch day of the stay
+     * @param newCheckInDay     new check-in epoch day
+     * @param newCheckOutDay    new check-out epoch day
+     * @return                  true if the stay was moved, false if the new nights are taken
+     */
+    boolean move(int roomOrdinal, int checkInDay, int checkOutDay, int newCheckInDay, int newCheckOutDay);
+
+    /**
+     * Replaces the stays of a room that has no bookings yet with stays loaded in bulk, e.g. from a snapshot.
+     * The stays in [from, to) must not overlap and must be sorted by check-in day.
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param checkInDays       check-in epoch days
+     * @param checkOutDays      check-out epoch days
+     * @param from              first stay of the room, inclusive
+     * @param to                last stay of the room, exclusive
+     */
+    void restore(int roomOrdinal, int[] checkInDays, int[] checkOutDays, int from, int to);
+}
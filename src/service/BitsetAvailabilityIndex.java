@@ -0,0 +1,177 @@
+package service;
+
+import java.util.Collections;
+
+/**
+ * BitsetAvailabilityIndex stores the booked nights of every room as a bitmap indexed by epoch day, one bit
+ * per night. Checking a stay only reads the one or two words that cover its nights.
+ *
+ * @author rachellai
+ */
+final class BitsetAvailabilityIndex implements AvailabilityIndex {
+    private final OrdinalSlots<RoomNights> roomNights = new OrdinalSlots<>();
+
+    @Override
+    public int addRoom() {
+        return roomNights.add(RoomNights.EMPTY);
+    }
+
+    @Override
+    public int addRooms(int count) {
+        return roomNights.addAll(Collections.nCopies(count, RoomNights.EMPTY));
+    }
+
+    @Override
+    public boolean isAvailable(int roomOrdinal, int checkInDay, int checkOutDay) {
+        return roomNights.get(roomOrdinal).isFree(checkInDay, checkOutDay);
+    }
+
+    @Override
+    public boolean markBookedNights(int roomOrdinal, int fromDay, int toDay, long[] nights) {
+        return roomNights.get(roomOrdinal).markBookedNights(fromDay, toDay, nights);
+    }
+
+    /**
+     * Builds a new bitmap with the stay's nights set and swaps it in with a single reference write, so a
+     * reader sees either none or all of the nights of the booking.
+     */
+    @Override
+    public void occupy(int roomOrdinal, int checkInDay, int checkOutDay) {
+        roomNights.set(roomOrdinal, roomNights.get(roomOrdinal).with(checkInDay, checkOutDay));
+    }
+
+    @Override
+    public void release(int roomOrdinal, int checkInDay, int checkOutDay) {
+        roomNights.set(roomOrdinal, roomNights.get(roomOrdinal).without(checkInDay, checkOutDay));
+    }
+
+    @Override
+    public boolean canMove(int roomOrdinal, int checkInDay, int checkOutDay, int newCheckInDay, int newCheckOutDay) {
+        return roomNights.get(roomOrdinal).without(checkInDay, checkOutDay).isFree(newCheckInDay, newCheckOutDay);
+    }
+
+    @Override
+    public boolean move(int roomOrdinal, int checkInDay, int checkOutDay, int newCheckInDay, int newCheckOutDay) {
+        RoomNights others = roomNights.get(roomOrdinal).without(checkInDay, checkOutDay);
+        if (! others.isFree(newCheckInDay, newCheckOutDay)) {
+            return false;
+        }
+        roomNights.set(roomOrdinal, others.with(newCheckInDay, newCheckOutDay));
+        return true;
+    }
+
+    @Override
+    public void restore(int roomOrdinal, int[] checkInDays, int[] checkOutDays, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        int firstWord = checkInDays[from] >> 6;
+        long[] words = new long[((checkOutDays[to - 1] - 1) >> 6) - firstWord + 1];
+        for (int stay = from; stay < to; stay++) {
+            setNights(words, firstWord, checkInDays[stay], checkOutDays[stay]);
+        }
+        roomNights.set(roomOrdinal, new RoomNights(firstWord, words));
+    }
+
+    /**
+     * Sets the bits of the nights [checkInDay, checkOutDay) in a bitmap whose first word covers firstWord
+     */
+    static void setNights(long[] words, int firstWord, int checkInDay, int checkOutDay) {
+        int day = checkInDay;
+        while (day < checkOutDay) {
+            int word = day >> 6;
+            int wordEnd = Math.min(checkOutDay, (word + 1) << 6);
+            words[word - firstWord] |= rangeMask(day & 63, wordEnd - day);
+            day = wordEnd;
+        }
+    }
+
+    /**
+     * Mask with the bits [from, from + length) set. Length is between 1 and 64.
+     */
+    static long rangeMask(int from, int length) {
+        long bits = length == Long.SIZE ? -1L : (1L << length) - 1;
+        return bits << from;
+    }
+
+    /**
+     * Immutable bitmap of the booked nights of one room. Bit {@code day & 63} of
+     * {@code words[(day >> 6) - firstWord]} is set when the night starting on that day is booked; days
+     * outside the array are free.
+     */
+    private static final class RoomNights {
+        static final RoomNights EMPTY = new RoomNights(0, new long[0]);
+
+        private final int firstWord;
+        private final long[] words;
+
+        RoomNights(int firstWord, long[] words) {
+            this.firstWord = firstWord;
+            this.words = words;
+        }
+
+        boolean isFree(int checkInDay, int checkOutDay) {
+            int day = checkInDay;
+            while (day < checkOutDay) {
+                int word = day >> 6;
+                int wordEnd = Math.min(checkOutDay, (word + 1) << 6);
+                int index = word - firstWord;
+                if (index >= 0 && index < words.length
+                        && (words[index] & rangeMask(day & 63, wordEnd - day)) != 0) {
+                    return false;
+                }
+                day = wordEnd;
+            }
+            return true;
+        }
+
+        boolean markBookedNights(int fromDay, int toDay, long[] nights) {
+            boolean anyBooked = false;
+            int day = Math.max(fromDay, firstWord << 6);
+            int end = Math.min(toDay, (firstWord + words.length) << 6);
+            while (day < end) {
+                int word = day >> 6;
+                int wordEnd = Math.min(end, (word + 1) << 6);
+                long booked = (words[word - firstWord] >>> (day & 63)) & rangeMask(0, wordEnd - day);
+                while (booked != 0) {
+                    int night = day - fromDay + Long.numberOfTrailingZeros(booked);
+                    nights[night >> 6] |= 1L << night;
+                    booked &= booked - 1;
+                    anyBooked = true;
+                }
+                day = wordEnd;
+            }
+            return anyBooked;
+        }
+
+        /**
+         * @return          a copy with the nights [checkInDay, checkOutDay) cleared; they must be in the bitmap
+         */
+        RoomNights without(int checkInDay, int checkOutDay) {
+            long[] newWords = words.clone();
+            int day = checkInDay;
+            while (day < checkOutDay) {
+                int word = day >> 6;
+                int wordEnd = Math.min(checkOutDay, (word + 1) << 6);
+                newWords[word - firstWord] &= ~rangeMask(day & 63, wordEnd - day);
+                day = wordEnd;
+            }
+            return new RoomNights(firstWord, newWords);
+        }
+
+        RoomNights with(int checkInDay, int checkOutDay) {
+            int newFirstWord = checkInDay >> 6;
+            int newLastWord = (checkOutDay - 1) >> 6;
+            if (words.length > 0) {
+                newFirstWord = Math.min(newFirstWord, firstWord);
+                newLastWord = Math.max(newLastWord, firstWord + words.length - 1);
+            }
+            long[] newWords = new long[newLastWord - newFirstWord + 1];
+            if (words.length > 0) {
+                System.arraycopy(words, 0, newWords, firstWord - newFirstWord, words.length);
+            }
+            setNights(newWords, newFirstWord, checkInDay, checkOutDay);
+            return new RoomNights(newFirstWord, newWords);
+        }
+    }
+}
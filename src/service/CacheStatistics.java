@@ -0,0 +1,76 @@
+package service;
+
+/**
+ * CacheStatistics is a point-in-time copy of the counters of the availability cache.
+ *
+ * @author rachellai
+ */
+public final class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+    private final int capacity;
+
+    /**
+     * Constructor
+     *
+     * @param hits              searches answered from the cache
+     * @param misses            searches that had to scan the rooms
+     * @param evictions         entries dropped to make room
+     * @param invalidations     entries dropped because a booking or a new room changed them
+     * @param size              cached ranges
+     * @param capacity          maximum number of cached ranges
+     */
+    public CacheStatistics(long hits, long misses, long evictions, long invalidations, int size, int capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return          share of searches answered from the cache, 0 if there were none
+     */
+    public double getHitRate() {
+        long searches = hits + misses;
+        return searches == 0 ? 0 : (double) hits / searches;
+    }
+
+    /**
+     *
+     * @return          String of the cache counters
+     */
+    @Override
+    public String toString() {
+        return String.format("Availability cache: %d/%d ranges, %d hits, %d misses (%.1f%% hits), %d evictions, " +
+                "%d invalidations.", size, capacity, hits, misses, getHitRate() * 100, evictions, invalidations);
+    }
+}
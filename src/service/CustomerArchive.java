@@ -0,0 +1,54 @@
+package service;
+
+import model.Customer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * CustomerArchive holds customers restored from storage that the services materialize only when they are
+ * looked up, so startup doesn't have to build every Customer object. Archived customers are numbered from 0
+ * to size() - 1.
+ *
+ * @author rachellai
+ */
+public interface CustomerArchive {
+
+    /**
+     * @return              number of archived customers
+     */
+    int size();
+
+    /**
+     * @param email         customer's email
+     * @return              index of the archived customer, or -1 if there is none with this email
+     */
+    int indexOf(String email);
+
+    /**
+     * @param index         index of an archived customer
+     * @return              the customer
+     */
+    Customer customerAt(int index);
+
+    /**
+     * @param email         customer's email
+     * @return              the archived customer, or null if there is none with this email
+     */
+    default Customer find(String email) {
+        int index = indexOf(email);
+        return index < 0 ? null : customerAt(index);
+    }
+
+    /**
+     * @return              every archived customer
+     */
+    default Collection<Customer> findAll() {
+        List<Customer> customers = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            customers.add(customerAt(i));
+        }
+        return customers;
+    }
+}
@@ -1,26 +1,34 @@
 package service;
 import model.Customer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
- * CustomerService class keeps track of all customers
+ * CustomerService class keeps track of all customers. It is safe to use from many threads and lookups never
+ * take a lock.
  *
  * @author rachellai
  */
 
 public final class CustomerService {
 
-    private static CustomerService instance;
     private final Map<String, Customer> customers;
+    private final OrdinalSlots<Customer> registrationOrder;
+    private final List<MutationListener> listeners;
+    private volatile CustomerArchive archive;
+    private volatile CustomerArchive restoredCustomers;
     private CustomerService() {
-        this.customers = new HashMap<>();
+        this.customers = new ConcurrentHashMap<>();
+        this.registrationOrder = new OrdinalSlots<>();
+        this.listeners = new CopyOnWriteArrayList<>();
     }
 
     public static CustomerService getInstance() {
-        if (instance == null) {
-            instance = new CustomerService();
-        }
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     /**
@@ -32,11 +40,18 @@ public final class CustomerService {
      */
     public void addCustomer(String email, String firstName, String lastName) {
         Customer newCustomer = new Customer(firstName, lastName, email);
-        if (customers.containsKey(email)) {
-            throw new IllegalArgumentException("Customer with this email is " +
-                    "already registered.");
-        } else {
+        synchronized (registrationOrder) {
+            CustomerArchive currentArchive = archive;
+            if ((currentArchive != null && currentArchive.find(email) != null) || customers.containsKey(email)) {
+                throw new IllegalArgumentException("Customer with this email is " +
+                        "already registered.");
+            }
+            // Listeners are told before anyone can look the customer up and book for them.
+            for (MutationListener listener: listeners) {
+                listener.customerAdded(newCustomer);
+            }
             customers.put(email, newCustomer);
+            registrationOrder.add(newCustomer);
         }
     }
 
@@ -46,9 +61,21 @@ public final class CustomerService {
      * @return          customer if their email is already in the database
      */
     public Customer getCustomer(String customerEmail) {
-        if (this.customers.containsKey(customerEmail)) {
-            return this.customers.get(customerEmail);
-        } else {return null;}
+        if (customerEmail == null) {
+            return null;
+        }
+        Customer customer = this.customers.get(customerEmail);
+        CustomerArchive currentArchive = archive;
+        if (customer == null && currentArchive != null) {
+            customer = currentArchive.find(customerEmail);
+            if (customer != null) {
+                Customer existing = this.customers.putIfAbsent(customerEmail, customer);
+                if (existing != null) {
+                    customer = existing;
+                }
+            }
+        }
+        return customer;
     }
 
     /**
@@ -56,6 +83,137 @@ public final class CustomerService {
      * @return          all customers in the database
      */
     public Collection<Customer> getAllCustomers() {
-        return customers.values();
+        mergeArchive();
+        return Collections.unmodifiableCollection(customers.values());
+    }
+
+    /**
+     * Runs an action while no customer is being registered, so every customer passed to the listeners before it
+     * can already be looked up
+     *
+     * @param action        action to run, e.g. marking the point a snapshot is taken
+     */
+    public void runBetweenRegistrations(Runnable action) {
+        synchronized (registrationOrder) {
+            action.run();
+        }
+    }
+
+    /**
+     * Restores customers into an empty service. They are materialized when first looked up.
+     *
+     * @param customerArchive       archived customers
+     * @throws IllegalStateException if customers have already been added
+     */
+    public synchronized void restore(CustomerArchive customerArchive) {
+        if (! customers.isEmpty() || archive != null) {
+            throw new IllegalStateException("Customers can only be restored into an empty service.");
+        }
+        archive = customerArchive;
+        restoredCustomers = customerArchive;
+    }
+
+    /**
+     * Lists customers one page at a time: restored customers first, then the others in the order they
+     * registered. Customers registered after the first page are listed on later pages.
+     *
+     * @param search        text the email, first or last name must contain, ignoring case; null for everyone
+     * @param cursor        cursor from the previous page, or null for the first page
+     * @param pageSize      maximum number of customers on the page
+     * @return              page of customers
+     * @throws IllegalArgumentException if the cursor is invalid or the page size isn't positive
+     */
+    public Page<Customer> listCustomers(String search, String cursor, int pageSize) {
+        Page.checkPageSize(pageSize);
+        Predicate<Customer> matches = searchFilter(search);
+        List<Customer> page = new ArrayList<>(Math.min(pageSize, 1024));
+        int customerCount = customerCount();
+        int position = Page.position(cursor, 0);
+        for (; position < customerCount && page.size() < pageSize; position++) {
+            Customer customer = customerAt(position);
+            if (matches.test(customer)) {
+                page.add(customer);
+            }
+        }
+        return new Page<>(page, position < customerCount ? Page.cursor(position) : null);
+    }
+
+    /**
+     * Streams customers lazily in the same order as listCustomers
+     *
+     * @param search        text the email, first or last name must contain, ignoring case; null for everyone
+     * @return              stream of customers
+     */
+    public Stream<Customer> streamCustomers(String search) {
+        return IntStream.range(0, customerCount()).mapToObj(this::customerAt).filter(searchFilter(search));
+    }
+
+    private int customerCount() {
+        CustomerArchive restored = restoredCustomers;
+        return (restored == null ? 0 : restored.size()) + registrationOrder.size();
+    }
+
+    /**
+     * Customer at a listing position; restored customers come from the lookup map once they were looked up
+     */
+    private Customer customerAt(int position) {
+        CustomerArchive restored = restoredCustomers;
+        int restoredCount = restored == null ? 0 : restored.size();
+        if (position >= restoredCount) {
+            return registrationOrder.get(position - restoredCount);
+        }
+        Customer archived = restored.customerAt(position);
+        Customer existing = customers.get(archived.getEmail());
+        return existing != null ? existing : archived;
+    }
+
+    private static Predicate<Customer> searchFilter(String search) {
+        if (search == null || search.isEmpty()) {
+            return customer -> true;
+        }
+        String lowerCase = search.toLowerCase(Locale.ROOT);
+        return customer -> customer.getEmail().toLowerCase(Locale.ROOT).contains(lowerCase)
+                || customer.getFirstName().toLowerCase(Locale.ROOT).contains(lowerCase)
+                || customer.getLastName().toLowerCase(Locale.ROOT).contains(lowerCase);
+    }
+
+    /**
+     * Materializes every archived customer, after which lookups no longer consult the archive
+     */
+    private void mergeArchive() {
+        if (archive == null) {
+            return;
+        }
+        synchronized (this) {
+            if (archive != null) {
+                for (Customer customer: archive.findAll()) {
+                    customers.putIfAbsent(customer.getEmail(), customer);
+                }
+                archive = null;
+            }
+        }
+    }
+
+    /**
+     * Registers a listener that is told about every customer added from now on
+     *
+     * @param listener      MutationListener
+     */
+    public void addListener(MutationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener      MutationListener to stop notifying
+     */
+    public void removeListener(MutationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Creates the service on first use of getInstance; class initialization publishes it safely.
+     */
+    private static final class InstanceHolder {
+        private static final CustomerService INSTANCE = new CustomerService();
     }
 }
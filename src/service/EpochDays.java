@@ -0,0 +1,37 @@
+package service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * EpochDays converts between dates and day numbers counted from 1970-01-01 in the system time zone.
+ * Availability indexes work on day numbers so that a stay is simply the night range [checkIn, checkOut).
+ *
+ * @author rachellai
+ */
+public final class EpochDays {
+
+    private EpochDays() {
+    }
+
+    /**
+     * Day number of a date
+     *
+     * @param date          date
+     * @return              days since 1970-01-01 in the system time zone
+     */
+    public static int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Date at the start of a day number
+     *
+     * @param epochDay      days since 1970-01-01
+     * @return              date at midnight of that day in the system time zone
+     */
+    public static Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,228 @@
+package service;
+
+import java.util.*;
+
+/**
+ * IntervalAvailabilityIndex keeps the booked stays of every room in a balanced search tree ordered by check-in
+ * day, so a room can be checked for a date range, and a stay added or removed, in time logarithmic in the
+ * room's own bookings.
+ *
+ * The trees are immutable AVL trees: a change copies only the nodes on the path to the stay it touches and
+ * publishes the new root in one write, so readers never take a lock and see a room's stays before or after a
+ * change, never half of one. A move builds both changes on private copies before publishing.
+ *
+ * @author rachellai
+ */
+final class IntervalAvailabilityIndex implements AvailabilityIndex {
+    private final OrdinalSlots<Stay> roomStays = new OrdinalSlots<>();
+
+    @Override
+    public int addRoom() {
+        return roomStays.add(null);
+    }
+
+    @Override
+    public int addRooms(int count) {
+        return roomStays.addAll(Collections.nCopies(count, null));
+    }
+
+    @Override
+    public boolean isAvailable(int roomOrdinal, int checkInDay, int checkOutDay) {
+        return Stay.isFree(roomStays.get(roomOrdinal), checkInDay, checkOutDay);
+    }
+
+    @Override
+    public boolean markBookedNights(int roomOrdinal, int fromDay, int toDay, long[] nights) {
+        Stay root = roomStays.get(roomOrdinal);
+        // The stay checking in last before fromDay may still cover its first nights.
+        Stay previous = Stay.lastCheckInBefore(root, fromDay);
+        return Stay.markBookedNights(root, previous == null ? Integer.MIN_VALUE : previous.checkIn, fromDay, toDay,
+                nights);
+    }
+
+    @Override
+    public void occupy(int roomOrdinal, int checkInDay, int checkOutDay) {
+        roomStays.set(roomOrdinal, Stay.with(roomStays.get(roomOrdinal), checkInDay, checkOutDay));
+    }
+
+    @Override
+    public void release(int roomOrdinal, int checkInDay, int checkOutDay) {
+        roomStays.set(roomOrdinal, Stay.without(roomStays.get(roomOrdinal), checkInDay));
+    }
+
+    @Override
+    public boolean canMove(int roomOrdinal, int checkInDay, int checkOutDay, int newCheckInDay, int newCheckOutDay) {
+        return Stay.isFree(Stay.without(roomStays.get(roomOrdinal), checkInDay), newCheckInDay, newCheckOutDay);
+    }
+
+    @Override
+    public boolean move(int roomOrdinal, int checkInDay, int checkOutDay, int newCheckInDay, int newCheckOutDay) {
+        Stay others = Stay.without(roomStays.get(roomOrdinal), checkInDay);
+        if (! Stay.isFree(others, newCheckInDay, newCheckOutDay)) {
+            return false;
+        }
+        roomStays.set(roomOrdinal, Stay.with(others, newCheckInDay, newCheckOutDay));
+        return true;
+    }
+
+    @Override
+    public void restore(int roomOrdinal, int[] checkInDays, int[] checkOutDays, int from, int to) {
+        roomStays.set(roomOrdinal, Stay.build(checkInDays, checkOutDays, from, to));
+    }
+
+    /**
+     * Immutable node of a room's AVL tree of non-overlapping stays, ordered by check-in day. A null tree has no
+     * stays.
+     */
+    private static final class Stay {
+        private final int checkIn;
+        private final int checkOut;
+        private final Stay left;
+        private final Stay right;
+        private final int height;
+
+        Stay(int checkIn, int checkOut, Stay left, Stay right) {
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+
+        static boolean isFree(Stay root, int checkInDay, int checkOutDay) {
+            Stay previous = lastCheckInBefore(root, checkOutDay);
+            return previous == null || previous.checkOut <= checkInDay;
+        }
+
+        /**
+         * @return          the stay checking in last before the given day, or null if there is none
+         */
+        static Stay lastCheckInBefore(Stay root, int day) {
+            Stay found = null;
+            for (Stay node = root; node != null; ) {
+                if (node.checkIn < day) {
+                    found = node;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Marks the nights in [fromDay, toDay) of the stays checking in from firstCheckIn on and before toDay,
+         * skipping the subtrees that hold none of them
+         */
+        static boolean markBookedNights(Stay node, int firstCheckIn, int fromDay, int toDay, long[] nights) {
+            if (node == null) {
+                return false;
+            }
+            boolean anyBooked = false;
+            if (node.checkIn > firstCheckIn) {
+                anyBooked = markBookedNights(node.left, firstCheckIn, fromDay, toDay, nights);
+            }
+            if (node.checkIn >= toDay) {
+                return anyBooked;
+            }
+            if (node.checkIn >= firstCheckIn) {
+                int from = Math.max(fromDay, node.checkIn);
+                int to = Math.min(toDay, node.checkOut);
+                if (from < to) {
+                    BitsetAvailabilityIndex.setNights(nights, 0, from - fromDay, to - fromDay);
+                    anyBooked = true;
+                }
+            }
+            return markBookedNights(node.right, firstCheckIn, fromDay, toDay, nights) || anyBooked;
+        }
+
+        /**
+         * @return          the tree with one more stay
+         */
+        static Stay with(Stay node, int checkInDay, int checkOutDay) {
+            if (node == null) {
+                return new Stay(checkInDay, checkOutDay, null, null);
+            }
+            if (checkInDay < node.checkIn) {
+                return balance(node.checkIn, node.checkOut, with(node.left, checkInDay, checkOutDay), node.right);
+            }
+            return balance(node.checkIn, node.checkOut, node.left, with(node.right, checkInDay, checkOutDay));
+        }
+
+        /**
+         * @return          the tree without the stay checking in on the given day
+         */
+        static Stay without(Stay node, int checkInDay) {
+            if (node == null) {
+                return null;
+            }
+            if (checkInDay < node.checkIn) {
+                return balance(node.checkIn, node.checkOut, without(node.left, checkInDay), node.right);
+            }
+            if (checkInDay > node.checkIn) {
+                return balance(node.checkIn, node.checkOut, node.left, without(node.right, checkInDay));
+            }
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Stay next = node.right;
+            while (next.left != null) {
+                next = next.left;
+            }
+            return balance(next.checkIn, next.checkOut, node.left, withoutFirst(node.right));
+        }
+
+        /**
+         * Builds a balanced tree from stays sorted by check-in day
+         */
+        static Stay build(int[] checkInDays, int[] checkOutDays, int from, int to) {
+            if (from >= to) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            return new Stay(checkInDays[middle], checkOutDays[middle], build(checkInDays, checkOutDays, from, middle),
+                    build(checkInDays, checkOutDays, middle + 1, to));
+        }
+
+        private static Stay withoutFirst(Stay node) {
+            if (node.left == null) {
+                return node.right;
+            }
+            return balance(node.checkIn, node.checkOut, withoutFirst(node.left), node.right);
+        }
+
+        /**
+         * Makes a node from subtrees whose heights differ by at most two, rotating once or twice when they
+         * differ by two
+         */
+        private static Stay balance(int checkIn, int checkOut, Stay left, Stay right) {
+            if (height(left) > height(right) + 1) {
+                if (height(left.left) >= height(left.right)) {
+                    return new Stay(left.checkIn, left.checkOut, left.left,
+                            new Stay(checkIn, checkOut, left.right, right));
+                }
+                Stay pivot = left.right;
+                return new Stay(pivot.checkIn, pivot.checkOut,
+                        new Stay(left.checkIn, left.checkOut, left.left, pivot.left),
+                        new Stay(checkIn, checkOut, pivot.right, right));
+            }
+            if (height(right) > height(left) + 1) {
+                if (height(right.right) >= height(right.left)) {
+                    return new Stay(right.checkIn, right.checkOut, new Stay(checkIn, checkOut, left, right.left),
+                            right.right);
+                }
+                Stay pivot = right.left;
+                return new Stay(pivot.checkIn, pivot.checkOut, new Stay(checkIn, checkOut, left, pivot.left),
+                        new Stay(right.checkIn, right.checkOut, pivot.right, right.right));
+            }
+            return new Stay(checkIn, checkOut, left, right);
+        }
+
+        private static int height(Stay node) {
+            return node == null ? 0 : node.height;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomType;
+
+import java.util.List;
+
+/**
+ * MutationListener is told about every change made through CustomerService and ReservationService after the
+ * change has been checked and before it is applied, while the service holds the lock that orders the change:
+ * the locks of the booked rooms, the lock of the room table, the customer registration lock or the rate
+ * calendar's lock. Listeners therefore see the changes of any one room, customer or room type in the order
+ * they are applied, and a customer or room before any change that depends on it.
+ *
+ * A listener that throws stops the change: it is not applied, the listeners after it are not told, and the
+ * exception reaches the caller. A journal can therefore make a change durable before anyone sees it, by
+ * writing it while it is told and being registered before listeners that pass changes on. Listeners that only
+ * pass changes on must not block for long, since the service holds its lock meanwhile.
+ *
+ * @author rachellai
+ */
+public interface MutationListener {
+
+    /**
+     * @param customer          customer that was registered
+     */
+    default void customerAdded(Customer customer) {
+    }
+
+    /**
+     * @param room              room that was added
+     */
+    default void roomAdded(IRoom room) {
+    }
+
+    /**
+     * Called instead of roomAdded for rooms that were added together
+     *
+     * @param rooms             rooms that were added, in order
+     */
+    default void roomsAdded(List<IRoom> rooms) {
+        for (IRoom room: rooms) {
+            roomAdded(room);
+        }
+    }
+
+    /**
+     * @param reservation       reservation that was made
+     */
+    default void reservationAdded(Reservation reservation) {
+    }
+
+    /**
+     * Called instead of reservationAdded for the reservations of one group booking, which were made together
+     *
+     * @param reservations      reservations that were made, in room order
+     */
+    default void reservationsAdded(List<Reservation> reservations) {
+        for (Reservation reservation: reservations) {
+            reservationAdded(reservation);
+        }
+    }
+
+    /**
+     * @param reservation       reservation that was cancelled
+     */
+    default void reservationCancelled(Reservation reservation) {
+    }
+
+    /**
+     * @param previous          reservation with its old dates
+     * @param changed           the same booking with its new dates
+     */
+    default void reservationChanged(Reservation previous, Reservation changed) {
+    }
+
+    /**
+     * Called with the whole new calendar of a room type whenever rates of its nights are set
+     *
+     * @param roomType          room type
+     * @param firstDay          epoch day of the first night with a rate
+     * @param nightlyRates      rate of each night from firstDay on, in basis points of the room price, or no
+     *                          rates if the calendar was cleared; must not be changed
+     */
+    default void ratesChanged(RoomType roomType, int firstDay, int[] nightlyRates) {
+    }
+}
@@ -0,0 +1,176 @@
+package service;
+
+import model.RoomType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * OccupancyAnalytics builds an OccupancyReport from the booking columns with fork/join. The rows of each
+ * partition's store are split between the workers of the common pool, and each task fills its own partial
+ * histogram of the nights in the range, so the workers share nothing until the partials are added up on the way
+ * back.
+ *
+ * A stay adds to its histogram at its first and last night in the range only: one count and one price at the
+ * first night, taken off again after the last. Running sums over the nights then give the rooms booked and the
+ * room prices booked on every night, so a booking costs the same however long it is. Rooms' prices and types
+ * are read from the attribute columns, and no Reservation or IRoom is created.
+ *
+ * @author rachellai
+ */
+final class OccupancyAnalytics {
+    /**
+     * Rows a task scans without splitting further
+     */
+    private static final int MIN_ROWS_PER_TASK = 1 << 14;
+    /**
+     * Tasks a worker may leave waiting before it stops splitting; more are only worth it for stealing
+     */
+    private static final int SURPLUS_TASKS = 3;
+    private static final int MAX_NIGHTS = 3_660;
+    private static final int ROOM_TYPES = RoomType.values().length;
+
+    private OccupancyAnalytics() {
+    }
+
+    /**
+     * Reports on the nights [fromDay, toDay) from every booking made so far
+     *
+     * @param stores            booking columns of every partition
+     * @param roomAttributes    room prices and types
+     * @param rateCalendar      nightly rates
+     * @param fromDay           epoch day of the first night
+     * @param toDay             epoch day after the last night
+     * @return                  the report
+     * @throws IllegalArgumentException if the range is empty or longer than ten years
+     */
+    static OccupancyReport report(ReservationStore[] stores, RoomAttributeIndex roomAttributes,
+                                  RateCalendar rateCalendar, int fromDay, int toDay) {
+        if (toDay <= fromDay) {
+            throw new IllegalArgumentException("The end of the report should be after its start.");
+        }
+        if (toDay - fromDay > MAX_NIGHTS) {
+            throw new IllegalArgumentException("A report can cover at most " + MAX_NIGHTS + " nights.");
+        }
+        int[] roomCounts = roomAttributes.countByType();
+        Histogram histogram = new Histogram(toDay - fromDay);
+        for (ReservationStore reservations: stores) {
+            histogram.add(ForkJoinPool.commonPool().invoke(
+                    new HistogramTask(reservations, roomAttributes, fromDay, toDay, 0, reservations.size())));
+        }
+        int nights = toDay - fromDay;
+        int[][] occupiedRooms = new int[ROOM_TYPES][nights];
+        double[][] revenue = new double[ROOM_TYPES][nights];
+        for (int type = 0; type < ROOM_TYPES; type++) {
+            int rooms = 0;
+            long cents = 0;
+            for (int night = 0; night < nights; night++) {
+                rooms += histogram.roomChanges[type][night];
+                cents += histogram.centChanges[type][night];
+                occupiedRooms[type][night] = rooms;
+                revenue[type][night] = cents / 100.0 * rateCalendar.rateSum(type, fromDay + night,
+                        fromDay + night + 1) / RateCalendar.STANDARD_RATE;
+            }
+        }
+        return new OccupancyReport(fromDay, roomCounts, occupiedRooms, revenue, histogram.stays,
+                histogram.nightsOfStays);
+    }
+
+    /**
+     * Changes in the rooms and room prices booked from one night to the next, and the stays begun, of some rows
+     */
+    private static final class Histogram {
+        private final int[][] roomChanges;
+        private final long[][] centChanges;
+        private long stays;
+        private long nightsOfStays;
+
+        Histogram(int nights) {
+            roomChanges = new int[ROOM_TYPES][nights + 1];
+            centChanges = new long[ROOM_TYPES][nights + 1];
+        }
+
+        void add(Histogram other) {
+            for (int type = 0; type < ROOM_TYPES; type++) {
+                for (int night = 0; night < roomChanges[type].length; night++) {
+                    roomChanges[type][night] += other.roomChanges[type][night];
+                    centChanges[type][night] += other.centChanges[type][night];
+                }
+            }
+            stays += other.stays;
+            nightsOfStays += other.nightsOfStays;
+        }
+    }
+
+    /**
+     * Fills a histogram from the rows [fromRow, toRow). While its worker has few tasks waiting it forks off the
+     * upper half of what is left; it scans the rest itself and adds in the forked halves as they finish.
+     */
+    private static final class HistogramTask extends RecursiveTask<Histogram> {
+        private static final long serialVersionUID = 1L;
+        private final ReservationStore reservations;
+        private final RoomAttributeIndex roomAttributes;
+        private final int fromDay;
+        private final int toDay;
+        private final int fromRow;
+        private final int toRow;
+
+        HistogramTask(ReservationStore reservations, RoomAttributeIndex roomAttributes, int fromDay, int toDay,
+                      int fromRow, int toRow) {
+            this.reservations = reservations;
+            this.roomAttributes = roomAttributes;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected Histogram compute() {
+            List<HistogramTask> forked = new ArrayList<>();
+            int endRow = toRow;
+            while (endRow - fromRow > MIN_ROWS_PER_TASK && getSurplusQueuedTaskCount() <= SURPLUS_TASKS) {
+                int middleRow = (fromRow + endRow) >>> 1;
+                HistogramTask upperHalf = new HistogramTask(reservations, roomAttributes, fromDay, toDay,
+                        middleRow, endRow);
+                upperHalf.fork();
+                forked.add(upperHalf);
+                endRow = middleRow;
+            }
+            Histogram histogram = new Histogram(toDay - fromDay);
+            scan(histogram, endRow);
+            for (int i = forked.size() - 1; i >= 0; i--) {
+                histogram.add(forked.get(i).join());
+            }
+            return histogram;
+        }
+
+        private void scan(Histogram histogram, int endRow) {
+            for (int row = fromRow; row < endRow; row++) {
+                if (reservations.isCancelled(row)) {
+                    continue;
+                }
+                int checkInDay = reservations.checkInDay(row);
+                int checkOutDay = reservations.checkOutDay(row);
+                if (checkInDay >= fromDay && checkInDay < toDay) {
+                    histogram.stays++;
+                    histogram.nightsOfStays += checkOutDay - checkInDay;
+                }
+                int firstNight = Math.max(checkInDay, fromDay) - fromDay;
+                int endNight = Math.min(checkOutDay, toDay) - fromDay;
+                if (firstNight >= endNight) {
+                    continue;
+                }
+                int roomOrdinal = reservations.roomOrdinal(row);
+                int type = roomAttributes.roomTypeOf(roomOrdinal);
+                long cents = Math.round(roomAttributes.priceOf(roomOrdinal) * 100);
+                histogram.roomChanges[type][firstNight]++;
+                histogram.roomChanges[type][endNight]--;
+                histogram.centChanges[type][firstNight] += cents;
+                histogram.centChanges[type][endNight] -= cents;
+            }
+        }
+    }
+}
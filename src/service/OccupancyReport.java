@@ -0,0 +1,226 @@
+package service;
+
+import model.RoomType;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * OccupancyReport holds the rooms occupied and the revenue earned on each night of a range, by room type, and the
+ * stays that began in the range. Occupancy rates, revenue and lengths of stay per night, per room type and per
+ * month are all read from these nightly totals.
+ *
+ * A night's revenue is the price of every room booked that night at that night's rate, the same prices a stay
+ * is quoted at. The rooms a rate is counted against are the rooms there were when the report was made.
+ *
+ * @author rachellai
+ */
+public final class OccupancyReport {
+    private static final RoomType[] ROOM_TYPES = RoomType.values();
+
+    private final int firstDay;
+    private final int[] roomCounts;
+    private final int[][] occupiedRooms;
+    private final double[][] revenue;
+    private final long stays;
+    private final long nightsOfStays;
+
+    /**
+     * Constructor
+     *
+     * @param firstDay          epoch day of the first night
+     * @param roomCounts        rooms of each type, indexed by room type ordinal
+     * @param occupiedRooms     booked rooms of each type on each night, indexed by type ordinal and night
+     * @param revenue           revenue from each type on each night, indexed by type ordinal and night
+     * @param stays             stays that began in the range
+     * @param nightsOfStays     nights of those stays, including nights after the range
+     */
+    OccupancyReport(int firstDay, int[] roomCounts, int[][] occupiedRooms, double[][] revenue, long stays,
+                    long nightsOfStays) {
+        this.firstDay = firstDay;
+        this.roomCounts = roomCounts;
+        this.occupiedRooms = occupiedRooms;
+        this.revenue = revenue;
+        this.stays = stays;
+        this.nightsOfStays = nightsOfStays;
+    }
+
+    public Date getFrom() {
+        return EpochDays.toDate(firstDay);
+    }
+
+    /**
+     * @return          the night after the last one
+     */
+    public Date getTo() {
+        return EpochDays.toDate(firstDay + getNights());
+    }
+
+    /**
+     * @return          number of nights in the report
+     */
+    public int getNights() {
+        return occupiedRooms[0].length;
+    }
+
+    /**
+     * @param roomType      room type, or null for all rooms
+     * @return              number of rooms
+     */
+    public int getRoomCount(RoomType roomType) {
+        return roomType == null ? Arrays.stream(roomCounts).sum() : roomCounts[roomType.ordinal()];
+    }
+
+    /**
+     * @return          share of the room-nights of the range that were booked
+     */
+    public double getOccupancyRate() {
+        return occupancyRate(null, 0, getNights());
+    }
+
+    /**
+     * @param night         a night in the range
+     * @return              share of the rooms booked that night
+     * @throws IllegalArgumentException if the night is outside the range
+     */
+    public double getOccupancyRate(Date night) {
+        int index = nightIndex(night);
+        return occupancyRate(null, index, index + 1);
+    }
+
+    /**
+     * @param roomType      room type
+     * @return              share of the room-nights of that type that were booked
+     */
+    public double getOccupancyRate(RoomType roomType) {
+        return occupancyRate(roomType, 0, getNights());
+    }
+
+    /**
+     * @param month         a month, which may be partly outside the range
+     * @return              share of the room-nights of the month in the range that were booked
+     */
+    public double getOccupancyRate(YearMonth month) {
+        return occupancyRate(null, monthStart(month), monthEnd(month));
+    }
+
+    /**
+     * @return          revenue of every night in the range
+     */
+    public double getRevenue() {
+        return revenue(null, 0, getNights());
+    }
+
+    /**
+     * @param roomType      room type
+     * @return              revenue from rooms of that type
+     */
+    public double getRevenue(RoomType roomType) {
+        return revenue(roomType, 0, getNights());
+    }
+
+    /**
+     * @param month         a month, which may be partly outside the range
+     * @return              revenue of the nights of the month in the range
+     */
+    public double getRevenue(YearMonth month) {
+        return revenue(null, monthStart(month), monthEnd(month));
+    }
+
+    /**
+     * @return          number of stays that began in the range
+     */
+    public long getStays() {
+        return stays;
+    }
+
+    /**
+     * @return          average nights of the stays that began in the range, 0 if there were none
+     */
+    public double getAverageLengthOfStay() {
+        return stays == 0 ? 0 : (double) nightsOfStays / stays;
+    }
+
+    /**
+     * @return          months the range covers, in order
+     */
+    public List<YearMonth> getMonths() {
+        List<YearMonth> months = new ArrayList<>();
+        YearMonth last = YearMonth.from(LocalDate.ofEpochDay(firstDay + getNights() - 1));
+        for (YearMonth month = YearMonth.from(LocalDate.ofEpochDay(firstDay)); ! month.isAfter(last);
+             month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    private double occupancyRate(RoomType roomType, int fromNight, int toNight) {
+        long roomNights = (long) getRoomCount(roomType) * (toNight - fromNight);
+        if (roomNights <= 0) {
+            return 0;
+        }
+        long occupied = 0;
+        for (int type = 0; type < ROOM_TYPES.length; type++) {
+            if (roomType == null || roomType.ordinal() == type) {
+                for (int night = fromNight; night < toNight; night++) {
+                    occupied += occupiedRooms[type][night];
+                }
+            }
+        }
+        return (double) occupied / roomNights;
+    }
+
+    private double revenue(RoomType roomType, int fromNight, int toNight) {
+        double total = 0;
+        for (int type = 0; type < ROOM_TYPES.length; type++) {
+            if (roomType == null || roomType.ordinal() == type) {
+                for (int night = fromNight; night < toNight; night++) {
+                    total += revenue[type][night];
+                }
+            }
+        }
+        return total;
+    }
+
+    private int nightIndex(Date night) {
+        int index = EpochDays.toEpochDay(night) - firstDay;
+        if (index < 0 || index >= getNights()) {
+            throw new IllegalArgumentException("The night is outside the report.");
+        }
+        return index;
+    }
+
+    private int monthStart(YearMonth month) {
+        return (int) Math.min(getNights(), Math.max(0, month.atDay(1).toEpochDay() - firstDay));
+    }
+
+    private int monthEnd(YearMonth month) {
+        return (int) Math.min(getNights(), Math.max(0, month.atEndOfMonth().toEpochDay() + 1 - firstDay));
+    }
+
+    /**
+     *
+     * @return          String of the occupancy and revenue of each month and room type, and of the whole range
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Occupancy from %s to %s (%d nights, %d rooms)%n",
+                LocalDate.ofEpochDay(firstDay), LocalDate.ofEpochDay(firstDay + getNights()), getNights(),
+                getRoomCount(null)));
+        report.append(String.format("%-10s %10s %14s%n", "", "Occupancy", "Revenue"));
+        for (YearMonth month: getMonths()) {
+            report.append(String.format("%-10s %9.1f%% %14.2f%n", month, getOccupancyRate(month) * 100,
+                    getRevenue(month)));
+        }
+        for (RoomType roomType: ROOM_TYPES) {
+            report.append(String.format("%-10s %9.1f%% %14.2f%n", roomType, getOccupancyRate(roomType) * 100,
+                    getRevenue(roomType)));
+        }
+        report.append(String.format("%-10s %9.1f%% %14.2f%n", "Total", getOccupancyRate() * 100, getRevenue()));
+        report.append(String.format("%d stays began in the range, %.2f nights on average.", stays,
+                getAverageLengthOfStay()));
+        return report.toString();
+    }
+}
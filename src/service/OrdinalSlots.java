@@ -0,0 +1,88 @@
+package service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * OrdinalSlots is a growable array with one slot per ordinal, e.g. per room. Slots live in fixed-size chunks that
+ * are never copied, so a slot written by one thread is never lost while another thread adds slots, and reads take
+ * no lock.
+ *
+ * @param <T>       type of the per-ordinal value
+ * @author rachellai
+ */
+final class OrdinalSlots<T> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicReferenceArray<T>[] chunks = newChunks(0);
+    private volatile int size;
+
+    /**
+     * Appends a slot for the next ordinal
+     *
+     * @param value         initial value of the slot
+     * @return              ordinal of the new slot
+     */
+    synchronized int add(T value) {
+        int ordinal = size;
+        int chunk = ordinal >> CHUNK_BITS;
+        if (chunk == chunks.length) {
+            AtomicReferenceArray<T>[] newChunks = newChunks(chunk + 1);
+            System.arraycopy(chunks, 0, newChunks, 0, chunk);
+            newChunks[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            chunks = newChunks;
+        }
+        chunks[chunk].set(ordinal & CHUNK_MASK, value);
+        size = ordinal + 1;
+        return ordinal;
+    }
+
+    /**
+     * Appends slots for the next ordinals and publishes them together
+     *
+     * @param values        initial values of the slots
+     * @return              ordinal of the first new slot
+     */
+    synchronized int addAll(List<? extends T> values) {
+        int first = size;
+        int end = first + values.size();
+        int chunkCount = (end + CHUNK_MASK) >> CHUNK_BITS;
+        if (chunkCount > chunks.length) {
+            AtomicReferenceArray<T>[] newChunks = newChunks(chunkCount);
+            System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+            for (int chunk = chunks.length; chunk < chunkCount; chunk++) {
+                newChunks[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            }
+            chunks = newChunks;
+        }
+        int ordinal = first;
+        for (T value: values) {
+            chunks[ordinal >> CHUNK_BITS].set(ordinal & CHUNK_MASK, value);
+            ordinal++;
+        }
+        size = end;
+        return first;
+    }
+
+    T get(int ordinal) {
+        return chunks[ordinal >> CHUNK_BITS].get(ordinal & CHUNK_MASK);
+    }
+
+    void set(int ordinal, T value) {
+        chunks[ordinal >> CHUNK_BITS].set(ordinal & CHUNK_MASK, value);
+    }
+
+    /**
+     * @return          number of slots added so far
+     */
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> AtomicReferenceArray<T>[] newChunks(int length) {
+        return (AtomicReferenceArray<T>[]) new AtomicReferenceArray[length];
+    }
+}
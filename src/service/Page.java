@@ -0,0 +1,105 @@
+package service;
+
+import java.util.List;
+
+/**
+ * Page is one slice of a listing and the cursor to continue it. Cursors are opaque strings that stay valid
+ * while the listing grows: items added later never shift the items of pages already handed out.
+ *
+ * @param <T>       type of the listed items
+ * @author rachellai
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    /**
+     * Constructor
+     *
+     * @param items             items of this page
+     * @param nextCursor        cursor of the next page, or null if this is the last one
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return          cursor to pass to get the next page, or null if there are no more items
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Reads a cursor handed out with an earlier page
+     *
+     * @param cursor            cursor, or null for the first page
+     * @param first             position of the first item
+     * @return                  position the cursor points at
+     * @throws IllegalArgumentException if the cursor was not handed out by a listing
+     */
+    static int position(String cursor, int first) {
+        if (cursor == null) {
+            return first;
+        }
+        try {
+            return Integer.parseInt(cursor);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Reads a cursor of a listing whose positions don't fit an int
+     *
+     * @param cursor            cursor, or null for the first page
+     * @param first             position of the first item
+     * @return                  position the cursor points at
+     * @throws IllegalArgumentException if the cursor was not handed out by a listing
+     */
+    static long position(String cursor, long first) {
+        if (cursor == null) {
+            return first;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+    }
+
+    /**
+     * @param position          position the next page starts at
+     * @return                  cursor of that position
+     */
+    static String cursor(int position) {
+        return Integer.toString(position);
+    }
+
+    /**
+     * @param position          position the next page starts at
+     * @return                  cursor of that position
+     */
+    static String cursor(long position) {
+        return Long.toString(position);
+    }
+
+    /**
+     * @param pageSize          requested page size
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    static void checkPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size should be at least 1.");
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package service;
+
+import model.IRoom;
+import model.RoomType;
+
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * RateCalendar prices each night of a stay. Every room type has a calendar of nightly rates, each a multiple of
+ * a room's own price: 1.0 by default, and whatever was set for a season or for some days of the week. Rates are
+ * kept as whole basis points (1.0 is 10000) in a primitive array together with their running sums, so the total
+ * of a stay of any length is two array reads and one multiplication.
+ *
+ * Setting rates is rare and serialized; it builds new arrays and publishes them at once, so quotes never take a
+ * lock and never see half of a change. Every change is passed on to the service's listeners as the whole new
+ * calendar of the room type, so the journal and replicas record state, not edits, and replaying it twice is
+ * harmless.
+ *
+ * @author rachellai
+ */
+public final class RateCalendar {
+    /**
+     * Rate of a night at a room's own price, in basis points
+     */
+    static final int STANDARD_RATE = 10_000;
+    private static final int MAX_DAYS = 3_660;
+    private static final double MAX_RATE = 100;
+
+    private final List<MutationListener> listeners;
+    private volatile Rates[] ratesByRoomType = new Rates[RoomType.values().length];
+
+    /**
+     * Constructor
+     *
+     * @param listeners     listeners of the service to tell about every change of rates
+     */
+    RateCalendar(List<MutationListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * Sets the rate of every night in a range for a room type
+     *
+     * @param roomType      room type
+     * @param from          first night
+     * @param to            night after the last one
+     * @param rate          multiple of the room price, e.g. 1.25 for 25% more
+     * @throws IllegalArgumentException if the range is empty, the rate is negative or over 100, or the
+     *                                  calendar would span more than ten years
+     */
+    public void setRate(RoomType roomType, Date from, Date to, double rate) {
+        setRate(roomType, from, to, EnumSet.allOf(DayOfWeek.class), rate);
+    }
+
+    /**
+     * Sets the rate of the nights in a range that fall on some days of the week, e.g. weekends
+     *
+     * @param roomType      room type
+     * @param from          first night
+     * @param to            night after the last one
+     * @param daysOfWeek    days of the week whose nights get the rate
+     * @param rate          multiple of the room price, e.g. 1.25 for 25% more
+     * @throws IllegalArgumentException if the range is empty, the rate is negative or over 100, or the
+     *                                  calendar would span more than ten years
+     */
+    public synchronized void setRate(RoomType roomType, Date from, Date to, Set<DayOfWeek> daysOfWeek,
+                                     double rate) {
+        int fromDay = EpochDays.toEpochDay(from);
+        int toDay = EpochDays.toEpochDay(to);
+        if (toDay <= fromDay) {
+            throw new IllegalArgumentException("The last night should be after the first one.");
+        }
+        if (! (rate >= 0 && rate <= MAX_RATE)) {
+            throw new IllegalArgumentException("A rate should be between 0 and " + (int) MAX_RATE +
+                    " times the room price.");
+        }
+        Rates current = ratesByRoomType[roomType.ordinal()];
+        int firstDay = current == null ? fromDay : Math.min(current.firstDay, fromDay);
+        int endDay = current == null ? toDay : Math.max(current.endDay(), toDay);
+        if ((long) endDay - firstDay > MAX_DAYS) {
+            throw new IllegalArgumentException("Rates can be set for at most " + MAX_DAYS + " days.");
+        }
+        int[] nightlyRates = new int[endDay - firstDay];
+        Arrays.fill(nightlyRates, STANDARD_RATE);
+        if (current != null) {
+            System.arraycopy(current.nightlyRates, 0, nightlyRates, current.firstDay - firstDay,
+                    current.nightlyRates.length);
+        }
+        int basisPoints = (int) Math.round(rate * STANDARD_RATE);
+        for (int day = fromDay; day < toDay; day++) {
+            if (daysOfWeek.contains(dayOfWeek(day))) {
+                nightlyRates[day - firstDay] = basisPoints;
+            }
+        }
+        publish(roomType, new Rates(firstDay, nightlyRates));
+    }
+
+    /**
+     * Replaces the calendar of a room type with rates recorded by ratesChanged or forEachRates, e.g. on replay
+     *
+     * @param roomType      room type
+     * @param firstDay      epoch day of the first night with a rate
+     * @param nightlyRates  rate of each night from firstDay on, in basis points of the room price
+     * @throws IllegalArgumentException if a rate is negative or over 100 times the room price, or the calendar
+     *                                  spans more than ten years
+     */
+    public synchronized void restoreRates(RoomType roomType, int firstDay, int[] nightlyRates) {
+        if (nightlyRates.length > MAX_DAYS) {
+            throw new IllegalArgumentException("Rates can be set for at most " + MAX_DAYS + " days.");
+        }
+        for (int rate: nightlyRates) {
+            if (rate < 0 || rate > MAX_RATE * STANDARD_RATE) {
+                throw new IllegalArgumentException("A rate should be between 0 and " + (int) MAX_RATE +
+                        " times the room price.");
+            }
+        }
+        publish(roomType, nightlyRates.length == 0 ? null : new Rates(firstDay, nightlyRates.clone()));
+    }
+
+    /**
+     * Runs an action while no rates are being set, so every change of rates passed to the listeners before it
+     * is already in the calendar
+     *
+     * @param action        action to run, e.g. marking the point a snapshot is taken
+     */
+    public synchronized void runBetweenChanges(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * Visits the calendar of every room type that has rates set, e.g. to write them to a checkpoint
+     *
+     * @param visitor       called once per room type with its rates; the array must not be changed
+     */
+    public void forEachRates(RatesVisitor visitor) {
+        Rates[] current = ratesByRoomType;
+        for (RoomType roomType: RoomType.values()) {
+            Rates rates = current[roomType.ordinal()];
+            if (rates != null) {
+                visitor.visit(roomType, rates.firstDay, rates.nightlyRates);
+            }
+        }
+    }
+
+    /**
+     * Tells the listeners about the new calendar of a room type and then publishes it, while still holding the
+     * calendar's lock, so they see changes of rates in the order they were made and a listener that fails
+     * leaves the old calendar in place. Callers hold the lock.
+     */
+    private void publish(RoomType roomType, Rates rates) {
+        int firstDay = rates == null ? 0 : rates.firstDay;
+        int[] nightlyRates = rates == null ? new int[0] : rates.nightlyRates;
+        for (MutationListener listener: listeners) {
+            listener.ratesChanged(roomType, firstDay, nightlyRates);
+        }
+        Rates[] updated = ratesByRoomType.clone();
+        updated[roomType.ordinal()] = rates;
+        ratesByRoomType = updated;
+    }
+
+    /**
+     * @param room          IRoom
+     * @param night         night of the stay
+     * @return              price of the room for that night
+     */
+    public double nightlyPrice(IRoom room, Date night) {
+        int day = EpochDays.toEpochDay(night);
+        return price(room.getRoomPrice(), rateSum(room.getRoomType().ordinal(), day, day + 1));
+    }
+
+    /**
+     * Totals the nightly prices of a stay in constant time
+     *
+     * @param room          IRoom
+     * @param checkIn       check-in date
+     * @param checkOut      check-out date
+     * @return              price of the room for the nights [checkIn, checkOut)
+     * @throws IllegalArgumentException if check-out isn't after check-in
+     */
+    public double quote(IRoom room, Date checkIn, Date checkOut) {
+        int checkInDay = EpochDays.toEpochDay(checkIn);
+        int checkOutDay = EpochDays.toEpochDay(checkOut);
+        if (checkOutDay <= checkInDay) {
+            throw new IllegalArgumentException("Check-out date should be later than check-in date.");
+        }
+        return price(room.getRoomPrice(), rateSum(room.getRoomType().ordinal(), checkInDay, checkOutDay));
+    }
+
+    /**
+     * Sums the nightly rates of a stay in basis points: nights outside the calendar are at the standard rate
+     *
+     * @param roomTypeOrdinal   ordinal of the room type
+     * @param checkInDay        check-in epoch day
+     * @param checkOutDay       check-out epoch day, after check-in
+     * @return                  sum of the rates of the nights [checkInDay, checkOutDay)
+     */
+    long rateSum(int roomTypeOrdinal, int checkInDay, int checkOutDay) {
+        Rates rates = ratesByRoomType[roomTypeOrdinal];
+        long nights = (long) checkOutDay - checkInDay;
+        if (rates == null) {
+            return nights * STANDARD_RATE;
+        }
+        int from = Math.min(Math.max(checkInDay, rates.firstDay), rates.endDay());
+        int to = Math.min(Math.max(checkOutDay, rates.firstDay), rates.endDay());
+        long inCalendar = rates.prefixSums[to - rates.firstDay] - rates.prefixSums[from - rates.firstDay];
+        return inCalendar + (nights - (to - from)) * STANDARD_RATE;
+    }
+
+    /**
+     * @param roomPrice     price of a room at the standard rate
+     * @param rateSum       sum of nightly rates in basis points
+     * @return              price of those nights
+     */
+    static double price(double roomPrice, long rateSum) {
+        return roomPrice * rateSum / STANDARD_RATE;
+    }
+
+    private static DayOfWeek dayOfWeek(int epochDay) {
+        // 1970-01-01 was a Thursday.
+        return DayOfWeek.of(Math.floorMod(epochDay + 3, 7) + 1);
+    }
+
+    /**
+     * Nightly rates of one room type from firstDay on, and their running sums
+     */
+    private static final class Rates {
+        private final int firstDay;
+        private final int[] nightlyRates;
+        /**
+         * prefixSums[i] is the sum of the first i nightly rates
+         */
+        private final long[] prefixSums;
+
+        Rates(int firstDay, int[] nightlyRates) {
+            this.firstDay = firstDay;
+            this.nightlyRates = nightlyRates;
+            this.prefixSums = new long[nightlyRates.length + 1];
+            for (int i = 0; i < nightlyRates.length; i++) {
+                prefixSums[i + 1] = prefixSums[i] + nightlyRates[i];
+            }
+        }
+
+        int endDay() {
+            return firstDay + nightlyRates.length;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package service;
+
+import model.RoomType;
+
+/**
+ * RatesVisitor receives the calendar of nightly rates of each room type as plain values, so it can be written out
+ * without exposing RateCalendar's arrays for change.
+ *
+ * @author rachellai
+ */
+@FunctionalInterface
+public interface RatesVisitor {
+
+    /**
+     * @param roomType          room type
+     * @param firstDay          epoch day of the first night with a rate
+     * @param nightlyRates      rate of each night from firstDay on, in basis points of the room price (10000 is
+     *                          the room's own price); must not be changed
+     */
+    void visit(RoomType roomType, int firstDay, int[] nightlyRates);
+}
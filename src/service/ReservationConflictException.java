@@ -0,0 +1,19 @@
+package service;
+
+/**
+ * Thrown when a room is already booked for some of the requested nights.
+ *
+ * @author rachellai
+ */
+public class ReservationConflictException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor
+     *
+     * @param message       description of the conflict
+     */
+    public ReservationConflictException(String message) {
+        super(message);
+    }
+}
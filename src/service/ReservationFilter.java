@@ -0,0 +1,91 @@
+package service;
+
+import model.RoomType;
+
+import java.util.Date;
+
+/**
+ * ReservationFilter selects bookings by customer, room, room type and dates for the listing APIs. Filters are
+ * immutable; every method returns a narrower copy. Conditions are checked on the stored columns before any
+ * Reservation object is created.
+ *
+ * @author rachellai
+ */
+public final class ReservationFilter {
+    private static final ReservationFilter ALL = new ReservationFilter(null, null, null, Integer.MIN_VALUE,
+            Integer.MAX_VALUE);
+
+    private final String customerEmail;
+    private final String roomNumber;
+    private final RoomType roomType;
+    private final int fromDay;
+    private final int toDay;
+
+    private ReservationFilter(String customerEmail, String roomNumber, RoomType roomType, int fromDay, int toDay) {
+        this.customerEmail = customerEmail;
+        this.roomNumber = roomNumber;
+        this.roomType = roomType;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+    }
+
+    /**
+     * @return          filter that selects every booking
+     */
+    public static ReservationFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param email     customer's email
+     * @return          filter that also requires the customer
+     */
+    public ReservationFilter forCustomer(String email) {
+        return new ReservationFilter(email, roomNumber, roomType, fromDay, toDay);
+    }
+
+    /**
+     * @param number    room number
+     * @return          filter that also requires the room
+     */
+    public ReservationFilter forRoom(String number) {
+        return new ReservationFilter(customerEmail, number, roomType, fromDay, toDay);
+    }
+
+    /**
+     * @param type      room type
+     * @return          filter that also requires the booked room's type
+     */
+    public ReservationFilter ofRoomType(RoomType type) {
+        return new ReservationFilter(customerEmail, roomNumber, type, fromDay, toDay);
+    }
+
+    /**
+     * @param from      first day of the range
+     * @param to        day after the range
+     * @return          filter that also requires a booked night between from, inclusive, and to, exclusive
+     */
+    public ReservationFilter overlapping(Date from, Date to) {
+        return new ReservationFilter(customerEmail, roomNumber, roomType, EpochDays.toEpochDay(from),
+                EpochDays.toEpochDay(to));
+    }
+
+    String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    String getRoomNumber() {
+        return roomNumber;
+    }
+
+    RoomType getRoomType() {
+        return roomType;
+    }
+
+    /**
+     * @return          whether a stay has a night in the filter's date range
+     */
+    boolean overlaps(int checkInDay, int checkOutDay) {
+        return checkInDay < toDay && checkOutDay > fromDay;
+    }
+}
@@ -1,55 +1,218 @@
 package service;
+import model.AvailableWindow;
 import model.Customer;
 import model.IRoom;
 import model.Reservation;
 import model.ReservationFactory;
+import model.RoomType;
+import model.StayQuote;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * ReservationService class stores and retrieves all the reservations that has been made or is currently being made.
+ * It is safe to use from many threads: reads never take a lock and writers don't block readers.
+ * Bookings are kept as rows of a ReservationStore; Reservation objects are created only when they are returned.
+ *
+ * Set -Dhotel.partitions=N to split the rooms into N partitions by room number. Each partition then keeps the
+ * availability and the bookings of its rooms on its own and has one worker thread that makes every change to
+ * them, so bookings of rooms in different partitions share no lock and findRooms scans the partitions in
+ * parallel. Bookings are then listed partition by partition.
  *
  * @author rachellai
  */
 public final class ReservationService {
-    private static ReservationService instance;
-    private final Set<Reservation> reservations;
+    private static final int MAX_WINDOW_STARTS = 732;
+    /**
+     * Ranking keys hold a stay price in cents above the position of the room among those ranked
+     */
+    private static final int RANK_POSITION_BITS = 26;
+    private static final long MAX_RANKED_CENTS = (1L << (63 - RANK_POSITION_BITS)) - 1;
+    /**
+     * Row in a listing cursor that stands for a customer's newest booking in the cursor's partition
+     */
+    private static final int NEWEST_ROW = ReservationStore.NO_ROW - 1;
+    private static volatile ReservationService instance;
     private final Map<String, IRoom> rooms;
+    private final Map<String, Integer> roomOrdinals;
+    private final OrdinalSlots<IRoom> roomsByOrdinal;
+    private final RoomAttributeIndex roomAttributes;
+    private final RateCalendar rateCalendar;
+    private final RoomLocks roomLocks;
+    private final RoomPartitions partitions;
+    private final AvailabilityCache availabilityCache;
     private final ReservationFactory reservationFactory;
+    private final List<MutationListener> listeners;
 
-    private ReservationService(ReservationFactory reservationFactory) {
-        reservations = new HashSet<>();
-        rooms = new HashMap<>();
+    private ReservationService(ReservationFactory reservationFactory, AvailabilityBackend availabilityBackend) {
+        rooms = new ConcurrentHashMap<>();
+        roomOrdinals = new ConcurrentHashMap<>();
+        roomsByOrdinal = new OrdinalSlots<>();
+        roomAttributes = new RoomAttributeIndex();
+        roomLocks = new RoomLocks(16 * Runtime.getRuntime().availableProcessors());
+        partitions = new RoomPartitions(Integer.getInteger("hotel.partitions", 1), availabilityBackend,
+                roomLocks.stripeCount());
+        int cacheCapacity = Integer.getInteger("hotel.availability.cache", 1024);
+        availabilityCache = cacheCapacity > 0 ? new AvailabilityCache(cacheCapacity) : null;
         this.reservationFactory = reservationFactory;
+        this.listeners = new CopyOnWriteArrayList<>();
+        rateCalendar = new RateCalendar(listeners);
     }
 
     public static ReservationService getInstance(ReservationFactory reservationFactory) {
-        if (instance == null) {
-            instance = new ReservationService(reservationFactory);
-        }
+        return getInstance(reservationFactory, AvailabilityBackend.INTERVAL);
+    }
 
-        return instance;
+    /**
+     * Returns the service, creating it with the given availability backend on first use.
+     * The backend of an already created service is not changed.
+     *
+     * @param reservationFactory        factory that creates reservations
+     * @param availabilityBackend       data structure used to answer availability queries
+     * @return                          the reservation service
+     */
+    public static ReservationService getInstance(ReservationFactory reservationFactory,
+                                                 AvailabilityBackend availabilityBackend) {
+        ReservationService service = instance;
+        if (service == null) {
+            synchronized (ReservationService.class) {
+                service = instance;
+                if (service == null) {
+                    service = new ReservationService(reservationFactory, availabilityBackend);
+                    instance = service;
+                }
+            }
+        }
+        return service;
     }
 
     /**
      * Returns all rooms that have been added
      *
-     * @return          map of rooms
+     * @return          read-only view of the rooms by room number
      */
     public Map<String, IRoom> getRooms() {
-        return rooms;
+        return Collections.unmodifiableMap(rooms);
     }
 
     /**
-     * Adds a new room if a room with the same room number hasn't been added
+     * Adds a new room if a room with the same room number hasn't been added. Rooms are added one at a time;
+     * the room becomes visible to readers only once it is fully registered.
      * @param room          IRoom
      * @throws IllegalArgumentException if a room with the same room number has been added
      */
     public void addRoom(IRoom room) {
+        synchronized (roomOrdinals) {
+            if (rooms.containsKey(room.getRoomNumber())) {
+                throw new IllegalArgumentException("Room Number " + room.getRoomNumber() + " already exists.");
+            }
+            for (MutationListener listener: listeners) {
+                listener.roomAdded(room);
+            }
+            registerRoom(room);
+        }
+        invalidateAllSearches();
+    }
+
+    /**
+     * Adds many rooms as one operation: duplicates are found in a single hash pass before anything is added,
+     * then the availability index and the room tables are extended once for the whole batch. Either every
+     * room is added or none is.
+     * @param newRooms      rooms to add
+     * @throws IllegalArgumentException if a room number is repeated in the batch or has been added before
+     */
+    public void addRooms(List<IRoom> newRooms) {
+        if (newRooms.isEmpty()) {
+            return;
+        }
+        synchronized (roomOrdinals) {
+            Set<String> batchNumbers = new HashSet<>(Math.max(16, newRooms.size() * 4 / 3 + 1));
+            List<String> duplicates = new ArrayList<>();
+            for (IRoom room: newRooms) {
+                if ((! batchNumbers.add(room.getRoomNumber()) || rooms.containsKey(room.getRoomNumber()))
+                        && duplicates.size() < 10) {
+                    duplicates.add(room.getRoomNumber());
+                }
+            }
+            if (! duplicates.isEmpty()) {
+                throw new IllegalArgumentException("Room Numbers already exist or are repeated: " +
+                        String.join(", ", duplicates) + ". No rooms were added.");
+            }
+            List<IRoom> addedRooms = Collections.unmodifiableList(newRooms);
+            for (MutationListener listener: listeners) {
+                listener.roomsAdded(addedRooms);
+            }
+            int roomOrdinal = roomsByOrdinal.size();
+            partitions.addRooms(newRooms, roomOrdinal);
+            roomsByOrdinal.addAll(newRooms);
+            for (IRoom room: newRooms) {
+                roomAttributes.addRoom(roomOrdinal, room);
+                roomOrdinals.put(room.getRoomNumber(), roomOrdinal++);
+                rooms.put(room.getRoomNumber(), room);
+            }
+            partitions.publishRooms();
+        }
+        invalidateAllSearches();
+    }
+
+    /**
+     * Gives a room an ordinal and publishes it. Callers hold the roomOrdinals lock.
+     *
+     * @param room          IRoom
+     * @return              ordinal of the room
+     * @throws IllegalArgumentException if a room with the same room number has been added
+     */
+    private int registerRoom(IRoom room) {
         if (rooms.containsKey(room.getRoomNumber())) {
             throw new IllegalArgumentException("Room Number " + room.getRoomNumber() + " already exists.");
-        } else {
-            rooms.put(room.getRoomNumber(), room);
         }
+        int roomOrdinal = roomsByOrdinal.size();
+        partitions.addRooms(List.of(room), roomOrdinal);
+        roomsByOrdinal.add(room);
+        roomAttributes.addRoom(roomOrdinal, room);
+        roomOrdinals.put(room.getRoomNumber(), roomOrdinal);
+        rooms.put(room.getRoomNumber(), room);
+        partitions.publishRooms();
+        return roomOrdinal;
+    }
+
+    /**
+     * Restores rooms and bookings into an empty service without notifying listeners. The availability indexes
+     * and the reservation stores are filled directly from the stay columns, so no Reservation or Customer
+     * objects are created; customers come from the archive when a booking of theirs is first read.
+     *
+     * @param restoredRooms             rooms to add
+     * @param customerArchive           customers the stays refer to
+     * @param stayRooms                 index into restoredRooms of each stay, in ascending order
+     * @param stayCustomers             archive index of the customer of each stay
+     * @param checkInDays               check-in epoch day of each stay, ascending within a room
+     * @param checkOutDays              check-out epoch day of each stay
+     * @throws IllegalStateException if rooms or reservations have already been added
+     */
+    public void restore(List<IRoom> restoredRooms, CustomerArchive customerArchive, int[] stayRooms,
+                        int[] stayCustomers, int[] checkInDays, int[] checkOutDays) {
+        synchronized (roomOrdinals) {
+            if (! rooms.isEmpty() || rowCount() > 0) {
+                throw new IllegalStateException("Rooms and reservations can only be restored into an " +
+                        "empty service.");
+            }
+            int[] ordinals = new int[restoredRooms.size()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = registerRoom(restoredRooms.get(i));
+            }
+            int[] stayRoomOrdinals = new int[stayRooms.length];
+            for (int stay = 0; stay < stayRooms.length; stay++) {
+                stayRoomOrdinals[stay] = ordinals[stayRooms[stay]];
+            }
+            partitions.restore(customerArchive, stayRoomOrdinals, stayCustomers, checkInDays, checkOutDays);
+        }
+        invalidateAllSearches();
     }
 
     /**
@@ -59,90 +222,983 @@ public final class ReservationService {
      * @throws IllegalArgumentException if no room with the ID has been added
      */
     public IRoom getARoom(String roomId) {
-        if (rooms.containsKey(roomId)) {
-            return rooms.get(roomId);
-        } else {
+        IRoom room = roomId == null ? null : rooms.get(roomId);
+        if (room == null) {
             throw new IllegalArgumentException("There is no room with number " +
                     roomId);
         }
+        return room;
     }
 
     /**
-     * Makes a new reservation
+     * Makes a new reservation. The availability check and the booking are atomic per room, so concurrent
+     * bookings of the same room for overlapping dates cannot both succeed, while bookings of other rooms
+     * proceed in parallel.
      * @param customer          Customer who makes the reservation
      * @param room              The IRoom being reserved
      * @param checkInDate       check-in date
      * @param checkOutDate      check-out date
      * @return                  new reservation
-     * @throws IllegalArgumentException if room is reserved on those dates.
+     * @throws ReservationConflictException if room is reserved on those dates
+     * @throws IllegalArgumentException if check-out isn't after check-in or the customer is unknown.
      */
     public Reservation reserveARoom(Customer customer, IRoom room, Date checkInDate, Date checkOutDate) {
-        Reservation newReservation = new Reservation(customer, room, checkInDate, checkOutDate);
-        if (reservations.contains(newReservation)) {
-            throw new IllegalArgumentException("This room is already reserved for these " +
-                    "days");
+        if (customer == null) {
+            throw new IllegalArgumentException("There is no customer registered with this email.");
+        }
+        int roomOrdinal = roomOrdinal(room);
+        int checkInDay = EpochDays.toEpochDay(checkInDate);
+        int checkOutDay = EpochDays.toEpochDay(checkOutDate);
+        if (checkOutDay <= checkInDay) {
+            throw new IllegalArgumentException("Check-out date should be later than check-in date.");
         }
-        reservations.add(newReservation);
+        Reservation newReservation = reservationFactory.create(customer, room, checkInDate, checkOutDate);
+        occupyRoom(roomOrdinal, newReservation, checkInDay, checkOutDay);
+        invalidateSearches(checkInDay, checkOutDay);
         return newReservation;
     }
 
     /**
-     * Check for conflicts in dates
-     * @param reservation           Reservation
-     * @param checkIn               check-in date
-     * @param checkOut              check-out date
-     * @return                      datesCheckResult containing a check result for each date
+     * Checks that a room is free, tells the listeners and books it, where the room's bookings are changed
+     *
+     * @throws ReservationConflictException if the room is reserved on those nights
+     */
+    private void occupyRoom(int roomOrdinal, Reservation newReservation, int checkInDay, int checkOutDay) {
+        RoomPartitions.Partition partition = partitions.ofRoom(roomOrdinal);
+        int localOrdinal = partitions.localOrdinal(roomOrdinal);
+        changeRoom(roomOrdinal, () -> {
+            if (! partition.index.isAvailable(localOrdinal, checkInDay, checkOutDay)) {
+                throw new ReservationConflictException("This room is already reserved for these " +
+                        "days");
+            }
+            for (MutationListener listener: listeners) {
+                listener.reservationAdded(newReservation);
+            }
+            partition.index.occupy(localOrdinal, checkInDay, checkOutDay);
+            partition.store.append(roomOrdinal, newReservation.getCustomer(), checkInDay, checkOutDay);
+        });
+    }
+
+    /**
+     * Cancels a reservation and frees its nights for other bookings
+     *
+     * @param reservation       reservation to cancel, as it was made
+     * @throws IllegalArgumentException if there is no such reservation, e.g. it was already cancelled
+     */
+    public void cancelReservation(Reservation reservation) {
+        int roomOrdinal = roomOrdinal(reservation.getRoom());
+        int checkInDay = EpochDays.toEpochDay(reservation.getCheckInDate());
+        int checkOutDay = EpochDays.toEpochDay(reservation.getCheckOutDate());
+        releaseRoom(roomOrdinal, reservation, checkInDay, checkOutDay);
+        invalidateSearches(checkInDay, checkOutDay);
+    }
+
+    /**
+     * Moves a reservation to new dates in the same room. The new nights are checked and taken in one step under
+     * the room's lock, with the booking's own nights counted as free, so the guest never loses the room: either
+     * the reservation has its new dates or it keeps its old ones.
+     *
+     * @param reservation       reservation to change, as it was made
+     * @param checkInDate       new check-in date
+     * @param checkOutDate      new check-out date
+     * @return                  the reservation with its new dates
+     * @throws ReservationConflictException if another booking has any of the new nights; nothing is changed
+     * @throws IllegalArgumentException if there is no such reservation or check-out isn't after check-in
+     */
+    public Reservation changeReservationDates(Reservation reservation, Date checkInDate, Date checkOutDate) {
+        int roomOrdinal = roomOrdinal(reservation.getRoom());
+        int checkInDay = EpochDays.toEpochDay(reservation.getCheckInDate());
+        int checkOutDay = EpochDays.toEpochDay(reservation.getCheckOutDate());
+        int newCheckInDay = EpochDays.toEpochDay(checkInDate);
+        int newCheckOutDay = EpochDays.toEpochDay(checkOutDate);
+        if (newCheckOutDay <= newCheckInDay) {
+            throw new IllegalArgumentException("Check-out date should be later than check-in date.");
+        }
+        Reservation changed = reservationFactory.create(reservation.getCustomer(), reservation.getRoom(),
+                checkInDate, checkOutDate);
+        moveStay(roomOrdinal, reservation, changed, checkInDay, checkOutDay, newCheckInDay, newCheckOutDay);
+        invalidateSearches(checkInDay, checkOutDay);
+        invalidateSearches(newCheckInDay, newCheckOutDay);
+        return changed;
+    }
+
+    /**
+     * Finds a booking, tells the listeners, then frees its nights and cancels it, where the room's bookings are
+     * changed
+     *
+     * @throws IllegalArgumentException if the room has no such booking
+     */
+    private void releaseRoom(int roomOrdinal, Reservation reservation, int checkInDay, int checkOutDay) {
+        RoomPartitions.Partition partition = partitions.ofRoom(roomOrdinal);
+        changeRoom(roomOrdinal, () -> {
+            int row = bookedRow(partition.store, roomOrdinal, reservation.getCustomer().getEmail(), checkInDay,
+                    checkOutDay);
+            for (MutationListener listener: listeners) {
+                listener.reservationCancelled(reservation);
+            }
+            partition.index.release(partitions.localOrdinal(roomOrdinal), checkInDay, checkOutDay);
+            partition.store.cancel(row);
+        });
+    }
+
+    /**
+     * Checks that a booking's new nights are free apart from the booking itself, tells the listeners and moves
+     * it there, where the room's bookings are changed
+     *
+     * @throws ReservationConflictException if another booking has any of the new nights
+     * @throws IllegalArgumentException if the room has no such booking
+     */
+    private void moveStay(int roomOrdinal, Reservation reservation, Reservation changed, int checkInDay,
+                         int checkOutDay, int newCheckInDay, int newCheckOutDay) {
+        RoomPartitions.Partition partition = partitions.ofRoom(roomOrdinal);
+        int localOrdinal = partitions.localOrdinal(roomOrdinal);
+        changeRoom(roomOrdinal, () -> {
+            int row = bookedRow(partition.store, roomOrdinal, reservation.getCustomer().getEmail(), checkInDay,
+                    checkOutDay);
+            if (! partition.index.canMove(localOrdinal, checkInDay, checkOutDay, newCheckInDay, newCheckOutDay)) {
+                throw new ReservationConflictException("This room is already reserved for these " +
+                        "days");
+            }
+            for (MutationListener listener: listeners) {
+                listener.reservationChanged(reservation, changed);
+            }
+            partition.index.move(localOrdinal, checkInDay, checkOutDay, newCheckInDay, newCheckOutDay);
+            partition.store.reschedule(row, newCheckInDay, newCheckOutDay);
+        });
+    }
+
+    /**
+     * Finds the row of a live booking. Callers change the room's bookings, as in changeRoom.
+     *
+     * @throws IllegalArgumentException if the room has no booking with those dates by that customer
+     */
+    private static int bookedRow(ReservationStore store, int roomOrdinal, String email, int checkInDay,
+                                 int checkOutDay) {
+        int row = store.rowOf(roomOrdinal, checkInDay);
+        if (row == ReservationStore.NO_ROW || store.checkOutDay(row) != checkOutDay
+                || store.customerOrdinal(row) != store.customerOrdinal(email)) {
+            throw new IllegalArgumentException("There is no such reservation.");
+        }
+        return row;
+    }
+
+    /**
+     * Makes a change to a room's bookings where they may be changed: holding the room's lock or, when the rooms
+     * are partitioned, on the worker of the room's partition
+     *
+     * @param roomOrdinal       ordinal of the room
+     * @param change            check and change of the room's bookings
      */
-    DatesCheckResult checkDates(Reservation reservation, Date checkIn, Date checkOut) {
-        boolean isCheckInOK = checkIn.before(reservation.getCheckInDate()) ||
-                checkIn.compareTo(reservation.getCheckOutDate()) >= 0;
-        boolean isCheckOutOK = checkOut.compareTo(reservation.getCheckInDate()) <= 0 ||
-                checkOut.after(reservation.getCheckOutDate());
-        return new DatesCheckResult(isCheckInOK, isCheckOutOK);
+    private void changeRoom(int roomOrdinal, Runnable change) {
+        if (partitions.hasWorkers()) {
+            partitions.run(partitions.partitionOf(roomOrdinal), change);
+            return;
+        }
+        ReentrantLock roomLock = roomLocks.forRoom(roomOrdinal);
+        roomLock.lock();
+        try {
+            change.run();
+        } finally {
+            roomLock.unlock();
+        }
     }
 
     /**
-     * Finds rooms available on dates.
+     * Makes a change to the bookings of several rooms as one step: holding all the rooms' locks or, when the
+     * rooms are partitioned, on the worker of their partition, or with the workers of all their partitions
+     * paused if they are in more than one
+     *
+     * @param roomOrdinals      ordinals of the rooms, in ascending order
+     * @param change            check and change of the rooms' bookings
+     */
+    private void changeRooms(int[] roomOrdinals, Runnable change) {
+        if (partitions.hasWorkers()) {
+            boolean[] involved = new boolean[partitions.count()];
+            int partitionCount = 0;
+            int partition = 0;
+            for (int roomOrdinal: roomOrdinals) {
+                partition = partitions.partitionOf(roomOrdinal);
+                if (! involved[partition]) {
+                    involved[partition] = true;
+                    partitionCount++;
+                }
+            }
+            if (partitionCount == 1) {
+                partitions.run(partition, change);
+                return;
+            }
+            RoomPartitions.Pause pause = partitions.pause(involved);
+            try {
+                change.run();
+            } finally {
+                pause.resume();
+            }
+            return;
+        }
+        ReentrantLock[] groupLocks = roomLocks.forRooms(roomOrdinals);
+        int locked = 0;
+        try {
+            for (ReentrantLock lock: groupLocks) {
+                lock.lock();
+                locked++;
+            }
+            change.run();
+        } finally {
+            while (locked > 0) {
+                groupLocks[--locked].unlock();
+            }
+        }
+    }
+
+    /**
+     * Books several rooms for one customer and the same dates as a single all-or-nothing operation. The rooms'
+     * locks are taken in a fixed order, or their partitions' workers stopped, every room is checked while none
+     * of them can change, and only then are they occupied, so either every room is booked or none is and no other
+     * booking sees a partial group.
+     * @param customer          Customer who makes the reservations
+     * @param groupRooms        rooms to reserve, each at most once
+     * @param checkInDate       check-in date
+     * @param checkOutDate      check-out date
+     * @return                  new reservations in ascending room order
+     * @throws ReservationConflictException if any of the rooms is reserved on those dates; nothing is booked
+     * @throws IllegalArgumentException if a room is unknown or repeated, check-out isn't after check-in or the
+     *                                  customer is unknown
+     */
+    public List<Reservation> reserveRooms(Customer customer, Collection<IRoom> groupRooms, Date checkInDate,
+                                          Date checkOutDate) {
+        if (customer == null) {
+            throw new IllegalArgumentException("There is no customer registered with this email.");
+        }
+        int checkInDay = EpochDays.toEpochDay(checkInDate);
+        int checkOutDay = EpochDays.toEpochDay(checkOutDate);
+        if (checkOutDay <= checkInDay) {
+            throw new IllegalArgumentException("Check-out date should be later than check-in date.");
+        }
+        int[] groupOrdinals = new int[groupRooms.size()];
+        int next = 0;
+        for (IRoom room: groupRooms) {
+            groupOrdinals[next++] = roomOrdinal(room);
+        }
+        Arrays.sort(groupOrdinals);
+        for (int i = 1; i < groupOrdinals.length; i++) {
+            if (groupOrdinals[i] == groupOrdinals[i - 1]) {
+                throw new IllegalArgumentException("Room Number " +
+                        roomsByOrdinal.get(groupOrdinals[i]).getRoomNumber() + " is listed more than once.");
+            }
+        }
+        List<Reservation> newReservations = new ArrayList<>(groupOrdinals.length);
+        for (int roomOrdinal: groupOrdinals) {
+            newReservations.add(reservationFactory.create(customer, roomsByOrdinal.get(roomOrdinal), checkInDate,
+                    checkOutDate));
+        }
+        changeRooms(groupOrdinals, () -> {
+            List<String> conflicts = new ArrayList<>();
+            for (int roomOrdinal: groupOrdinals) {
+                if (! partitions.isAvailable(roomOrdinal, checkInDay, checkOutDay)) {
+                    conflicts.add(roomsByOrdinal.get(roomOrdinal).getRoomNumber());
+                }
+            }
+            if (! conflicts.isEmpty()) {
+                throw new ReservationConflictException("These rooms are already reserved for these days: " +
+                        String.join(", ", conflicts));
+            }
+            for (MutationListener listener: listeners) {
+                listener.reservationsAdded(newReservations);
+            }
+            for (int roomOrdinal: groupOrdinals) {
+                partitions.ofRoom(roomOrdinal).index.occupy(partitions.localOrdinal(roomOrdinal), checkInDay,
+                        checkOutDay);
+            }
+            for (int partition = 0; partition < partitions.count(); partition++) {
+                int owner = partition;
+                int[] ownedOrdinals = Arrays.stream(groupOrdinals)
+                        .filter(roomOrdinal -> partitions.partitionOf(roomOrdinal) == owner).toArray();
+                if (ownedOrdinals.length > 0) {
+                    partitions.get(partition).store.appendAll(ownedOrdinals, customer, checkInDay, checkOutDay);
+                }
+            }
+        });
+        invalidateSearches(checkInDay, checkOutDay);
+        return newReservations;
+    }
+
+    /**
+     * Finds rooms available on dates. Results of recent searches are cached by night range and dropped as soon
+     * as a booking shares a night with them, so repeated searches for popular dates skip the scan.
      *
      * @param checkInDate   check-in date
      * @param checkOutDate  check-out date
-     * @return              collection of available rooms
+     * @return              collection of available rooms; it may be read-only
      */
     public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate) {
-        Map<String, IRoom> availableRooms = new HashMap<>(this.rooms);
-        for (Reservation aReservation: this.reservations) {
-            DatesCheckResult checkResult = checkDates(aReservation, checkInDate,
-                    checkOutDate);
-            boolean isCheckInOK = checkResult.isCheckInOK();
-            boolean isCheckOutOK = checkResult.isCheckOutOK();
-            if (! isCheckInOK || ! isCheckOutOK) {
-                availableRooms.remove(aReservation.getRoom().getRoomNumber());
+        int checkInDay = EpochDays.toEpochDay(checkInDate);
+        int checkOutDay = EpochDays.toEpochDay(checkOutDate);
+        if (availabilityCache == null) {
+            return scanAvailableRooms(checkInDay, checkOutDay);
+        }
+        return availabilityCache.get(checkInDay, checkOutDay,
+                () -> scanAvailableRooms(checkInDay, checkOutDay));
+    }
+
+    /**
+     * Finds rooms available on dates that also pass a filter. The filter is answered from bitmaps of the room
+     * attributes, and only the rooms it selects have their availability checked, so no other room is looked
+     * at. A filter that selects every room is answered by findRooms(checkInDate, checkOutDate) and its cache.
+     *
+     * @param checkInDate   check-in date
+     * @param checkOutDate  check-out date
+     * @param filter        room type, free flag and price range the rooms must have
+     * @return              collection of available rooms that pass the filter; it may be read-only
+     */
+    public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate, RoomFilter filter) {
+        if (filter.selectsEveryRoom()) {
+            return findRooms(checkInDate, checkOutDate);
+        }
+        return roomsAt(availableSelectedRooms(roomAttributes.select(filter), EpochDays.toEpochDay(checkInDate),
+                EpochDays.toEpochDay(checkOutDate)));
+    }
+
+    /**
+     * Checks the availability of the rooms a filter selected
+     *
+     * @param selected      bitmap of room ordinals from RoomAttributeIndex.select
+     * @param checkInDay    check-in epoch day
+     * @param checkOutDay   check-out epoch day
+     * @return              ordinals of the selected rooms that are available, in ascending order
+     */
+    private int[] availableSelectedRooms(long[] selected, int checkInDay, int checkOutDay) {
+        int[] available = new int[64];
+        int count = 0;
+        for (int word = 0; word < selected.length; word++) {
+            long bits = selected[word];
+            while (bits != 0) {
+                int roomOrdinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (partitions.isAvailable(roomOrdinal, checkInDay, checkOutDay)) {
+                    if (count == available.length) {
+                        available = Arrays.copyOf(available, count * 2);
+                    }
+                    available[count++] = roomOrdinal;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return Arrays.copyOf(available, count);
+    }
+
+    /**
+     * @return          calendar of nightly rates used to quote stays
+     */
+    public RateCalendar getRateCalendar() {
+        return rateCalendar;
+    }
+
+    /**
+     * Quotes a stay in a room, each night at the rate of the room's type for that night
+     *
+     * @param room          IRoom
+     * @param checkInDate   check-in date
+     * @param checkOutDate  check-out date
+     * @return              quote of the stay
+     * @throws IllegalArgumentException if the room has not been added or check-out isn't after check-in
+     */
+    public StayQuote quoteStay(IRoom room, Date checkInDate, Date checkOutDate) {
+        roomOrdinal(room);
+        return new StayQuote(room, checkInDate, checkOutDate,
+                rateCalendar.quote(room, checkInDate, checkOutDate));
+    }
+
+    /**
+     * Finds rooms available on dates that pass a filter, ranked by the total price of the stay. The rate sum of
+     * the stay is read once per room type, so each available room is priced by one multiplication from the
+     * price and type columns, and the rooms are ranked by one primitive key per room that holds its price in
+     * cents and its position, kept in a heap of the count smallest; no IRoom is looked at until the ranking is
+     * done.
+     *
+     * @param checkInDate   check-in date
+     * @param checkOutDate  check-out date
+     * @param filter        room type, free flag and price range the rooms must have
+     * @param count         largest number of rooms to return
+     * @return              up to count quotes, cheapest stay first and rooms added earlier first on a tie
+     * @throws IllegalArgumentException if check-out isn't after check-in or count isn't positive
+     */
+    public List<StayQuote> findRoomsByStayPrice(Date checkInDate, Date checkOutDate, RoomFilter filter,
+                                                int count) {
+        int checkInDay = EpochDays.toEpochDay(checkInDate);
+        int checkOutDay = EpochDays.toEpochDay(checkOutDate);
+        if (checkOutDay <= checkInDay) {
+            throw new IllegalArgumentException("Check-out date should be later than check-in date.");
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("The number of rooms should be positive.");
+        }
+        int[] available = availableSelectedRooms(roomAttributes.select(filter), checkInDay, checkOutDay);
+        long[] rateSums = new long[RoomType.values().length];
+        for (int roomType = 0; roomType < rateSums.length; roomType++) {
+            rateSums[roomType] = rateCalendar.rateSum(roomType, checkInDay, checkOutDay);
+        }
+        long[] keys = new long[available.length];
+        for (int i = 0; i < available.length; i++) {
+            int roomOrdinal = available[i];
+            double total = RateCalendar.price(roomAttributes.priceOf(roomOrdinal),
+                    rateSums[roomAttributes.roomTypeOf(roomOrdinal)]);
+            keys[i] = Math.min(MAX_RANKED_CENTS, Math.round(total * 100)) << RANK_POSITION_BITS | i;
+        }
+        long[] ranked = smallest(keys, count);
+        List<StayQuote> quotes = new ArrayList<>(ranked.length);
+        for (long key: ranked) {
+            int roomOrdinal = available[(int) (key & ((1 << RANK_POSITION_BITS) - 1))];
+            quotes.add(new StayQuote(roomsByOrdinal.get(roomOrdinal), checkInDate, checkOutDate,
+                    RateCalendar.price(roomAttributes.priceOf(roomOrdinal),
+                            rateSums[roomAttributes.roomTypeOf(roomOrdinal)])));
+        }
+        return quotes;
+    }
+
+    /**
+     * Finds the cheapest rooms available on dates that pass a filter
+     *
+     * @param checkInDate   check-in date
+     * @param checkOutDate  check-out date
+     * @param filter        room type, free flag and price range the rooms must have
+     * @param count         largest number of rooms to return
+     * @return              up to count available rooms, cheapest first
+     * @throws IllegalArgumentException if count isn't positive
+     */
+    public List<IRoom> findCheapestRooms(Date checkInDate, Date checkOutDate, RoomFilter filter, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("The number of rooms should be positive.");
+        }
+        return streamRoomsByPrice(checkInDate, checkOutDate, filter).limit(count).collect(Collectors.toList());
+    }
+
+    /**
+     * Streams the rooms available on dates that pass a filter, cheapest first, and rooms of the same price in
+     * the order they were added. Rooms are walked in price order and each one's availability is checked only
+     * when the stream reaches it, so a caller that stops after the first few rooms does work in proportion to
+     * the rooms it skipped, not to the number of rooms in the hotel.
+     *
+     * @param checkInDate   check-in date
+     * @param checkOutDate  check-out date
+     * @param filter        room type, free flag and price range the rooms must have
+     * @return              lazy stream of available rooms
+     */
+    public Stream<IRoom> streamRoomsByPrice(Date checkInDate, Date checkOutDate, RoomFilter filter) {
+        int checkInDay = EpochDays.toEpochDay(checkInDate);
+        int checkOutDay = EpochDays.toEpochDay(checkOutDate);
+        return roomAttributes.byPrice(filter)
+                .filter(roomOrdinal -> partitions.isAvailable(roomOrdinal, checkInDay, checkOutDay))
+                .mapToObj(roomsByOrdinal::get);
+    }
+
+    /**
+     * Picks the smallest keys through a max-heap of count keys, so ranking the first few of many rooms doesn't
+     * sort them all
+     *
+     * @param keys          keys; reordered
+     * @param count         number of keys to pick
+     * @return              the smallest keys in ascending order
+     */
+    private static long[] smallest(long[] keys, int count) {
+        if (count >= keys.length) {
+            Arrays.sort(keys);
+            return keys;
+        }
+        long[] heap = Arrays.copyOf(keys, count);
+        for (int i = count / 2 - 1; i >= 0; i--) {
+            siftDown(heap, i);
+        }
+        for (int i = count; i < keys.length; i++) {
+            if (keys[i] < heap[0]) {
+                heap[0] = keys[i];
+                siftDown(heap, 0);
+            }
+        }
+        Arrays.sort(heap);
+        return heap;
+    }
+
+    private static void siftDown(long[] heap, int position) {
+        long key = heap[position];
+        int child;
+        while ((child = 2 * position + 1) < heap.length) {
+            if (child + 1 < heap.length && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= key) {
+                break;
             }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = key;
+    }
+
+    /**
+     * Finds every check-in day in a range on which a stay of the given length can start, with the rooms free
+     * for the whole stay. Each room's calendar is read once for the whole range instead of searching every
+     * candidate window separately; with a window limit, later days stop being looked at once enough earlier
+     * windows have a free room.
+     *
+     * @param earliestCheckIn       first check-in date to consider
+     * @param latestCheckIn         last check-in date to consider
+     * @param nights                length of the stay
+     * @param maxWindows            number of earliest windows to return, or 0 for all of them
+     * @return                      windows with at least one free room, by check-in date
+     * @throws IllegalArgumentException if the stay is shorter than a night or the range is empty or over
+     *                                  two years long
+     */
+    public List<AvailableWindow> findAvailableWindows(Date earliestCheckIn, Date latestCheckIn, int nights,
+                                                      int maxWindows) {
+        int firstStart = EpochDays.toEpochDay(earliestCheckIn);
+        int lastStart = EpochDays.toEpochDay(latestCheckIn);
+        if (nights < 1) {
+            throw new IllegalArgumentException("A stay should be at least one night long.");
+        }
+        if (lastStart < firstStart || lastStart - firstStart >= MAX_WINDOW_STARTS) {
+            throw new IllegalArgumentException("The latest check-in date should be after the earliest one and " +
+                    "at most " + MAX_WINDOW_STARTS + " days later.");
+        }
+        int startCount = lastStart - firstStart + 1;
+        List<List<IRoom>> roomsByStart = new ArrayList<>(Collections.nCopies(startCount, null));
+        long[] bookedNights = new long[(startCount + nights - 1 + 63) >> 6];
+        int startLimit = startCount;
+        int windowCount = 0;
+        int roomCount = roomsByOrdinal.size();
+        for (int roomOrdinal = 0; roomOrdinal < roomCount && startLimit > 0; roomOrdinal++) {
+            IRoom room = roomsByOrdinal.get(roomOrdinal);
+            int searchedNights = startLimit + nights - 1;
+            Arrays.fill(bookedNights, 0);
+            boolean anyBooked = partitions.markBookedNights(roomOrdinal, firstStart,
+                    firstStart + searchedNights, bookedNights);
+            int windowsBefore = windowCount;
+            int freeRun = 0;
+            for (int night = 0; night < searchedNights; night++) {
+                if (anyBooked && (bookedNights[night >> 6] & (1L << night)) != 0) {
+                    freeRun = 0;
+                } else if (++freeRun >= nights) {
+                    int start = night - nights + 1;
+                    List<IRoom> startRooms = roomsByStart.get(start);
+                    if (startRooms == null) {
+                        startRooms = new ArrayList<>();
+                        roomsByStart.set(start, startRooms);
+                        windowCount++;
+                    }
+                    startRooms.add(room);
+                }
+            }
+            if (maxWindows > 0 && windowCount >= maxWindows && windowCount != windowsBefore) {
+                startLimit = startAfterWindows(roomsByStart, maxWindows);
+            }
+        }
+        List<AvailableWindow> windows = new ArrayList<>();
+        for (int start = 0; start < startCount && (maxWindows <= 0 || windows.size() < maxWindows); start++) {
+            List<IRoom> startRooms = roomsByStart.get(start);
+            if (startRooms != null) {
+                windows.add(new AvailableWindow(EpochDays.toDate(firstStart + start),
+                        EpochDays.toDate(firstStart + start + nights), Collections.unmodifiableList(startRooms)));
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * @return          index after the start of the given number of earliest windows found so far
+     */
+    private static int startAfterWindows(List<List<IRoom>> roomsByStart, int windows) {
+        int found = 0;
+        for (int start = 0; start < roomsByStart.size(); start++) {
+            if (roomsByStart.get(start) != null && ++found == windows) {
+                return start + 1;
+            }
+        }
+        return roomsByStart.size();
+    }
+
+    /**
+     * @return          counters of the availability search cache; all zero if the cache is disabled
+     */
+    public CacheStatistics getAvailabilityCacheStatistics() {
+        if (availabilityCache == null) {
+            return new CacheStatistics(0, 0, 0, 0, 0, 0);
         }
-        return new ArrayList<>(availableRooms.values());
+        return availabilityCache.statistics();
+    }
+
+    /**
+     * Checks every room, each partition's on its worker when the rooms are partitioned
+     */
+    private List<IRoom> scanAvailableRooms(int checkInDay, int checkOutDay) {
+        return roomsAt(partitions.scan(checkInDay, checkOutDay));
+    }
+
+    private List<IRoom> roomsAt(int[] roomOrdinals) {
+        List<IRoom> roomList = new ArrayList<>(roomOrdinals.length);
+        for (int roomOrdinal: roomOrdinals) {
+            roomList.add(roomsByOrdinal.get(roomOrdinal));
+        }
+        return roomList;
+    }
+
+    /**
+     * Drops cached searches that share a night with a new booking. Called after the booking is in the index.
+     */
+    private void invalidateSearches(int checkInDay, int checkOutDay) {
+        if (availabilityCache != null) {
+            availabilityCache.invalidate(checkInDay, checkOutDay);
+        }
+    }
+
+    /**
+     * Drops every cached search. Called after rooms are added, since a new room is free on every night.
+     */
+    private void invalidateAllSearches() {
+        if (availabilityCache != null) {
+            availabilityCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Looks up the ordinal of a room previously added
+     * @param room              IRoom
+     * @return                  ordinal of the room in the service
+     * @throws IllegalArgumentException if the room has not been added
+     */
+    private int roomOrdinal(IRoom room) {
+        Integer roomOrdinal = roomOrdinals.get(room.getRoomNumber());
+        if (roomOrdinal == null) {
+            throw new IllegalArgumentException("There is no room with number " +
+                    room.getRoomNumber());
+        }
+        return roomOrdinal;
     }
 
     /**
      * Find all reservations a customer has made
-     * @param customer           Customer
+     * @param customer           Customer, or null for an unknown customer
      * @return                   collection of reservations the customer has made
      */
     public Collection<Reservation> getCustomersReservation(Customer customer) {
         List<Reservation> customersReservation = new ArrayList<>();
-        for (Reservation aReservation: this.reservations) {
-            if (aReservation.getCustomer().equals(customer)) {
-                customersReservation.add(aReservation);
-            }
+        if (customer == null) {
+            return customersReservation;
+        }
+        for (ReservationStore store: partitions.stores()) {
+            store.forEachRowOf(customer, row -> customersReservation.add(reservationAt(store, row)));
         }
         return customersReservation;
     }
 
+    /**
+     * Tells whether a booking exists as it was made: same room, nights and customer
+     *
+     * @param reservation       reservation to look for
+     * @return                  true if the booking is live
+     */
+    public boolean hasReservation(Reservation reservation) {
+        Integer roomOrdinal = roomOrdinals.get(reservation.getRoom().getRoomNumber());
+        if (roomOrdinal == null) {
+            return false;
+        }
+        ReservationStore store = partitions.ofRoom(roomOrdinal).store;
+        int row = store.rowOf(roomOrdinal, EpochDays.toEpochDay(reservation.getCheckInDate()));
+        return row != ReservationStore.NO_ROW
+                && store.checkOutDay(row) == EpochDays.toEpochDay(reservation.getCheckOutDate())
+                && store.customerOrdinal(row) == store.customerOrdinal(reservation.getCustomer().getEmail());
+    }
+
+    /**
+     * Visits every booking without creating Reservation objects
+     *
+     * @param visitor       called once per booking
+     */
+    public void forEachStay(StayVisitor visitor) {
+        forEachStay(() -> { }, visitor);
+    }
+
+    /**
+     * Visits the bookings live at one point of the change order, without stopping bookings while they are visited.
+     * The room table and every room's lock are taken for a moment, or every partition's worker is stopped, so no
+     * room is half added and no booking, cancellation or date change is half done; atCut runs, and the bookings
+     * live at that point are the ones visited. Changes passed to listeners before atCut runs are visited, later
+     * ones are not.
+     *
+     * @param atCut         run while no room or booking can change, e.g. to mark the point in a journal
+     * @param visitor       called once per booking
+     */
+    public void forEachStay(Runnable atCut, StayVisitor visitor) {
+        ReservationStore[] stores = partitions.stores();
+        int[] rowCounts = new int[stores.length];
+        int[][] cancelledRows = new int[stores.length][];
+        Runnable cut = () -> {
+            atCut.run();
+            for (int partition = 0; partition < stores.length; partition++) {
+                rowCounts[partition] = stores[partition].size();
+                cancelledRows[partition] = stores[partition].cancelledRows(rowCounts[partition]);
+            }
+        };
+        synchronized (roomOrdinals) {
+            if (partitions.hasWorkers()) {
+                RoomPartitions.Pause pause = partitions.pauseAll();
+                try {
+                    cut.run();
+                } finally {
+                    pause.resume();
+                }
+            } else {
+                ReentrantLock[] allLocks = roomLocks.forAllRooms();
+                int locked = 0;
+                try {
+                    for (ReentrantLock lock: allLocks) {
+                        lock.lock();
+                        locked++;
+                    }
+                    cut.run();
+                } finally {
+                    while (locked > 0) {
+                        allLocks[--locked].unlock();
+                    }
+                }
+            }
+        }
+        for (int partition = 0; partition < stores.length; partition++) {
+            ReservationStore store = stores[partition];
+            int[] cancelled = cancelledRows[partition];
+            for (int row = 0; row < rowCounts[partition]; row++) {
+                if ((cancelled[row >> 5] & 1 << row) != 0) {
+                    continue;
+                }
+                visitor.visit(roomsByOrdinal.get(store.roomOrdinal(row)), store.customer(row),
+                        store.checkInDay(row), store.checkOutDay(row));
+            }
+        }
+    }
+
+    /**
+     * @return          number of bookings, not counting cancelled ones
+     */
+    public int getReservationCount() {
+        int liveCount = 0;
+        for (ReservationStore store: partitions.stores()) {
+            liveCount += store.liveCount();
+        }
+        return liveCount;
+    }
+
+    /**
+     * @return          number of rows in every partition's store, counting cancelled bookings
+     */
+    private int rowCount() {
+        int rowCount = 0;
+        for (ReservationStore store: partitions.stores()) {
+            rowCount += store.size();
+        }
+        return rowCount;
+    }
+
+    /**
+     * Reports occupancy and revenue per night, room type and month over a range, computed in parallel from every
+     * booking made so far
+     *
+     * @param from          first night
+     * @param to            night after the last one
+     * @return              the report
+     * @throws IllegalArgumentException if the range is empty or longer than ten years
+     */
+    public OccupancyReport getOccupancyReport(Date from, Date to) {
+        return OccupancyAnalytics.report(partitions.stores(), roomAttributes, rateCalendar, EpochDays.toEpochDay(from),
+                EpochDays.toEpochDay(to));
+    }
+
+    /**
+     * Lists bookings one page at a time. Bookings are listed in the order they were made, or newest first when
+     * the filter names a customer; bookings made after the first page are not included. When the rooms are
+     * partitioned, the bookings of each partition are listed in turn, each in that order.
+     *
+     * @param filter        conditions the bookings must meet
+     * @param cursor        cursor from the previous page, or null for the first page
+     * @param pageSize      maximum number of bookings on the page
+     * @return              page of reservations
+     * @throws IllegalArgumentException if the cursor is invalid or the page size isn't positive
+     */
+    public Page<Reservation> listReservations(ReservationFilter filter, String cursor, int pageSize) {
+        Page.checkPageSize(pageSize);
+        List<Reservation> page = new ArrayList<>(Math.min(pageSize, 1024));
+        boolean byCustomer = filter.getCustomerEmail() != null;
+        long position = Page.position(cursor, byCustomer ? NEWEST_ROW & 0xFFFFFFFFL : 0L);
+        int partition = (int) (position >>> 32);
+        int row = (int) position;
+        if (partition >= partitions.count()) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+        while (true) {
+            ReservationStore store = partitions.get(partition).store;
+            IntPredicate matches = rowFilter(store, filter);
+            int rowCount = store.size();
+            boolean rowsLeft;
+            if (! byCustomer) {
+                for (; row < rowCount && page.size() < pageSize; row++) {
+                    if (matches.test(row)) {
+                        page.add(reservationAt(store, row));
+                    }
+                }
+                rowsLeft = row < rowCount;
+            } else {
+                int customerOrdinal = store.customerOrdinal(filter.getCustomerEmail());
+                if (customerOrdinal < 0) {
+                    row = ReservationStore.NO_ROW;
+                } else if (row == NEWEST_ROW) {
+                    row = store.lastRowOf(customerOrdinal);
+                }
+                for (; row != ReservationStore.NO_ROW && page.size() < pageSize;
+                     row = store.previousRowOfSameCustomer(row)) {
+                    if (row < rowCount && matches.test(row)) {
+                        page.add(reservationAt(store, row));
+                    }
+                }
+                rowsLeft = row != ReservationStore.NO_ROW;
+            }
+            if (rowsLeft) {
+                return new Page<>(page, Page.cursor(listPosition(partition, row)));
+            }
+            if (++partition == partitions.count()) {
+                return new Page<>(page, null);
+            }
+            row = byCustomer ? NEWEST_ROW : 0;
+            if (page.size() == pageSize) {
+                return new Page<>(page, Page.cursor(listPosition(partition, row)));
+            }
+        }
+    }
+
+    /**
+     * @return          position in a listing of a row of a partition's store; it is the row itself when the
+     *                  rooms aren't partitioned
+     */
+    private static long listPosition(int partition, int row) {
+        return (long) partition << 32 | row & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Streams bookings lazily, in the same order as listReservations. Rows that don't match are skipped
+     * without creating Reservation objects.
+     *
+     * @param filter        conditions the bookings must meet
+     * @return              stream of reservations
+     */
+    public Stream<Reservation> streamReservations(ReservationFilter filter) {
+        return Arrays.stream(partitions.stores()).flatMap(store -> streamReservations(store, filter));
+    }
+
+    private Stream<Reservation> streamReservations(ReservationStore store, ReservationFilter filter) {
+        IntPredicate matches = rowFilter(store, filter);
+        int rowCount = store.size();
+        IntStream rows;
+        if (filter.getCustomerEmail() == null) {
+            rows = IntStream.range(0, rowCount);
+        } else {
+            int customerOrdinal = store.customerOrdinal(filter.getCustomerEmail());
+            rows = customerOrdinal < 0 ? IntStream.empty()
+                    : IntStream.iterate(store.lastRowOf(customerOrdinal), row -> row != ReservationStore.NO_ROW,
+                            store::previousRowOfSameCustomer).filter(row -> row < rowCount);
+        }
+        return rows.filter(matches).mapToObj(row -> reservationAt(store, row));
+    }
+
+    /**
+     * Lists rooms one page at a time in the order they were added
+     *
+     * @param filter        conditions the rooms must meet
+     * @param cursor        cursor from the previous page, or null for the first page
+     * @param pageSize      maximum number of rooms on the page
+     * @return              page of rooms
+     * @throws IllegalArgumentException if the cursor is invalid or the page size isn't positive
+     */
+    public Page<IRoom> listRooms(RoomFilter filter, String cursor, int pageSize) {
+        Page.checkPageSize(pageSize);
+        List<IRoom> page = new ArrayList<>(Math.min(pageSize, 1024));
+        int roomCount = roomsByOrdinal.size();
+        int roomOrdinal = Page.position(cursor, 0);
+        for (; roomOrdinal < roomCount && page.size() < pageSize; roomOrdinal++) {
+            IRoom room = roomsByOrdinal.get(roomOrdinal);
+            if (filter.matches(room)) {
+                page.add(room);
+            }
+        }
+        return new Page<>(page, roomOrdinal < roomCount ? Page.cursor(roomOrdinal) : null);
+    }
+
+    /**
+     * Streams rooms lazily in the order they were added
+     *
+     * @param filter        conditions the rooms must meet
+     * @return              stream of rooms
+     */
+    public Stream<IRoom> streamRooms(RoomFilter filter) {
+        return IntStream.range(0, roomsByOrdinal.size()).mapToObj(roomsByOrdinal::get).filter(filter::matches);
+    }
+
+    /**
+     * Turns the column conditions of a filter into a test on rows. The customer is handled by the callers,
+     * which walk that customer's rows only.
+     */
+    private IntPredicate rowFilter(ReservationStore store, ReservationFilter filter) {
+        IntPredicate matches = row -> ! store.isCancelled(row)
+                && filter.overlaps(store.checkInDay(row), store.checkOutDay(row));
+        if (filter.getRoomNumber() != null) {
+            Integer roomOrdinal = roomOrdinals.get(filter.getRoomNumber());
+            int wantedOrdinal = roomOrdinal == null ? -1 : roomOrdinal;
+            matches = matches.and(row -> store.roomOrdinal(row) == wantedOrdinal);
+        }
+        if (filter.getRoomType() != null) {
+            matches = matches.and(row ->
+                    roomsByOrdinal.get(store.roomOrdinal(row)).getRoomType() == filter.getRoomType());
+        }
+        return matches;
+    }
+
+    /**
+     * Creates the Reservation view of a row of a store
+     */
+    private Reservation reservationAt(ReservationStore store, int row) {
+        return reservationFactory.create(store.customer(row), roomsByOrdinal.get(store.roomOrdinal(row)),
+                EpochDays.toDate(store.checkInDay(row)), EpochDays.toDate(store.checkOutDay(row)));
+    }
+
+    /**
+     * Registers a listener that is told about every room and reservation added from now on
+     *
+     * @param listener      MutationListener
+     */
+    public void addListener(MutationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener      MutationListener to stop notifying
+     */
+    public void removeListener(MutationListener listener) {
+        listeners.remove(listener);
+    }
+
     public void printAllReservation() {
-        System.out.println(reservations);
+        System.out.println(getAllReservations());
     }
 
+    /**
+     * Creates a Reservation for every booking. Prefer forEachStay when the objects aren't needed.
+     *
+     * @return          set of all reservations
+     */
     public Set<Reservation> getAllReservations() {
-        return reservations;
+        Set<Reservation> allReservations = new HashSet<>(Math.max(16, getReservationCount() * 4 / 3 + 1));
+        for (ReservationStore store: partitions.stores()) {
+            int rowCount = store.size();
+            for (int row = 0; row < rowCount; row++) {
+                if (! store.isCancelled(row)) {
+                    allReservations.add(reservationAt(store, row));
+                }
+            }
+        }
+        return allReservations;
     }
-    record DatesCheckResult(boolean isCheckInOK, boolean isCheckOutOK) {}
 }
\ No newline at end of file
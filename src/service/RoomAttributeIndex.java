@@ -0,0 +1,238 @@
+package service;
+
+import model.FreeRoom;
+import model.IRoom;
+import model.RoomType;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.IntStream;
+
+/**
+ * RoomAttributeIndex keeps bitmaps over room ordinals of the attributes rooms are searched by: one per room
+ * type, one per price band of 50 and one of the free rooms, with the prices and types alongside as columns. A
+ * filter is answered by combining the bitmaps a word of 64 rooms at a time, so the rooms it selects are known
+ * without looking at a single IRoom; only rooms in the lowest and highest band of a price range have their price
+ * read. The rooms are also kept sorted by price, for searches that want the cheapest rooms first.
+ *
+ * Rooms are added by one thread at a time (the caller holds the service's room lock). The bitmaps are copied
+ * when they grow and published before the room count, so readers take no lock and see every room below the
+ * count they read.
+ *
+ * @author rachellai
+ */
+final class RoomAttributeIndex {
+    private static final double PRICE_BAND_WIDTH = 50;
+    /**
+     * The last band holds every price from (PRICE_BANDS - 1) * PRICE_BAND_WIDTH up
+     */
+    private static final int PRICE_BANDS = 64;
+    private static final RoomType[] ROOM_TYPES = RoomType.values();
+
+    private final ConcurrentSkipListSet<PricedRoom> byPrice = new ConcurrentSkipListSet<>();
+    private volatile Bitmaps bitmaps = new Bitmaps(1);
+    private volatile int size;
+
+    /**
+     * Adds the next room. Callers hold the service's room lock.
+     *
+     * @param roomOrdinal       ordinal of the room, one more than the previous room's
+     * @param room              IRoom
+     */
+    void addRoom(int roomOrdinal, IRoom room) {
+        Bitmaps current = bitmaps;
+        if (roomOrdinal >> 6 >= current.free.length) {
+            current = current.grow(Math.max(current.free.length * 2, (roomOrdinal >> 6) + 1));
+            bitmaps = current;
+        }
+        int word = roomOrdinal >> 6;
+        long bit = 1L << roomOrdinal;
+        double price = room.getRoomPrice();
+        current.byType[room.getRoomType().ordinal()][word] |= bit;
+        current.byPriceBand[priceBand(price)][word] |= bit;
+        if (room instanceof FreeRoom) {
+            current.free[word] |= bit;
+        }
+        current.prices[roomOrdinal] = price;
+        current.roomTypes[roomOrdinal] = (byte) room.getRoomType().ordinal();
+        byPrice.add(new PricedRoom(price, roomOrdinal));
+        size = roomOrdinal + 1;
+    }
+
+    /**
+     * Lists the rooms that pass a filter in price order, lazily: the price range is a range of the sorted
+     * rooms, and the type and free flag are read from the bitmaps, so stopping early stops the work
+     *
+     * @param filter        type, free flag and price range to select
+     * @return              ordinals of the selected rooms, cheapest first and in the order they were added
+     *                      when the price is the same
+     */
+    IntStream byPrice(RoomFilter filter) {
+        double minPrice = filter.getMinPrice();
+        double maxPrice = filter.getMaxPrice();
+        if (! (minPrice <= maxPrice)) {
+            return IntStream.empty();
+        }
+        RoomType roomType = filter.getRoomType();
+        Boolean free = filter.getFree();
+        IntStream ordinals = byPrice.subSet(new PricedRoom(minPrice, -1), true,
+                new PricedRoom(maxPrice, Integer.MAX_VALUE), true).stream().mapToInt(room -> room.ordinal);
+        if (roomType == null && free == null) {
+            return ordinals;
+        }
+        return ordinals.filter(roomOrdinal -> {
+            Bitmaps current = bitmaps;
+            int word = roomOrdinal >> 6;
+            long bit = 1L << roomOrdinal;
+            return (roomType == null || (current.byType[roomType.ordinal()][word] & bit) != 0)
+                    && (free == null || ((current.free[word] & bit) != 0) == free);
+        });
+    }
+
+    /**
+     * Selects the rooms that pass every condition of a filter
+     *
+     * @param filter        type, free flag and price range to select
+     * @return              bitmap of the selected ordinals; bit {@code ordinal & 63} of
+     *                      {@code words[ordinal >> 6]}, with no bits at or past the current room count
+     */
+    long[] select(RoomFilter filter) {
+        int count = size;
+        Bitmaps current = bitmaps;
+        int words = (count + 63) >> 6;
+        long[] selected = new long[words];
+        if (words == 0) {
+            return selected;
+        }
+        double minPrice = filter.getMinPrice();
+        double maxPrice = filter.getMaxPrice();
+        if (! (minPrice <= maxPrice)) {
+            return selected;
+        }
+        boolean anyPrice = minPrice == 0 && maxPrice == Double.POSITIVE_INFINITY;
+        int lowBand = priceBand(minPrice);
+        int highBand = priceBand(maxPrice);
+        long[] typeBits = filter.getRoomType() == null ? null : current.byType[filter.getRoomType().ordinal()];
+        Boolean free = filter.getFree();
+        for (int word = 0; word < words; word++) {
+            long bits = typeBits == null ? -1L : typeBits[word];
+            if (free != null) {
+                bits &= free ? current.free[word] : ~current.free[word];
+            }
+            if (! anyPrice && bits != 0) {
+                long inBands = 0;
+                for (int band = lowBand; band <= highBand; band++) {
+                    inBands |= current.byPriceBand[band][word];
+                }
+                bits &= inBands;
+                long atEdges = bits & (current.byPriceBand[lowBand][word] | current.byPriceBand[highBand][word]);
+                while (atEdges != 0) {
+                    int roomOrdinal = (word << 6) + Long.numberOfTrailingZeros(atEdges);
+                    double price = current.prices[roomOrdinal];
+                    if (price < minPrice || price > maxPrice) {
+                        bits &= ~(1L << roomOrdinal);
+                    }
+                    atEdges &= atEdges - 1;
+                }
+            }
+            selected[word] = bits;
+        }
+        if ((count & 63) != 0) {
+            selected[words - 1] &= (1L << count) - 1;
+        }
+        return selected;
+    }
+
+    /**
+     * @param roomOrdinal   ordinal of a room that has been added
+     * @return              price of the room
+     */
+    double priceOf(int roomOrdinal) {
+        return bitmaps.prices[roomOrdinal];
+    }
+
+    /**
+     * @param roomOrdinal   ordinal of a room that has been added
+     * @return              ordinal of the room's type
+     */
+    int roomTypeOf(int roomOrdinal) {
+        return bitmaps.roomTypes[roomOrdinal];
+    }
+
+    /**
+     * Counts the rooms of each type by counting the bits of the type bitmaps
+     *
+     * @return              number of rooms added so far, indexed by room type ordinal
+     */
+    int[] countByType() {
+        int count = size;
+        Bitmaps current = bitmaps;
+        int[] counts = new int[ROOM_TYPES.length];
+        for (int type = 0; type < counts.length; type++) {
+            for (int word = 0; word < (count + 63) >> 6; word++) {
+                counts[type] += Long.bitCount(current.byType[type][word]);
+            }
+        }
+        return counts;
+    }
+
+    private static int priceBand(double price) {
+        return (int) Math.min(PRICE_BANDS - 1, Math.max(0, price / PRICE_BAND_WIDTH));
+    }
+
+    /**
+     * Key of a room in price order
+     */
+    private static final class PricedRoom implements Comparable<PricedRoom> {
+        private final double price;
+        private final int ordinal;
+
+        PricedRoom(double price, int ordinal) {
+            this.price = price;
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int compareTo(PricedRoom other) {
+            int byPrice = Double.compare(price, other.price);
+            return byPrice != 0 ? byPrice : Integer.compare(ordinal, other.ordinal);
+        }
+    }
+
+    /**
+     * Bitmaps and columns of a fixed capacity, in words of 64 rooms
+     */
+    private static final class Bitmaps {
+        private final long[][] byType;
+        private final long[][] byPriceBand;
+        private final long[] free;
+        private final double[] prices;
+        private final byte[] roomTypes;
+
+        Bitmaps(int words) {
+            this(new long[ROOM_TYPES.length][words], new long[PRICE_BANDS][words], new long[words],
+                    new double[words << 6], new byte[words << 6]);
+        }
+
+        private Bitmaps(long[][] byType, long[][] byPriceBand, long[] free, double[] prices, byte[] roomTypes) {
+            this.byType = byType;
+            this.byPriceBand = byPriceBand;
+            this.free = free;
+            this.prices = prices;
+            this.roomTypes = roomTypes;
+        }
+
+        Bitmaps grow(int words) {
+            long[][] newByType = new long[byType.length][];
+            for (int i = 0; i < byType.length; i++) {
+                newByType[i] = Arrays.copyOf(byType[i], words);
+            }
+            long[][] newByPriceBand = new long[byPriceBand.length][];
+            for (int i = 0; i < byPriceBand.length; i++) {
+                newByPriceBand[i] = Arrays.copyOf(byPriceBand[i], words);
+            }
+            return new Bitmaps(newByType, newByPriceBand, Arrays.copyOf(free, words),
+                    Arrays.copyOf(prices, words << 6), Arrays.copyOf(roomTypes, words << 6));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package service;
+
+import model.FreeRoom;
+import model.IRoom;
+import model.RoomType;
+
+/**
+ * RoomFilter selects rooms by type, free flag and price for the listing and availability search APIs. Filters
+ * are immutable; every method returns a narrower copy.
+ *
+ * @author rachellai
+ */
+public final class RoomFilter {
+    private static final RoomFilter ALL = new RoomFilter(null, null, 0, Double.POSITIVE_INFINITY);
+
+    private final RoomType roomType;
+    private final Boolean free;
+    private final double minPrice;
+    private final double maxPrice;
+
+    private RoomFilter(RoomType roomType, Boolean free, double minPrice, double maxPrice) {
+        this.roomType = roomType;
+        this.free = free;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * @return          filter that selects every room
+     */
+    public static RoomFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param type      room type to keep
+     * @return          filter that also requires the type
+     */
+    public RoomFilter ofType(RoomType type) {
+        return new RoomFilter(type, free, minPrice, maxPrice);
+    }
+
+    /**
+     * @param isFree    true to keep only free rooms, false to keep only paid ones
+     * @return          filter that also requires the free flag
+     */
+    public RoomFilter free(boolean isFree) {
+        return new RoomFilter(roomType, isFree, minPrice, maxPrice);
+    }
+
+    /**
+     * Prices are never negative, so a negative lowest price is taken as 0; every search path then reads the same
+     * bounds.
+     *
+     * @param min       lowest price to keep
+     * @param max       highest price to keep
+     * @return          filter that also requires the price range
+     */
+    public RoomFilter priceBetween(double min, double max) {
+        return new RoomFilter(roomType, free, Math.max(0, min), max);
+    }
+
+    RoomType getRoomType() {
+        return roomType;
+    }
+
+    Boolean getFree() {
+        return free;
+    }
+
+    double getMinPrice() {
+        return minPrice;
+    }
+
+    double getMaxPrice() {
+        return maxPrice;
+    }
+
+    /**
+     * @return          true if the filter has no condition that can exclude a room
+     */
+    boolean selectsEveryRoom() {
+        return roomType == null && free == null && minPrice == 0 && maxPrice == Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param room      IRoom
+     * @return          whether the room passes every condition of the filter
+     */
+    public boolean matches(IRoom room) {
+        return (roomType == null || room.getRoomType() == roomType)
+                && (free == null || (room instanceof FreeRoom) == free)
+                && room.getRoomPrice() >= minPrice && room.getRoomPrice() <= maxPrice;
+    }
+}
@@ -0,0 +1,194 @@
+package service;
+
+import model.FreeRoom;
+import model.IRoom;
+import model.Room;
+import model.RoomType;
+import validation.InputValidator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * RoomImporter reads a room catalog from a CSV or TSV file. The file is read as a stream of fixed-size blocks
+ * of lines; each block is parsed and validated on the common fork/join pool while the next one is read, and
+ * only a bounded number of blocks are in flight, so memory holds the parsed rooms but never the whole text.
+ *
+ * Each line is: room number, price, type (single/double or s/d), and an optional free flag (true/false).
+ * Fields are separated by tabs if the first line contains a tab and by commas otherwise. Blank lines and lines
+ * starting with # are skipped, as is a header line starting with "room".
+ *
+ * @author rachellai
+ */
+public final class RoomImporter {
+    private static final int LINES_PER_BLOCK = 8192;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private RoomImporter() {
+    }
+
+    /**
+     * Reads and validates every room of a catalog
+     *
+     * @param file          CSV or TSV file
+     * @return              rooms in file order
+     * @throws IOException  if the file can't be read
+     * @throws IllegalArgumentException if any line is invalid; the message lists the first invalid lines
+     */
+    public static List<IRoom> read(Path file) throws IOException {
+        int maxBlocksInFlight = 2 * ForkJoinPool.getCommonPoolParallelism();
+        Deque<CompletableFuture<ParsedBlock>> inFlight = new ArrayDeque<>();
+        List<IRoom> rooms = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String firstLine = reader.readLine();
+            if (firstLine == null) {
+                return rooms;
+            }
+            char separator = firstLine.indexOf('\t') >= 0 ? '\t' : ',';
+            List<String> block = new ArrayList<>(LINES_PER_BLOCK);
+            block.add(firstLine);
+            int blockFirstLine = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (block.size() == LINES_PER_BLOCK) {
+                    submit(inFlight, block, blockFirstLine, separator);
+                    blockFirstLine += block.size();
+                    block = new ArrayList<>(LINES_PER_BLOCK);
+                    if (inFlight.size() >= maxBlocksInFlight) {
+                        collect(inFlight.removeFirst(), rooms, errors);
+                    }
+                }
+                block.add(line);
+            }
+            submit(inFlight, block, blockFirstLine, separator);
+        }
+        while (! inFlight.isEmpty()) {
+            collect(inFlight.removeFirst(), rooms, errors);
+        }
+        if (! errors.isEmpty()) {
+            throw new IllegalArgumentException("The room file has invalid lines; no rooms were added."
+                    + System.lineSeparator() + String.join(System.lineSeparator(), errors));
+        }
+        return rooms;
+    }
+
+    private static void submit(Deque<CompletableFuture<ParsedBlock>> inFlight, List<String> lines,
+                               int firstLineNumber, char separator) {
+        inFlight.addLast(CompletableFuture.supplyAsync(() -> parseBlock(lines, firstLineNumber, separator)));
+    }
+
+    private static void collect(CompletableFuture<ParsedBlock> pending, List<IRoom> rooms, List<String> errors) {
+        ParsedBlock block;
+        try {
+            block = pending.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+        rooms.addAll(block.rooms);
+        for (String error: block.errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    private static ParsedBlock parseBlock(List<String> lines, int firstLineNumber, char separator) {
+        ParsedBlock block = new ParsedBlock(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            int lineNumber = firstLineNumber + i;
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")
+                    || (lineNumber == 1 && line.regionMatches(true, 0, "room", 0, 4))) {
+                continue;
+            }
+            try {
+                block.rooms.add(parseRoom(line, separator));
+            } catch (IllegalArgumentException ex) {
+                if (block.errors.size() < MAX_REPORTED_ERRORS) {
+                    block.errors.add("Line " + lineNumber + ": " + ex.getMessage());
+                }
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Parses one catalog line
+     *
+     * @param line          non-empty line
+     * @param separator     field separator
+     * @return              Room, or FreeRoom if the free flag is set
+     * @throws IllegalArgumentException if a field is missing or invalid
+     */
+    static IRoom parseRoom(String line, char separator) {
+        String[] fields = split(line, separator);
+        if (fields.length < 3 || fields.length > 4) {
+            throw new IllegalArgumentException("expected room number, price, type and an optional free flag");
+        }
+        String roomNumber = fields[0];
+        if (! InputValidator.isValidRoomNumber(roomNumber)) {
+            throw new IllegalArgumentException("room number should be an integer, got \"" + roomNumber + "\"");
+        }
+        double price = InputValidator.parsePrice(fields[1]);
+        if (Double.isNaN(price)) {
+            throw new IllegalArgumentException("price should be a non-negative decimal number, got \""
+                    + fields[1] + "\"");
+        }
+        RoomType roomType = switch (fields[2].toLowerCase(Locale.ROOT)) {
+            case "s", "single" -> RoomType.SINGLE;
+            case "d", "double" -> RoomType.DOUBLE;
+            default -> throw new IllegalArgumentException("type should be single or double, got \""
+                    + fields[2] + "\"");
+        };
+        boolean free = false;
+        if (fields.length == 4 && ! fields[3].isEmpty()) {
+            free = switch (fields[3].toLowerCase(Locale.ROOT)) {
+                case "true", "yes", "y", "1" -> true;
+                case "false", "no", "n", "0" -> false;
+                default -> throw new IllegalArgumentException("free flag should be true or false, got \""
+                        + fields[3] + "\"");
+            };
+        }
+        return free ? new FreeRoom(roomNumber, roomType) : new Room(roomNumber, price, roomType);
+    }
+
+    /**
+     * Splits a line and trims each field and any surrounding double quotes
+     */
+    private static String[] split(String line, char separator) {
+        List<String> fields = new ArrayList<>(4);
+        int start = 0;
+        while (true) {
+            int end = line.indexOf(separator, start);
+            String field = (end < 0 ? line.substring(start) : line.substring(start, end)).strip();
+            if (field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"")) {
+                field = field.substring(1, field.length() - 1).strip();
+            }
+            fields.add(field);
+            if (end < 0) {
+                return fields.toArray(new String[0]);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Rooms and error messages of one block of lines
+     */
+    private static final class ParsedBlock {
+        private final List<IRoom> rooms;
+        private final List<String> errors = new ArrayList<>();
+
+        ParsedBlock(int lineCount) {
+            rooms = new ArrayList<>(lineCount);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RoomLocks serializes bookings per room with a fixed set of striped locks. Bookings for rooms on different
+ * stripes never wait for each other.
+ *
+ * @author rachellai
+ */
+final class RoomLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Constructor
+     *
+     * @param minimumStripes        lower bound of the number of stripes, rounded up to a power of two
+     */
+    RoomLocks(int minimumStripes) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, minimumStripes - 1)) << 1;
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = stripeCount - 1;
+    }
+
+    /**
+     * @return                  number of stripes, a power of two; rooms whose ordinals are equal modulo it share a
+     *                          lock
+     */
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @param roomOrdinal       ordinal of the room
+     * @return                  lock guarding the room's bookings
+     */
+    ReentrantLock forRoom(int roomOrdinal) {
+        return stripes[roomOrdinal & mask];
+    }
+
+    /**
+     * Locks guarding a set of rooms, each stripe once, in ascending stripe order. Every caller that holds more
+     * than one stripe takes them in this order, so two group bookings can never wait for each other in a cycle.
+     *
+     * @param roomOrdinals      ordinals of the rooms
+     * @return                  distinct locks to take in array order and release in reverse
+     */
+    ReentrantLock[] forRooms(int[] roomOrdinals) {
+        boolean[] needed = new boolean[stripes.length];
+        int count = 0;
+        for (int roomOrdinal: roomOrdinals) {
+            if (! needed[roomOrdinal & mask]) {
+                needed[roomOrdinal & mask] = true;
+                count++;
+            }
+        }
+        ReentrantLock[] locks = new ReentrantLock[count];
+        int next = 0;
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            if (needed[stripe]) {
+                locks[next++] = stripes[stripe];
+            }
+        }
+        return locks;
+    }
+
+    /**
+     * Locks guarding every room, in ascending stripe order. Holding all of them stops every change to bookings.
+     *
+     * @return                  all locks, to take in array order and release in reverse
+     */
+    ReentrantLock[] forAllRooms() {
+        return stripes.clone();
+    }
+}
@@ -0,0 +1,454 @@
+package service;
+
+import model.IRoom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RoomPartitions splits the rooms into partitions by room number. Each partition owns the bookings of its rooms:
+ * an availability index of those rooms only, under ordinals of its own, and a reservation store of their
+ * bookings. With more than one partition, each also has a worker thread that is the only writer of its state, so
+ * bookings of rooms in different partitions run on different threads without sharing a lock, and a search for
+ * free rooms scans every partition on its own worker at the same time and merges what they find. With a single
+ * partition there is no worker, and callers write under the service's room locks instead.
+ *
+ * A change that spans partitions, such as a group booking of rooms in several of them or the cut of a snapshot,
+ * pauses the workers of those partitions and is made on the calling thread while they wait. One such change runs
+ * at a time, so two of them never wait for each other's workers.
+ *
+ * Rooms are added by one thread at a time (the caller holds the service's room lock). The room maps are copied
+ * when they grow and written before the service publishes the rooms, and the partitions' own room lists are
+ * published after it, so readers take no lock and never meet a room the service doesn't have yet.
+ *
+ * @author rachellai
+ */
+final class RoomPartitions {
+    private final Partition[] partitions;
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private volatile int[] partitionOfRoom = new int[16];
+    private volatile int[] localOrdinalOfRoom = new int[16];
+
+    /**
+     * Constructor
+     *
+     * @param partitionCount        number of partitions; more than one gives each a worker thread
+     * @param availabilityBackend   data structure of each partition's availability index
+     * @param storeStripes          number of room lock stripes writers of a single partition hold, a power of two
+     * @throws IllegalArgumentException if the number of partitions isn't positive
+     */
+    RoomPartitions(int partitionCount, AvailabilityBackend availabilityBackend, int storeStripes) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("The number of partitions should be at least 1.");
+        }
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(availabilityBackend.createIndex(),
+                    new ReservationStore(partitionCount == 1 ? storeStripes : 1),
+                    partitionCount == 1 ? null : "reservation-partition-" + i);
+        }
+    }
+
+    /**
+     * @return          number of partitions
+     */
+    int count() {
+        return partitions.length;
+    }
+
+    /**
+     * @return          true if each partition has a worker that writes its state
+     */
+    boolean hasWorkers() {
+        return partitions.length > 1;
+    }
+
+    Partition get(int partition) {
+        return partitions[partition];
+    }
+
+    /**
+     * @param roomOrdinal       ordinal of a room in the service
+     * @return                  index of the partition that owns the room
+     */
+    int partitionOf(int roomOrdinal) {
+        return partitionOfRoom[roomOrdinal];
+    }
+
+    /**
+     * @param roomOrdinal       ordinal of a room in the service
+     * @return                  partition that owns the room
+     */
+    Partition ofRoom(int roomOrdinal) {
+        return partitions[partitionOfRoom[roomOrdinal]];
+    }
+
+    /**
+     * @param roomOrdinal       ordinal of a room in the service
+     * @return                  ordinal of the room in its partition's availability index
+     */
+    int localOrdinal(int roomOrdinal) {
+        return localOrdinalOfRoom[roomOrdinal];
+    }
+
+    /**
+     * @return          reservation store of every partition
+     */
+    ReservationStore[] stores() {
+        ReservationStore[] stores = new ReservationStore[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            stores[i] = partitions[i].store;
+        }
+        return stores;
+    }
+
+    boolean isAvailable(int roomOrdinal, int checkInDay, int checkOutDay) {
+        return partitions[partitionOfRoom[roomOrdinal]].index.isAvailable(localOrdinalOfRoom[roomOrdinal],
+                checkInDay, checkOutDay);
+    }
+
+    boolean markBookedNights(int roomOrdinal, int fromDay, int toDay, long[] nights) {
+        return partitions[partitionOfRoom[roomOrdinal]].index.markBookedNights(localOrdinalOfRoom[roomOrdinal],
+                fromDay, toDay, nights);
+    }
+
+    /**
+     * Adds rooms to the partitions of their room numbers, extending each partition's index once. Callers hold
+     * the service's room lock, publish the rooms after this returns and then call publishRooms.
+     *
+     * @param rooms                 rooms to add
+     * @param firstRoomOrdinal      ordinal in the service of the first room; the others follow it
+     */
+    void addRooms(List<IRoom> rooms, int firstRoomOrdinal) {
+        int endRoomOrdinal = firstRoomOrdinal + rooms.size();
+        int[] roomPartitions = partitionOfRoom;
+        int[] localOrdinals = localOrdinalOfRoom;
+        if (endRoomOrdinal > roomPartitions.length) {
+            int length = Math.max(roomPartitions.length * 2, endRoomOrdinal);
+            roomPartitions = Arrays.copyOf(roomPartitions, length);
+            localOrdinals = Arrays.copyOf(localOrdinals, length);
+        }
+        int[] added = new int[partitions.length];
+        for (int i = 0; i < rooms.size(); i++) {
+            int partition = partitionOf(rooms.get(i).getRoomNumber());
+            roomPartitions[firstRoomOrdinal + i] = partition;
+            localOrdinals[firstRoomOrdinal + i] = added[partition]++;
+        }
+        int[] firstLocalOrdinals = new int[partitions.length];
+        for (int partition = 0; partition < partitions.length; partition++) {
+            if (added[partition] > 0) {
+                firstLocalOrdinals[partition] = added[partition] == 1 ? partitions[partition].index.addRoom()
+                        : partitions[partition].index.addRooms(added[partition]);
+            }
+        }
+        for (int roomOrdinal = firstRoomOrdinal; roomOrdinal < endRoomOrdinal; roomOrdinal++) {
+            int partition = roomPartitions[roomOrdinal];
+            localOrdinals[roomOrdinal] += firstLocalOrdinals[partition];
+            partitions[partition].addRoom(localOrdinals[roomOrdinal], roomOrdinal);
+        }
+        partitionOfRoom = roomPartitions;
+        localOrdinalOfRoom = localOrdinals;
+    }
+
+    /**
+     * Lets the partitions' scans see the rooms added so far. Callers hold the service's room lock.
+     */
+    void publishRooms() {
+        for (Partition partition: partitions) {
+            partition.roomCount = partition.addedRooms;
+        }
+    }
+
+    /**
+     * Loads stays into the partitions of their rooms. Nothing else may use the partitions until it returns.
+     *
+     * @param customerArchive       customers the stays refer to
+     * @param stayRoomOrdinals      ordinal in the service of each stay's room, the stays of a room together
+     * @param stayCustomers         archive index of the customer of each stay
+     * @param checkInDays           check-in epoch day of each stay, ascending within a room
+     * @param checkOutDays          check-out epoch day of each stay
+     */
+    void restore(CustomerArchive customerArchive, int[] stayRoomOrdinals, int[] stayCustomers, int[] checkInDays,
+                 int[] checkOutDays) {
+        int from = 0;
+        while (from < stayRoomOrdinals.length) {
+            int roomOrdinal = stayRoomOrdinals[from];
+            int to = from;
+            while (to < stayRoomOrdinals.length && stayRoomOrdinals[to] == roomOrdinal) {
+                to++;
+            }
+            ofRoom(roomOrdinal).index.restore(localOrdinal(roomOrdinal), checkInDays, checkOutDays, from, to);
+            from = to;
+        }
+        if (partitions.length == 1) {
+            partitions[0].store.restore(customerArchive, stayRoomOrdinals, stayCustomers, checkInDays,
+                    checkOutDays);
+            return;
+        }
+        int[] stays = new int[partitions.length];
+        for (int roomOrdinal: stayRoomOrdinals) {
+            stays[partitionOf(roomOrdinal)]++;
+        }
+        int[][] rooms = new int[partitions.length][];
+        int[][] customers = new int[partitions.length][];
+        int[][] checkIns = new int[partitions.length][];
+        int[][] checkOuts = new int[partitions.length][];
+        for (int partition = 0; partition < partitions.length; partition++) {
+            rooms[partition] = new int[stays[partition]];
+            customers[partition] = new int[stays[partition]];
+            checkIns[partition] = new int[stays[partition]];
+            checkOuts[partition] = new int[stays[partition]];
+            stays[partition] = 0;
+        }
+        for (int stay = 0; stay < stayRoomOrdinals.length; stay++) {
+            int partition = partitionOf(stayRoomOrdinals[stay]);
+            int row = stays[partition]++;
+            rooms[partition][row] = stayRoomOrdinals[stay];
+            customers[partition][row] = stayCustomers[stay];
+            checkIns[partition][row] = checkInDays[stay];
+            checkOuts[partition][row] = checkOutDays[stay];
+        }
+        for (int partition = 0; partition < partitions.length; partition++) {
+            partitions[partition].store.restore(customerArchive, rooms[partition], customers[partition],
+                    checkIns[partition], checkOuts[partition]);
+        }
+    }
+
+    /**
+     * Finds the rooms free on every night of a stay. With workers, every partition scans its rooms on its own
+     * worker at the same time.
+     *
+     * @param checkInDay        check-in epoch day
+     * @param checkOutDay       check-out epoch day
+     * @return                  ordinals in the service of the free rooms, in ascending order
+     */
+    int[] scan(int checkInDay, int checkOutDay) {
+        if (partitions.length == 1) {
+            return partitions[0].scan(checkInDay, checkOutDay);
+        }
+        List<Future<int[]>> scans = new ArrayList<>(partitions.length);
+        for (Partition partition: partitions) {
+            scans.add(partition.worker.submit(() -> partition.scan(checkInDay, checkOutDay)));
+        }
+        int[][] found = new int[partitions.length][];
+        int total = 0;
+        for (int i = 0; i < partitions.length; i++) {
+            found[i] = await(scans.get(i));
+            total += found[i].length;
+        }
+        return merge(found, total);
+    }
+
+    /**
+     * Runs a change on the worker of a partition and waits for it. The change is made even if the caller is
+     * interrupted while it waits.
+     *
+     * @param partition         index of the partition
+     * @param change            change to the partition's state
+     */
+    void run(int partition, Runnable change) {
+        Partition owner = partitions[partition];
+        if (Thread.currentThread() == owner.workerThread) {
+            change.run();
+            return;
+        }
+        await(owner.worker.submit(change));
+    }
+
+    /**
+     * Stops the workers of some partitions, so the caller may change their state as if it were their worker
+     * until it resumes them. A pause already held by another thread is waited for.
+     *
+     * @param paused            which partitions to pause, by index
+     * @return                  the pause, to resume once the change is made
+     */
+    Pause pause(boolean[] paused) {
+        pauseLock.lock();
+        try {
+            return new Pause(paused);
+        } catch (RuntimeException | Error ex) {
+            pauseLock.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return          a pause of every partition's worker
+     */
+    Pause pauseAll() {
+        boolean[] paused = new boolean[partitions.length];
+        Arrays.fill(paused, true);
+        return pause(paused);
+    }
+
+    /**
+     * @param roomNumber        room number
+     * @return                  index of the partition that owns rooms with that number
+     */
+    private int partitionOf(String roomNumber) {
+        int hash = roomNumber.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitions.length);
+    }
+
+    /**
+     * Merges ordinal lists through a bitmap of every ordinal up to the largest one, which is linear in the
+     * number of rooms however many partitions there are
+     */
+    private static int[] merge(int[][] lists, int total) {
+        int largest = -1;
+        for (int[] list: lists) {
+            if (list.length > 0) {
+                largest = Math.max(largest, list[list.length - 1]);
+            }
+        }
+        long[] bitmap = new long[(largest >> 6) + 1];
+        for (int[] list: lists) {
+            for (int roomOrdinal: list) {
+                bitmap[roomOrdinal >> 6] |= 1L << roomOrdinal;
+            }
+        }
+        int[] merged = new int[total];
+        int next = 0;
+        for (int word = 0; word < bitmap.length; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                merged[next++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Waits for a task on a worker without giving up when interrupted, since the task goes on regardless, and
+     * rethrows what the task threw
+     */
+    private static <T> T await(Future<T> result) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    if (ex.getCause() instanceof Error cause) {
+                        throw cause;
+                    }
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One partition: the availability index of its rooms, the store of their bookings, the ordinals in the
+     * service of its rooms by their ordinals in the index, and its worker, if it has one
+     */
+    static final class Partition {
+        final AvailabilityIndex index;
+        final ReservationStore store;
+        private final ExecutorService worker;
+        private volatile Thread workerThread;
+        private volatile int[] roomOrdinals = new int[16];
+        private int addedRooms;
+        private volatile int roomCount;
+
+        Partition(AvailabilityIndex index, ReservationStore store, String workerName) {
+            this.index = index;
+            this.store = store;
+            worker = workerName == null ? null : Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, workerName);
+                thread.setDaemon(true);
+                workerThread = thread;
+                return thread;
+            });
+        }
+
+        private void addRoom(int localOrdinal, int roomOrdinal) {
+            int[] current = roomOrdinals;
+            if (localOrdinal == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[localOrdinal] = roomOrdinal;
+            roomOrdinals = current;
+            addedRooms = localOrdinal + 1;
+        }
+
+        private int[] scan(int checkInDay, int checkOutDay) {
+            int count = roomCount;
+            int[] current = roomOrdinals;
+            int[] available = new int[count];
+            int found = 0;
+            for (int localOrdinal = 0; localOrdinal < count; localOrdinal++) {
+                if (index.isAvailable(localOrdinal, checkInDay, checkOutDay)) {
+                    available[found++] = current[localOrdinal];
+                }
+            }
+            return Arrays.copyOf(available, found);
+        }
+    }
+
+    /**
+     * Workers held waiting while their partitions are changed from another thread
+     */
+    final class Pause {
+        private final CountDownLatch resume = new CountDownLatch(1);
+
+        private Pause(boolean[] paused) {
+            int count = 0;
+            for (int partition = 0; partition < partitions.length; partition++) {
+                if (paused[partition] && partitions[partition].worker != null) {
+                    count++;
+                }
+            }
+            CountDownLatch waiting = new CountDownLatch(count);
+            for (int partition = 0; partition < partitions.length; partition++) {
+                if (paused[partition] && partitions[partition].worker != null) {
+                    partitions[partition].worker.execute(() -> {
+                        waiting.countDown();
+                        awaitUninterruptibly(resume);
+                    });
+                }
+            }
+            awaitUninterruptibly(waiting);
+        }
+
+        /**
+         * Lets the paused workers go on
+         */
+        void resume() {
+            resume.countDown();
+            pauseLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+
+/**
+ * StayVisitor receives the bookings of ReservationService one at a time as plain values, so callers that only
+ * aggregate or export them don't need Reservation objects.
+ *
+ * @author rachellai
+ */
+@FunctionalInterface
+public interface StayVisitor {
+
+    /**
+     * @param room              booked room
+     * @param customer          customer who booked
+     * @param checkInDay        check-in epoch day
+     * @param checkOutDay       check-out epoch day
+     */
+    void visit(IRoom room, Customer customer, int checkInDay, int checkOutDay);
+}
@@ -2,9 +2,17 @@ package ui;
 
 import api.AdminResource;
 import model.*;
+import service.EpochDays;
+import service.Page;
+import service.ReservationFilter;
+import service.RoomFilter;
 import ui.ConsolePrinter;
+import validation.InputValidator;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Admin menu UI
@@ -12,6 +20,7 @@ import java.util.*;
  * @author rachellai
  */
 public class AdminMenu{
+    private static final int PAGE_SIZE = 20;
     private final AdminResource adminResource;
     private final ConsolePrinter consolePrinter;
     private final Scanner scanner;
@@ -29,18 +38,6 @@ public class AdminMenu{
         this.consolePrinter = consolePrinter;
     }
 
-    boolean isNumber(String strInt) {
-        if (strInt == null) {
-            return false;
-        }
-        try {
-            Double.parseDouble(strInt);
-        } catch (NumberFormatException ex) {
-            return false;
-        }
-        return true;
-    }
-
     public void printMenu() {
         consolePrinter.print("");
         consolePrinter.print("Admin menu of Rachel's Hotel Reservation App");
@@ -49,50 +46,65 @@ public class AdminMenu{
         consolePrinter.print("2. See all Rooms");
         consolePrinter.print("3. See all Reservations");
         consolePrinter.print("4. Add a room");
-        consolePrinter.print("5. Back to Main Menu");
+        consolePrinter.print("5. Import rooms from a CSV/TSV file");
+        consolePrinter.print("6. Show operation metrics");
+        consolePrinter.print("7. Show occupancy and revenue report");
+        consolePrinter.print("8. Back to Main Menu");
         consolePrinter.print("----------------------------------------");
         consolePrinter.print("Select a menu option");
     }
 
     /**
-     * Gets all customers and prints to console.
+     * Prints customers to console a page at a time.
      */
     public void showAllCustomers() {
-        Collection<Customer> allCustomers = adminResource.getAllCustomers();
-        if (allCustomers.isEmpty()) {
-            consolePrinter.print("There are no registered customers yet. You can add one in main menu.");
-            return;
-        }
-        for (Customer aCustomer: allCustomers) {
-            consolePrinter.print(aCustomer);
-        }
+        printPages(cursor -> adminResource.listCustomers(null, cursor, PAGE_SIZE),
+                "There are no registered customers yet. You can add one in main menu.");
     }
 
     /**
-     * Gets all rooms and prints to console.
+     * Prints rooms to console a page at a time.
      */
     public void showAllRooms() {
-        Collection<IRoom> allRooms = adminResource.getAllRooms();
-        if (allRooms.isEmpty()) {
-            consolePrinter.print("There are no rooms yet. Please add some.");
-            return;
-        }
-        for (IRoom aRoom: allRooms) {
-            consolePrinter.print(aRoom);
-        }
+        printPages(cursor -> adminResource.listRooms(RoomFilter.all(), cursor, PAGE_SIZE),
+                "There are no rooms yet. Please add some.");
     }
 
     /**
-     * Gets all reservations using admin resource and if any present, prints them to the console.
+     * Prints reservations to console a page at a time, in the order they were made.
      */
     public void showAllReservations() {
-        Set<Reservation> allReservations = adminResource.getAllReservations();
-        if (allReservations.isEmpty()) {
-            consolePrinter.print("There are no reservations yet.");
-            return;
+        printPages(cursor -> adminResource.listReservations(ReservationFilter.all(), cursor, PAGE_SIZE),
+                "There are no reservations yet.");
+    }
+
+    /**
+     * Prints pages until the last one or until the user stops
+     *
+     * @param nextPage          fetches the page at a cursor
+     * @param emptyMessage      printed if there is nothing to show
+     */
+    private <T> void printPages(Function<String, Page<T>> nextPage, String emptyMessage) {
+        Page<T> page = nextPage.apply(null);
+        boolean printedAny = false;
+        while (true) {
+            for (T item: page.getItems()) {
+                consolePrinter.print(item);
+                printedAny = true;
+            }
+            if (! page.hasMore()) {
+                break;
+            }
+            if (! page.getItems().isEmpty()) {
+                consolePrinter.print("Press Enter for more or \"q\" to stop.");
+                if (scanner.nextLine().strip().equalsIgnoreCase("q")) {
+                    return;
+                }
+            }
+            page = nextPage.apply(page.getNextCursor());
         }
-        for (Reservation reservation: allReservations) {
-            consolePrinter.print(reservation);
+        if (! printedAny) {
+            consolePrinter.print(emptyMessage);
         }
     }
 
@@ -101,35 +113,88 @@ public class AdminMenu{
      */
     public void addARoom() {
         List<IRoom> newRooms = new ArrayList<>();
+        Set<String> newRoomNumbers = new HashSet<>();
         boolean keepAddingRooms = true;
         while (keepAddingRooms) {
-            String roomNumber = readRoomNumber(newRooms);
+            String roomNumber = readRoomNumber(newRoomNumbers);
             double roomPrice = readRoomPrice();
             RoomType roomType = readRoomType();
             newRooms.add(new Room(roomNumber, roomPrice, roomType));
+            newRoomNumbers.add(roomNumber);
             keepAddingRooms = readAddingAnotherRoom();
         }
         adminResource.addRoom(newRooms);
         consolePrinter.print("Rooms were successfully added.");
     }
 
+    /**
+     * Reads room catalog file path and adds all of its rooms at once
+     */
+    public void importRooms() {
+        consolePrinter.print("Enter path of the room file (room number, price, s/d[, free] per line):");
+        Path file = Path.of(scanner.nextLine().strip());
+        try {
+            int added = adminResource.importRooms(file);
+            consolePrinter.print(added + " rooms were successfully added.");
+        } catch (IOException ex) {
+            consolePrinter.print("Could not read " + file + ": " + ex.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Prints call counts and latencies of every operation, then optionally clears them
+     */
+    public void showOperationMetrics() {
+        consolePrinter.print(adminResource.getOperationMetricsReport());
+        consolePrinter.print("Enter \"r\" to reset the metrics or press Enter to go back.");
+        if (scanner.nextLine().strip().equalsIgnoreCase("r")) {
+            adminResource.resetOperationMetrics();
+            consolePrinter.print("Metrics were reset.");
+        }
+    }
+
+    /**
+     * Reads a range of nights and prints occupancy and revenue per month and room type over it
+     */
+    public void showOccupancyReport() {
+        consolePrinter.print("Enter the first night of the report in format mm/dd/yyyy Example: 01/01/2022.");
+        Date from = readDate();
+        consolePrinter.print("Enter the night after the last one in format mm/dd/yyyy Example: 01/01/2023.");
+        Date to = readDate();
+        consolePrinter.print(adminResource.getOccupancyReport(from, to));
+    }
+
+    /**
+     * Reads a date in mm/dd/yyyy format, in the past or not
+     *
+     * @return          date at midnight in the system time zone
+     */
+    private Date readDate() {
+        int epochDay = InputValidator.parseDate(scanner.nextLine());
+        while (epochDay == InputValidator.INVALID_DATE) {
+            consolePrinter.print("Renter the date in format mm/dd/yyyy.");
+            epochDay = InputValidator.parseDate(scanner.nextLine());
+        }
+        return EpochDays.toDate(epochDay);
+    }
+
     /**
      * Checks whether a room number is valid or the corresponding room has been added
      *
-     * @param newRooms          List of IRooms
+     * @param newRoomNumbers    room numbers entered so far
      * @return                  string of room number
      */
-    private String readRoomNumber(List<IRoom> newRooms) {
+    private String readRoomNumber(Set<String> newRoomNumbers) {
         consolePrinter.print("Enter room number:");
         String input = "";
         boolean isBadRoomNumber = true;
         while (isBadRoomNumber) {
             input = scanner.nextLine();
-            if (! isNumber(input)) {
+            if (! InputValidator.isValidRoomNumber(input)) {
                 consolePrinter.print("Room number should be an integer.");
                 continue;
             }
-            if (! isNewRoomNumber(newRooms, input)) {
+            if (! isNewRoomNumber(newRoomNumbers, input)) {
                 consolePrinter.print("You have already added a room with room number " + input);
             } else {
                 isBadRoomNumber = false;
@@ -139,38 +204,30 @@ public class AdminMenu{
     }
 
     /**
-     * Checks whether a room is added for the first time
+     * Checks whether a room is added for the first time, neither earlier in this session nor before
      *
-     * @param newRooms          List of IRooms
+     * @param newRoomNumbers    room numbers entered so far
      * @param roomNumber        string of room number
      * @return                  boolean of whether a room is added for the first time
      */
-    private boolean isNewRoomNumber(List<IRoom> newRooms, String roomNumber) {
-        for (IRoom aRoom: newRooms) {
-            if (aRoom.getRoomNumber().equals(roomNumber)) {
-                return false;
-            }
-        }
-        return true;
+    private boolean isNewRoomNumber(Set<String> newRoomNumbers, String roomNumber) {
+        return ! newRoomNumbers.contains(roomNumber) && adminResource.getRoom(roomNumber) == null;
     }
 
     /**
-     * Checks whether room price is a decimal number, and if so return it
+     * Checks whether room price is a non-negative decimal number, and if so return it
      * @return          double of room price
      */
     private double readRoomPrice() {
         consolePrinter.print("Enter room price");
-        boolean isBadRoomPrice = true;
-        String input = "";
-        while (isBadRoomPrice) {
-            input = scanner.nextLine();
-            if (! isNumber(input)) {
-                consolePrinter.print("Room price should be a decimal number");
-                continue;
+        double price = Double.NaN;
+        while (Double.isNaN(price)) {
+            price = InputValidator.parsePrice(scanner.nextLine());
+            if (Double.isNaN(price)) {
+                consolePrinter.print("Room price should be a non-negative decimal number");
             }
-            isBadRoomPrice = false;
         }
-        return Double.parseDouble(input);
+        return price;
     }
 
     /**
@@ -42,7 +42,10 @@ public final class AdminMenuManager implements MenuManager {
                     case 2 -> adminMenu.showAllRooms();
                     case 3 -> adminMenu.showAllReservations();
                     case 4 -> adminMenu.addARoom();
-                    case 5 -> {
+                    case 5 -> adminMenu.importRooms();
+                    case 6 -> adminMenu.showOperationMetrics();
+                    case 7 -> adminMenu.showOccupancyReport();
+                    case 8 -> {
                         consolePrinter.print("Returning to the main menu...");
                         keepRunning = false;
                     }
@@ -1,16 +1,19 @@
 package ui;
 
 import api.HotelResource;
+import model.AvailableWindow;
 import model.Customer;
 import model.IRoom;
 import model.Reservation;
+import service.EpochDays;
+import validation.InputValidator;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.Scanner;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * Main menu UI
@@ -18,9 +21,9 @@ import java.util.regex.Pattern;
  * @author rachellai
  */
 public class MainMenu {
+    private static final int FLEXIBLE_DAYS = 30;
     private final Date now;
     private final HotelResource hotelResource;
-    private final DateFormat simpleDateFormat;
     private final ConsolePrinter consolePrinter;
     private final Scanner scanner;
 
@@ -30,31 +33,16 @@ public class MainMenu {
      * @param now               date of now
      * @param hotelResource     hotelResource object
      * @param scanner           scanner object that reads user input
-     * @param simpleDateFormat  simpleDateFormat that parses date from user input
      * @param consolePrinter    consolePrinter object that prints to the console
      */
-    public MainMenu (Date now, HotelResource hotelResource, Scanner scanner, DateFormat simpleDateFormat,
-                            ConsolePrinter consolePrinter) {
+    public MainMenu (Date now, HotelResource hotelResource, Scanner scanner, ConsolePrinter consolePrinter) {
 
         this.now = now;
         this.hotelResource = hotelResource;
-        this.simpleDateFormat = simpleDateFormat;
         this.consolePrinter = consolePrinter;
         this.scanner = scanner;
     }
 
-    boolean isNumber(String strInt) {
-        if (strInt == null) {
-            return false;
-        }
-        try {
-            Double.parseDouble(strInt);
-        } catch (NumberFormatException ex) {
-            return false;
-        }
-        return true;
-    }
-
     /**
      * Prints menu to console
      */
@@ -66,7 +54,8 @@ public class MainMenu {
         consolePrinter.print("2. See my reservations");
         consolePrinter.print("3. Create an account");
         consolePrinter.print("4. Admin");
-        consolePrinter.print("5. Exit");
+        consolePrinter.print("5. Cancel or change a reservation");
+        consolePrinter.print("6. Exit");
         consolePrinter.print("-----------------------------------------");
         consolePrinter.print("Please enter a number to select a menu option");
     }
@@ -97,6 +86,46 @@ public class MainMenu {
         }
     }
 
+    /**
+     * Lists a customer's reservations, then cancels the one they pick or moves it to new dates
+     */
+    public void cancelOrChangeReservation() {
+        consolePrinter.print("Please enter your email");
+        String email = readEmail();
+        List<Reservation> customerReservations = List.copyOf(hotelResource.getCustomersReservations(email));
+        if (customerReservations.isEmpty()) {
+            consolePrinter.print("You still have no reservations with us");
+            return;
+        }
+        for (int i = 0; i < customerReservations.size(); i++) {
+            consolePrinter.print((i + 1) + ". " + customerReservations.get(i));
+        }
+        consolePrinter.print("Enter the number of the reservation.");
+        int choice = Integer.parseInt(scanner.nextLine().strip());
+        if (choice < 1 || choice > customerReservations.size()) {
+            consolePrinter.print("There is no reservation with this number.");
+            return;
+        }
+        Reservation reservation = customerReservations.get(choice - 1);
+        consolePrinter.print("Enter \"c\" to cancel it or \"m\" to move it to other dates.");
+        switch (scanner.nextLine().strip().toLowerCase()) {
+            case "c" -> {
+                hotelResource.cancelReservation(email, reservation.getRoom(), reservation.getCheckInDate(),
+                        reservation.getCheckOutDate());
+                consolePrinter.print("Your reservation was cancelled.");
+            }
+            case "m" -> {
+                consolePrinter.print("Enter new check-in date in format mm/dd/yyyy Example: 05/30/2022.");
+                Date checkIn = readDate();
+                consolePrinter.print("Enter new check-out date in format mm/dd/yyyy Example: 05/30/2022.");
+                Date checkOut = readDate();
+                consolePrinter.print(hotelResource.changeReservationDates(email, reservation.getRoom(),
+                        reservation.getCheckInDate(), reservation.getCheckOutDate(), checkIn, checkOut));
+            }
+            default -> consolePrinter.print("Your reservation was left as it is.");
+        }
+    }
+
     /**
      * Read input email if it is valid or tell the user to enter a different one if it is not
      * @return          string of email
@@ -125,9 +154,7 @@ public class MainMenu {
      * @return          boolean of whether email is valid
      */
     private boolean isValidEmail(String input) {
-        String emailRegex = "^(.+)@(.+).(.+)$";
-        Pattern emailPattern = Pattern.compile(emailRegex);
-        return emailPattern.matcher(input).matches();
+        return InputValidator.isValidEmail(input);
     }
 
     /**
@@ -212,11 +239,12 @@ public class MainMenu {
                 continue;
             }
 
-            Collection<IRoom> availableRooms = findAvailableRooms(checkIn, checkOut);
-            if (availableRooms.isEmpty()) {
+            AvailableWindow window = findAvailableRooms(checkIn, checkOut);
+            if (window == null) {
                 keepFindingAndReservingARoom = false;
                 continue;
             }
+            Collection<IRoom> availableRooms = window.getRooms();
 
             consolePrinter.print("Following rooms are available for booking:");
             for (IRoom aRoom: availableRooms) {
@@ -245,7 +273,7 @@ public class MainMenu {
             String roomNumberToBook = readRoomNumberToBook(availableRooms);
             IRoom roomObjectToBook = hotelResource.getRoom(roomNumberToBook);
             Reservation newReservation = hotelResource.bookARoom(email, roomObjectToBook,
-                    checkIn, checkOut);
+                    window.getCheckInDate(), window.getCheckOutDate());
 
             consolePrinter.print(newReservation);
 
@@ -253,78 +281,84 @@ public class MainMenu {
         }
     }
 
+    /**
+     * Reads a date in mm/dd/yyyy format, parsed once, until one that is not in the past is entered
+     *
+     * @return          date at midnight in the system time zone
+     */
     private Date readDate() {
         boolean keepReadingDate = true;
         Date date = null;
         while (keepReadingDate) {
             String input = scanner.nextLine();
-            if (isValidDate(input)) {
-                try {
-                    simpleDateFormat.setLenient(false);
-                    date = simpleDateFormat.parse(input);
-                } catch (ParseException ex) {
-                    consolePrinter.print("Try entering the date again.");
-                    continue;
-                }
-                if (! date.before(now)) {
-                    keepReadingDate = false;
-                } else {
-                    consolePrinter.print("This date is in the past. Please reenter the date.");
-                }
-            } else {
+            int epochDay = InputValidator.parseDate(input);
+            if (epochDay == InputValidator.INVALID_DATE) {
                 consolePrinter.print("Renter the date in format mm/dd/yyyy.");
+                continue;
+            }
+            date = EpochDays.toDate(epochDay);
+            if (! date.before(now)) {
+                keepReadingDate = false;
+            } else {
+                consolePrinter.print("This date is in the past. Please reenter the date.");
             }
         }
         return date;
     }
 
-
-    private boolean isValidDate(String input) {
-        simpleDateFormat.setLenient(false);
-        try {
-            simpleDateFormat.parse(input);
-        } catch (ParseException ex) {
-            consolePrinter.print(ex.getLocalizedMessage());
-            return false;
-        }
-        return true;
-    }
-
-    private Collection<IRoom> findAvailableRooms(Date checkIn, Date checkOut) {
+    /**
+     * Finds rooms for the dates, or else for the stay of the same length starting closest to the check-in date
+     * within FLEXIBLE_DAYS days either way, searched in one pass
+     *
+     * @param checkIn       check-in date
+     * @param checkOut      check-out date
+     * @return              dates and rooms to offer, or null if there are none
+     */
+    private AvailableWindow findAvailableRooms(Date checkIn, Date checkOut) {
         Collection<IRoom> availableRooms = hotelResource.findARoom(checkIn,
                 checkOut);
+        if (! availableRooms.isEmpty()) {
+            return new AvailableWindow(checkIn, checkOut, availableRooms);
+        }
 
-        if (availableRooms.isEmpty()) {
-            consolePrinter.print("No rooms found for selected dates. Trying to find" +
-                    " a room in the next 7 days.");
-
-            // Shift dates
-            checkIn = shiftDate(checkIn);
-            checkOut = shiftDate(checkOut);
-
-            // Find rooms available for shifted dates
-            availableRooms = hotelResource.findARoom(checkIn, checkOut);
+        consolePrinter.print("No rooms found for selected dates. Trying to find" +
+                " a room within " + FLEXIBLE_DAYS + " days of them.");
+        int nights = (int) Math.max(1, ChronoUnit.DAYS.between(toLocalDate(checkIn), toLocalDate(checkOut)));
+        Date earliestCheckIn = addDays(checkIn, -FLEXIBLE_DAYS);
+        // Dates before tomorrow can't be entered, so they aren't offered either.
+        Date tomorrow = addDays(now, 1);
+        if (earliestCheckIn.before(tomorrow)) {
+            earliestCheckIn = checkIn.before(tomorrow) ? checkIn : tomorrow;
+        }
+        List<AvailableWindow> windows = hotelResource.findAvailableWindows(earliestCheckIn,
+                addDays(checkIn, FLEXIBLE_DAYS), nights, 0);
+        if (windows.isEmpty()) {
+            consolePrinter.print("No free rooms within " + FLEXIBLE_DAYS + " days found. Try " +
+                    "different dates.");
+            return null;
+        }
 
-            if (availableRooms.isEmpty()) {
-                consolePrinter.print("No free rooms in the next 7 days found. Try " +
-                        "different dates.");
-            } else {
-                // Print shifted dates and available rooms
-                consolePrinter.print("You can book following rooms from " + checkIn +
-                        " till " + checkOut + ":");
-                for (IRoom aRoom: availableRooms) {
-                    consolePrinter.print(aRoom);
-                }
+        AvailableWindow closest = windows.get(0);
+        for (AvailableWindow window: windows) {
+            if (Math.abs(window.getCheckInDate().getTime() - checkIn.getTime()) <
+                    Math.abs(closest.getCheckInDate().getTime() - checkIn.getTime())) {
+                closest = window;
             }
         }
-        return availableRooms;
+        consolePrinter.print("You can book following rooms from " + closest.getCheckInDate() +
+                " till " + closest.getCheckOutDate() + ":");
+        for (IRoom aRoom: closest.getRooms()) {
+            consolePrinter.print(aRoom);
+        }
+        return closest;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
     }
 
-    private Date shiftDate(Date date) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-        cal.add(Calendar.DATE, 7);
-        return cal.getTime();
+    private static Date addDays(Date date, int days) {
+        return Date.from(toLocalDate(date).plusDays(days).atStartOfDay(ZoneId.systemDefault()).toInstant());
     }
 
     private boolean stopBooking() {
@@ -376,7 +410,7 @@ public class MainMenu {
         boolean keepReadingRoomNumber = true;
         while (keepReadingRoomNumber) {
             String input = scanner.nextLine();
-            if (isNumber(input)) {
+            if (InputValidator.isValidRoomNumber(input)) {
                 // Check that the room is available for booking
                 boolean isAvailableRoom = false;
                 for (IRoom aRoom: availableRooms) {
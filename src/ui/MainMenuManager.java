@@ -48,7 +48,8 @@ public final class MainMenuManager implements MenuManager {
                     case 2 -> mainMenu.showCustomersReservations();
                     case 3 -> mainMenu.createNewAccount();
                     case 4 -> goToAdminMenu();
-                    case 5 -> {
+                    case 5 -> mainMenu.cancelOrChangeReservation();
+                    case 6 -> {
                         consolePrinter.print("Exiting the app...");
                         keepRunning = false;
                         scanner.close();
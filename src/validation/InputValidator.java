@@ -0,0 +1,200 @@
+package validation;
+
+/**
+ * InputValidator checks and parses the values people and clients type in: emails, MM/dd/yyyy dates, room numbers
+ * and prices. Every method is a static, stateless scan of its input, so it can be shared freely between the
+ * console menus, the HTTP server and the importer threads, and none of them allocates (short of a price of more
+ * than 15 digits). Invalid input is reported by a return value rather than an exception, so rejecting a bad
+ * request costs no more than accepting a good one.
+ *
+ * @author rachellai
+ */
+public final class InputValidator {
+    /**
+     * Returned by parseDate for input that is not a valid date
+     */
+    public static final int INVALID_DATE = Integer.MIN_VALUE;
+
+    /**
+     * Prices with more digits than this are not exact as a long over a power of ten in a double
+     */
+    private static final int MAX_EXACT_PRICE_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private InputValidator() {
+    }
+
+    /**
+     * Checks an email against the format customers are registered with, the same as matching the regular
+     * expression ^(.+)@(.+)[.](.+)$: some text, an @, some text, a dot and some text, with no line breaks
+     *
+     * @param email         input
+     * @return              true if the email is in xxx@xxx.xxx format
+     */
+    public static boolean isValidEmail(CharSequence email) {
+        if (email == null) {
+            return false;
+        }
+        int length = email.length();
+        int firstAt = -1;
+        int lastDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = email.charAt(i);
+            if (isLineTerminator(c)) {
+                return false;
+            }
+            if (c == '@' && firstAt < 0 && i > 0) {
+                firstAt = i;
+            } else if (c == '.' && i < length - 1) {
+                lastDot = i;
+            }
+        }
+        return firstAt > 0 && lastDot > firstAt + 1;
+    }
+
+    /**
+     * Parses a date in MM/dd/yyyy format, where the month and day may also be a single digit. The whole input
+     * must be the date, and the date must exist, so 02/30/2024 is rejected.
+     *
+     * @param date          input
+     * @return              days since 1970-01-01, or INVALID_DATE
+     */
+    public static int parseDate(CharSequence date) {
+        if (date == null) {
+            return INVALID_DATE;
+        }
+        int length = date.length();
+        int position = 0;
+        int month = 0;
+        int digits = 0;
+        for (; position < length && digits < 3 && isDigit(date.charAt(position)); position++, digits++) {
+            month = month * 10 + date.charAt(position) - '0';
+        }
+        if (digits == 0 || digits > 2 || position == length || date.charAt(position++) != '/') {
+            return INVALID_DATE;
+        }
+        int day = 0;
+        digits = 0;
+        for (; position < length && digits < 3 && isDigit(date.charAt(position)); position++, digits++) {
+            day = day * 10 + date.charAt(position) - '0';
+        }
+        if (digits == 0 || digits > 2 || position == length || date.charAt(position++) != '/') {
+            return INVALID_DATE;
+        }
+        if (length - position != 4) {
+            return INVALID_DATE;
+        }
+        int year = 0;
+        for (; position < length; position++) {
+            char c = date.charAt(position);
+            if (! isDigit(c)) {
+                return INVALID_DATE;
+            }
+            year = year * 10 + c - '0';
+        }
+        if (year == 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID_DATE;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * @param date          input
+     * @return              true if the input is a date in MM/dd/yyyy format
+     */
+    public static boolean isValidDate(CharSequence date) {
+        return parseDate(date) != INVALID_DATE;
+    }
+
+    /**
+     * @param roomNumber    input
+     * @return              true if the room number is a non-empty string of the digits 0 to 9
+     */
+    public static boolean isValidRoomNumber(CharSequence roomNumber) {
+        if (roomNumber == null || roomNumber.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < roomNumber.length(); i++) {
+            if (! isDigit(roomNumber.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a price written as a plain decimal number such as 120, 99.5 or .75. Prices of up to 15 digits are
+     * parsed without allocating and round exactly as Double.parseDouble does; longer ones are passed on to it.
+     *
+     * @param price         input
+     * @return              non-negative, finite price, or NaN if the input is not one
+     */
+    public static double parsePrice(CharSequence price) {
+        if (price == null) {
+            return Double.NaN;
+        }
+        int length = price.length();
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (int i = 0; i < length; i++) {
+            char c = price.charAt(i);
+            if (isDigit(c)) {
+                if (digits < MAX_EXACT_PRICE_DIGITS) {
+                    mantissa = mantissa * 10 + c - '0';
+                }
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (digits > MAX_EXACT_PRICE_DIGITS) {
+            double parsed = Double.parseDouble(price.toString());
+            return Double.isInfinite(parsed) ? Double.NaN : parsed;
+        }
+        // Both operands are exact doubles, so the one rounding of the division is the correct one.
+        return fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Line terminators, which the dot of a regular expression does not match
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * Days since 1970-01-01 of a date in the proleptic Gregorian calendar, counting years from March so that
+     * the leap day falls at the end of the year
+     */
+    private static int toEpochDay(int year, int month, int day) {
+        int marchYear = month <= 2 ? year - 1 : year;
+        int era = marchYear / 400;
+        int yearOfEra = marchYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
@@ -0,0 +1,704 @@
+package web;
+
+import api.AdminResource;
+import api.HotelResource;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.*;
+import service.Page;
+import service.ReservationConflictException;
+import service.ReservationFilter;
+import service.EpochDays;
+import service.RoomFilter;
+import validation.InputValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * HotelHttpServer exposes HotelResource and AdminResource as JSON over HTTP, on the JDK's built-in server.
+ * Each request runs on its own virtual thread when the runtime has them, and on a bounded pool otherwise.
+ * Connections are kept alive: every response has a length and every request body is read to the end.
+ * Request bodies and query strings are size-limited before anything is parsed.
+ *
+ * <pre>
+ * GET  /rooms?checkIn=MM/dd/yyyy&amp;checkOut=MM/dd/yyyy      available rooms, optionally filtered by
+ *      &amp;roomType=, &amp;free=, &amp;minPrice= and &amp;maxPrice=; &amp;cheapest=N for the N cheapest
+ * GET  /quotes?checkIn=&amp;checkOut=&amp;limit=               rooms with the total price of the stay, cheapest
+ *                                                          first; the same filters as /rooms
+ * POST /customers                                          {"email", "firstName", "lastName"}
+ * GET  /customers/{email}                                  customer
+ * GET  /customers/{email}/reservations                     customer's reservations
+ * POST /reservations                                       {"email", "roomNumber", "checkIn", "checkOut"}
+ *                                                          or "roomNumbers": [...] to book a group at once
+ * DELETE /reservations                                     {"email", "roomNumber", "checkIn", "checkOut"}
+ * PATCH  /reservations                                     the same and "newCheckIn", "newCheckOut"
+ * GET  /admin/customers, /admin/rooms, /admin/reservations {"items": [...], "nextCursor"}, one page at a time;
+ *      ?cursor=&amp;limit= and filters search=, roomType=, free=, minPrice=, maxPrice=, customer=, room=,
+ *      from=&amp;to=
+ * POST /admin/rooms                                        room or array of {"roomNumber", "price", "roomType", "free"}
+ * POST /admin/rates                                        {"roomType", "from", "to", "rate"} and optionally
+ *                                                          "daysOfWeek": ["SATURDAY", ...]
+ * </pre>
+ *
+ * A read replica's server answers only GET requests, and only while the replica is fresh; otherwise it
+ * responds with 503.
+ *
+ * @author rachellai
+ */
+public final class HotelHttpServer implements AutoCloseable {
+    static final int MAX_BODY_BYTES = 64 * 1024;
+    static final int MAX_QUERY_CHARS = 2048;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("MM/dd/uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final HotelResource hotelResource;
+    private final AdminResource adminResource;
+    private final Supplier<String> replicaStatus;
+
+    private HotelHttpServer(HttpServer server, ExecutorService executor, HotelResource hotelResource,
+                            AdminResource adminResource, Supplier<String> replicaStatus) {
+        this.server = server;
+        this.executor = executor;
+        this.hotelResource = hotelResource;
+        this.adminResource = adminResource;
+        this.replicaStatus = replicaStatus;
+    }
+
+    /**
+     * Binds and starts a server
+     *
+     * @param address           address to listen on; port 0 picks a free port
+     * @param hotelResource     HotelResource to serve
+     * @param adminResource     AdminResource to serve under /admin
+     * @return                  running server
+     * @throws IOException      if the address can't be bound
+     */
+    public static HotelHttpServer start(InetSocketAddress address, HotelResource hotelResource,
+                                        AdminResource adminResource) throws IOException {
+        return start(address, hotelResource, adminResource, null);
+    }
+
+    /**
+     * Binds and starts a server for a read replica. Requests that would change anything are refused with 503,
+     * and so are reads while the replica status gives a reason.
+     *
+     * @param address           address to listen on; port 0 picks a free port
+     * @param hotelResource     HotelResource to serve
+     * @param adminResource     AdminResource to serve under /admin
+     * @param replicaStatus     null for a server that is not a replica; otherwise returns null while reads may
+     *                          be served, or the reason they may not
+     * @return                  running server
+     * @throws IOException      if the address can't be bound
+     */
+    public static HotelHttpServer start(InetSocketAddress address, HotelResource hotelResource,
+                                        AdminResource adminResource, Supplier<String> replicaStatus)
+            throws IOException {
+        HttpServer server = HttpServer.create(address, 1024);
+        ExecutorService executor = newRequestExecutor();
+        HotelHttpServer hotelServer = new HotelHttpServer(server, executor, hotelResource, adminResource,
+                replicaStatus);
+        server.createContext("/", hotelServer::handle);
+        server.setExecutor(executor);
+        server.start();
+        return hotelServer;
+    }
+
+    /**
+     * @return          port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections, gives running requests a second to finish and stops the request threads
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One virtual thread per request where the runtime supports it. The lookup is reflective so the server
+     * still builds and runs on runtimes without virtual threads, where a fixed pool sized for blocking I/O is
+     * used instead.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newFixedThreadPool(Math.max(64, Runtime.getRuntime().availableProcessors() * 16));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            if (rawQuery != null && rawQuery.length() > MAX_QUERY_CHARS) {
+                discardBody(exchange);
+                sendError(exchange, 414, "Query string is too long.");
+                return;
+            }
+            String body;
+            try {
+                body = readBody(exchange);
+            } catch (BodyTooLargeException ex) {
+                // The rest of the body is never read, so the connection can't be reused.
+                exchange.getResponseHeaders().set("Connection", "close");
+                sendError(exchange, 413, "Request body is larger than " + MAX_BODY_BYTES + " bytes.");
+                return;
+            }
+            if (replicaStatus != null) {
+                String unavailable = exchange.getRequestMethod().equals("GET") ? replicaStatus.get()
+                        : "This server is a read-only replica; send changes to the leader.";
+                if (unavailable != null) {
+                    sendError(exchange, 503, unavailable);
+                    return;
+                }
+            }
+            try {
+                route(exchange, body);
+            } catch (ReservationConflictException ex) {
+                sendError(exchange, 409, ex.getLocalizedMessage());
+            } catch (IllegalArgumentException ex) {
+                sendError(exchange, 400, ex.getLocalizedMessage());
+            } catch (RuntimeException ex) {
+                sendError(exchange, 500, "Internal error.");
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange, String body) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getRawPath();
+        String[] segments = path.length() > 1 ? path.substring(1).split("/") : new String[0];
+        if (segments.length == 0) {
+            sendError(exchange, 404, "Not found.");
+            return;
+        }
+        switch (segments[0]) {
+            case "rooms" -> {
+                if (segments.length == 1 && requireMethod(exchange, method, "GET")) {
+                    findRooms(exchange);
+                    return;
+                }
+            }
+            case "quotes" -> {
+                if (segments.length == 1 && requireMethod(exchange, method, "GET")) {
+                    findQuotes(exchange);
+                    return;
+                }
+            }
+            case "customers" -> {
+                if (segments.length == 1 && requireMethod(exchange, method, "POST")) {
+                    createCustomer(exchange, body);
+                    return;
+                }
+                if (segments.length == 2 && requireMethod(exchange, method, "GET")) {
+                    getCustomer(exchange, decode(segments[1]));
+                    return;
+                }
+                if (segments.length == 3 && segments[2].equals("reservations")
+                        && requireMethod(exchange, method, "GET")) {
+                    sendReservations(exchange, hotelResource.getCustomersReservations(decode(segments[1])));
+                    return;
+                }
+            }
+            case "reservations" -> {
+                if (segments.length == 1) {
+                    if (method.equals("DELETE")) {
+                        cancelReservation(exchange, body);
+                    } else if (method.equals("PATCH")) {
+                        changeReservationDates(exchange, body);
+                    } else if (requireMethod(exchange, method, "POST")) {
+                        bookARoom(exchange, body);
+                    }
+                    return;
+                }
+            }
+            case "admin" -> {
+                if (segments.length == 2) {
+                    if (routeAdmin(exchange, method, segments[1], body)) {
+                        return;
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+        if (exchange.getResponseCode() == -1) {
+            sendError(exchange, 404, "Not found.");
+        }
+    }
+
+    private boolean routeAdmin(HttpExchange exchange, String method, String resource, String body)
+            throws IOException {
+        switch (resource) {
+            case "customers" -> {
+                if (requireMethod(exchange, method, "GET")) {
+                    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                    Page<Customer> page = adminResource.listCustomers(query.get("search"), query.get("cursor"),
+                            pageSize(query));
+                    StringBuilder out = new StringBuilder().append("{\"items\":[");
+                    for (Customer customer: page.getItems()) {
+                        appendCustomer(out, customer).append(',');
+                    }
+                    send(exchange, 200, closePage(out, page));
+                }
+                return true;
+            }
+            case "rooms" -> {
+                if (method.equals("GET")) {
+                    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                    Page<IRoom> page = adminResource.listRooms(roomFilter(query), query.get("cursor"),
+                            pageSize(query));
+                    StringBuilder out = new StringBuilder().append("{\"items\":[");
+                    for (IRoom room: page.getItems()) {
+                        appendRoom(out, room).append(',');
+                    }
+                    send(exchange, 200, closePage(out, page));
+                } else if (requireMethod(exchange, method, "POST")) {
+                    addRooms(exchange, body);
+                }
+                return true;
+            }
+            case "rates" -> {
+                if (requireMethod(exchange, method, "POST")) {
+                    setRate(exchange, body);
+                }
+                return true;
+            }
+            case "reservations" -> {
+                if (requireMethod(exchange, method, "GET")) {
+                    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                    Page<Reservation> page = adminResource.listReservations(reservationFilter(query),
+                            query.get("cursor"), pageSize(query));
+                    StringBuilder out = new StringBuilder().append("{\"items\":[");
+                    for (Reservation reservation: page.getItems()) {
+                        appendReservation(out, reservation).append(',');
+                    }
+                    send(exchange, 200, closePage(out, page));
+                }
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private static int pageSize(Map<String, String> query) {
+        String limit = query.get("limit");
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        try {
+            return Math.min(MAX_PAGE_SIZE, Integer.parseInt(limit));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("limit should be a number.");
+        }
+    }
+
+    private static RoomFilter roomFilter(Map<String, String> query) {
+        RoomFilter filter = RoomFilter.all();
+        if (query.containsKey("roomType")) {
+            filter = filter.ofType(parseRoomType(query.get("roomType")));
+        }
+        if (query.containsKey("free")) {
+            filter = filter.free(Boolean.parseBoolean(query.get("free")));
+        }
+        if (query.containsKey("minPrice") || query.containsKey("maxPrice")) {
+            filter = filter.priceBetween(parsePrice(query, "minPrice", 0),
+                    parsePrice(query, "maxPrice", Double.POSITIVE_INFINITY));
+        }
+        return filter;
+    }
+
+    private static ReservationFilter reservationFilter(Map<String, String> query) {
+        ReservationFilter filter = ReservationFilter.all();
+        if (query.containsKey("customer")) {
+            filter = filter.forCustomer(query.get("customer"));
+        }
+        if (query.containsKey("room")) {
+            filter = filter.forRoom(query.get("room"));
+        }
+        if (query.containsKey("roomType")) {
+            filter = filter.ofRoomType(parseRoomType(query.get("roomType")));
+        }
+        if (query.containsKey("from") || query.containsKey("to")) {
+            filter = filter.overlapping(parseDate(query.get("from"), "from"), parseDate(query.get("to"), "to"));
+        }
+        return filter;
+    }
+
+    private static String closePage(StringBuilder out, Page<?> page) {
+        if (out.charAt(out.length() - 1) == ',') {
+            out.setLength(out.length() - 1);
+        }
+        out.append("],\"nextCursor\":");
+        if (page.hasMore()) {
+            Json.string(out, page.getNextCursor());
+        } else {
+            out.append("null");
+        }
+        return out.append('}').toString();
+    }
+
+    private void findRooms(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        Date checkIn = parseDate(query.get("checkIn"), "checkIn");
+        Date checkOut = parseDate(query.get("checkOut"), "checkOut");
+        Collection<IRoom> rooms;
+        if (query.containsKey("cheapest")) {
+            int count;
+            try {
+                count = Math.min(MAX_PAGE_SIZE, Integer.parseInt(query.get("cheapest")));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("cheapest should be a number.");
+            }
+            rooms = hotelResource.findCheapestRooms(checkIn, checkOut, roomFilter(query), count);
+        } else {
+            rooms = hotelResource.findARoom(checkIn, checkOut, roomFilter(query));
+        }
+        StringBuilder out = new StringBuilder().append('[');
+        for (IRoom room: rooms) {
+            appendRoom(out, room).append(',');
+        }
+        send(exchange, 200, closeArray(out));
+    }
+
+    private void findQuotes(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        List<StayQuote> quotes = hotelResource.findRoomsByStayPrice(parseDate(query.get("checkIn"), "checkIn"),
+                parseDate(query.get("checkOut"), "checkOut"), roomFilter(query), pageSize(query));
+        StringBuilder out = new StringBuilder().append('[');
+        for (StayQuote quote: quotes) {
+            out.append("{\"room\":");
+            appendRoom(out, quote.getRoom());
+            out.append(",\"total\":").append(quote.getTotalPrice()).append("},");
+        }
+        send(exchange, 200, closeArray(out));
+    }
+
+    private void setRate(HttpExchange exchange, String body) throws IOException {
+        Map<String, Object> request = Json.parseObject(body);
+        if (! (request.get("rate") instanceof Double rate)) {
+            throw new IllegalArgumentException("rate is required.");
+        }
+        RoomType roomType = parseRoomType(requireString(request, "roomType"));
+        Date from = parseDate(requireString(request, "from"), "from");
+        Date to = parseDate(requireString(request, "to"), "to");
+        if (request.get("daysOfWeek") instanceof List<?> days) {
+            Set<DayOfWeek> daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+            for (Object day: days) {
+                if (! (day instanceof String name)) {
+                    throw new IllegalArgumentException("daysOfWeek should be a list of day names.");
+                }
+                try {
+                    daysOfWeek.add(DayOfWeek.valueOf(name.toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("daysOfWeek should be a list of day names.");
+                }
+            }
+            adminResource.setRate(roomType, from, to, daysOfWeek, rate);
+        } else {
+            adminResource.setRate(roomType, from, to, rate);
+        }
+        send(exchange, 200, body);
+    }
+
+    private void createCustomer(HttpExchange exchange, String body) throws IOException {
+        Map<String, Object> request = Json.parseObject(body);
+        String email = requireString(request, "email");
+        hotelResource.createACustomer(email, requireString(request, "firstName"),
+                requireString(request, "lastName"));
+        send(exchange, 201, appendCustomer(new StringBuilder(), hotelResource.getCustomer(email)).toString());
+    }
+
+    private void getCustomer(HttpExchange exchange, String email) throws IOException {
+        Customer customer = hotelResource.getCustomer(email);
+        if (customer == null) {
+            sendError(exchange, 404, "There is no customer registered with this email.");
+            return;
+        }
+        send(exchange, 200, appendCustomer(new StringBuilder(), customer).toString());
+    }
+
+    private void bookARoom(HttpExchange exchange, String body) throws IOException {
+        Map<String, Object> request = Json.parseObject(body);
+        if (request.get("roomNumbers") instanceof List<?> roomNumbers) {
+            List<IRoom> groupRooms = new ArrayList<>(roomNumbers.size());
+            for (Object roomNumber: roomNumbers) {
+                if (! (roomNumber instanceof String number)) {
+                    throw new IllegalArgumentException("roomNumbers should be a list of strings.");
+                }
+                groupRooms.add(hotelResource.getRoom(number));
+            }
+            sendReservations(exchange, 201, hotelResource.bookRooms(requireString(request, "email"), groupRooms,
+                    parseDate(requireString(request, "checkIn"), "checkIn"),
+                    parseDate(requireString(request, "checkOut"), "checkOut")));
+            return;
+        }
+        IRoom room = hotelResource.getRoom(requireString(request, "roomNumber"));
+        Reservation reservation = hotelResource.bookARoom(requireString(request, "email"), room,
+                parseDate(requireString(request, "checkIn"), "checkIn"),
+                parseDate(requireString(request, "checkOut"), "checkOut"));
+        send(exchange, 201, appendReservation(new StringBuilder(), reservation).toString());
+    }
+
+    private void cancelReservation(HttpExchange exchange, String body) throws IOException {
+        Map<String, Object> request = Json.parseObject(body);
+        String email = requireString(request, "email");
+        IRoom room = hotelResource.getRoom(requireString(request, "roomNumber"));
+        Date checkIn = parseDate(requireString(request, "checkIn"), "checkIn");
+        Date checkOut = parseDate(requireString(request, "checkOut"), "checkOut");
+        hotelResource.cancelReservation(email, room, checkIn, checkOut);
+        send(exchange, 200, appendReservation(new StringBuilder(),
+                new Reservation(hotelResource.getCustomer(email), room, checkIn, checkOut)).toString());
+    }
+
+    private void changeReservationDates(HttpExchange exchange, String body) throws IOException {
+        Map<String, Object> request = Json.parseObject(body);
+        IRoom room = hotelResource.getRoom(requireString(request, "roomNumber"));
+        Reservation reservation = hotelResource.changeReservationDates(requireString(request, "email"), room,
+                parseDate(requireString(request, "checkIn"), "checkIn"),
+                parseDate(requireString(request, "checkOut"), "checkOut"),
+                parseDate(requireString(request, "newCheckIn"), "newCheckIn"),
+                parseDate(requireString(request, "newCheckOut"), "newCheckOut"));
+        send(exchange, 200, appendReservation(new StringBuilder(), reservation).toString());
+    }
+
+    private void addRooms(HttpExchange exchange, String body) throws IOException {
+        Object parsed = Json.parse(body);
+        List<Object> entries = parsed instanceof List<?> list ? new ArrayList<>(list) : List.of(parsed);
+        List<IRoom> rooms = new ArrayList<>(entries.size());
+        for (Object entry: entries) {
+            if (! (entry instanceof Map<?, ?> fields)) {
+                throw new IllegalArgumentException("Expected a room object.");
+            }
+            rooms.add(toRoom(fields));
+        }
+        adminResource.addRoom(rooms);
+        StringBuilder out = new StringBuilder().append('[');
+        for (IRoom room: rooms) {
+            appendRoom(out, room).append(',');
+        }
+        send(exchange, 201, closeArray(out));
+    }
+
+    private static IRoom toRoom(Map<?, ?> fields) {
+        Object roomNumber = fields.get("roomNumber");
+        Object roomType = fields.get("roomType");
+        if (! (roomNumber instanceof String number)) {
+            throw new IllegalArgumentException("roomNumber is required.");
+        }
+        if (! InputValidator.isValidRoomNumber(number)) {
+            throw new IllegalArgumentException("roomNumber should be an integer.");
+        }
+        if (! (roomType instanceof String type)) {
+            throw new IllegalArgumentException("roomType is required.");
+        }
+        RoomType parsedType = parseRoomType(type);
+        if (Boolean.TRUE.equals(fields.get("free"))) {
+            return new FreeRoom(number, parsedType);
+        }
+        if (! (fields.get("price") instanceof Double price) || price < 0 || price.isInfinite()) {
+            throw new IllegalArgumentException("price should be a non-negative number.");
+        }
+        return new Room(number, price, parsedType);
+    }
+
+    private void sendReservations(HttpExchange exchange, Collection<Reservation> reservations)
+            throws IOException {
+        sendReservations(exchange, 200, reservations);
+    }
+
+    private void sendReservations(HttpExchange exchange, int status, Collection<Reservation> reservations)
+            throws IOException {
+        StringBuilder out = new StringBuilder().append('[');
+        for (Reservation reservation: reservations) {
+            appendReservation(out, reservation).append(',');
+        }
+        send(exchange, status, closeArray(out));
+    }
+
+    private static StringBuilder appendRoom(StringBuilder out, IRoom room) {
+        out.append("{\"roomNumber\":");
+        Json.string(out, room.getRoomNumber());
+        out.append(",\"price\":").append(room.getRoomPrice());
+        out.append(",\"roomType\":\"").append(room.getRoomType()).append('"');
+        return out.append(",\"free\":").append(room instanceof FreeRoom).append('}');
+    }
+
+    private static StringBuilder appendCustomer(StringBuilder out, Customer customer) {
+        out.append("{\"email\":");
+        Json.string(out, customer.getEmail());
+        out.append(",\"firstName\":");
+        Json.string(out, customer.getFirstName());
+        out.append(",\"lastName\":");
+        Json.string(out, customer.getLastName());
+        return out.append('}');
+    }
+
+    private static StringBuilder appendReservation(StringBuilder out, Reservation reservation) {
+        out.append("{\"customer\":");
+        appendCustomer(out, reservation.getCustomer());
+        out.append(",\"room\":");
+        appendRoom(out, reservation.getRoom());
+        out.append(",\"checkIn\":\"").append(formatDate(reservation.getCheckInDate()));
+        out.append("\",\"checkOut\":\"").append(formatDate(reservation.getCheckOutDate()));
+        return out.append("\"}");
+    }
+
+    private static String closeArray(StringBuilder out) {
+        if (out.charAt(out.length() - 1) == ',') {
+            out.setLength(out.length() - 1);
+        }
+        return out.append(']').toString();
+    }
+
+    private static String formatDate(Date date) {
+        return DATE_FORMAT.format(date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+    }
+
+    private static Date parseDate(String value, String name) {
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is required.");
+        }
+        int epochDay = InputValidator.parseDate(value);
+        if (epochDay == InputValidator.INVALID_DATE) {
+            throw new IllegalArgumentException(name + " should be a date in MM/dd/yyyy format.");
+        }
+        return EpochDays.toDate(epochDay);
+    }
+
+    private static double parsePrice(Map<String, String> query, String name, double absent) {
+        if (! query.containsKey(name)) {
+            return absent;
+        }
+        double price = InputValidator.parsePrice(query.get(name));
+        if (Double.isNaN(price)) {
+            throw new IllegalArgumentException(name + " should be a non-negative decimal number.");
+        }
+        return price;
+    }
+
+    private static RoomType parseRoomType(String type) {
+        try {
+            return RoomType.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("roomType should be SINGLE or DOUBLE.");
+        }
+    }
+
+    private static String requireString(Map<String, Object> request, String name) {
+        if (! (request.get(name) instanceof String value)) {
+            throw new IllegalArgumentException(name + " is required.");
+        }
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair: rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+            }
+        }
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static boolean requireMethod(HttpExchange exchange, String method, String expected)
+            throws IOException {
+        if (method.equals(expected)) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", expected);
+        sendError(exchange, 405, "Use " + expected + ".");
+        return false;
+    }
+
+    /**
+     * Reads the body up to the limit. A declared length over the limit is refused without reading; an
+     * undeclared one is read until it passes the limit.
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        String declaredLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declaredLength != null) {
+            try {
+                if (Long.parseLong(declaredLength.trim()) > MAX_BODY_BYTES) {
+                    throw new BodyTooLargeException();
+                }
+            } catch (NumberFormatException ex) {
+                throw new BodyTooLargeException();
+            }
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new BodyTooLargeException();
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void discardBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.skip(MAX_BODY_BYTES);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder out = new StringBuilder("{\"error\":");
+        Json.string(out, message == null ? "" : message);
+        send(exchange, status, out.append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * The request body is over MAX_BODY_BYTES
+     */
+    private static final class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+}
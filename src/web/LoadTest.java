@@ -0,0 +1,165 @@
+package web;
+
+import api.AdminResource;
+import api.HotelResource;
+import model.ReservationFactory;
+import model.Room;
+import model.RoomType;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives a HotelHttpServer started in this JVM with a fixed number of clients for a fixed time and reports
+ * requests per second and latency percentiles. Each client sends requests back to back over a kept-alive
+ * connection; 80% are room searches and 20% are bookings of a random room, so some bookings conflict.
+ *
+ * Usage: java web.LoadTest [clients] [seconds] [rooms]
+ *
+ * @author rachellai
+ */
+public final class LoadTest {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/uuuu");
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int roomCount = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        CustomerService customerService = CustomerService.getInstance();
+        ReservationService reservationService = ReservationService.getInstance(new ReservationFactory());
+        for (int i = 0; i < roomCount; i++) {
+            reservationService.addRoom(new Room(String.valueOf(i), 100.0 + i % 200, RoomType.values()[i % 2]));
+        }
+        customerService.addCustomer("load@test.com", "Load", "Test");
+        HotelResource hotelResource = new HotelResource(customerService, reservationService);
+        AdminResource adminResource = new AdminResource(customerService, reservationService);
+
+        try (HotelHttpServer server = HotelHttpServer.start(new InetSocketAddress("127.0.0.1", 0),
+                hotelResource, adminResource)) {
+            URI base = URI.create("http://127.0.0.1:" + server.getPort());
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            // Warm up the server and the client's connection pool before measuring.
+            runClients(client, base, clients, Math.max(1, seconds / 5), roomCount);
+            Result result = runClients(client, base, clients, seconds, roomCount);
+
+            long[] latencies = result.latencies();
+            Arrays.sort(latencies);
+            System.out.printf("clients %d, %d s, %d rooms%n", clients, seconds, roomCount);
+            System.out.printf("requests %d, errors %d, %.0f requests/s%n", latencies.length, result.errors,
+                    latencies.length / (double) seconds);
+            System.out.printf("latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static Result runClients(HttpClient client, URI base, int clients, int seconds, int roomCount)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Result result = new Result(clients);
+        CountDownLatch done = new CountDownLatch(clients);
+        LocalDate today = LocalDate.now();
+        for (int c = 0; c < clients; c++) {
+            int clientIndex = c;
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] latencies = new long[1 << 16];
+                int count = 0;
+                int errors = 0;
+                while (System.nanoTime() < deadline) {
+                    LocalDate checkIn = today.plusDays(random.nextInt(365));
+                    LocalDate checkOut = checkIn.plusDays(1 + random.nextInt(7));
+                    HttpRequest request;
+                    if (random.nextInt(5) == 0) {
+                        request = HttpRequest.newBuilder(base.resolve("/reservations"))
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"load@test.com\"," +
+                                        "\"roomNumber\":\"" + random.nextInt(roomCount) + "\"," +
+                                        "\"checkIn\":\"" + DATE_FORMAT.format(checkIn) + "\"," +
+                                        "\"checkOut\":\"" + DATE_FORMAT.format(checkOut) + "\"}"))
+                                .build();
+                    } else {
+                        request = HttpRequest.newBuilder(base.resolve("/rooms?checkIn="
+                                + DATE_FORMAT.format(checkIn) + "&checkOut=" + DATE_FORMAT.format(checkOut)))
+                                .GET()
+                                .build();
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        // A booking that loses to another one is a correct answer, not an error.
+                        if (status >= 400 && status != 409) {
+                            errors++;
+                        }
+                    } catch (Exception ex) {
+                        errors++;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                result.record(clientIndex, Arrays.copyOf(latencies, count), errors);
+                done.countDown();
+            }, "load-client-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        return result;
+    }
+
+    private static double percentile(long[] sortedLatencies, double fraction) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(fraction * sortedLatencies.length) - 1);
+        return sortedLatencies[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Latencies in nanoseconds and error counts collected from each client
+     */
+    private static final class Result {
+        private final long[][] latenciesByClient;
+        private int errors;
+
+        Result(int clients) {
+            latenciesByClient = new long[clients][];
+        }
+
+        synchronized void record(int client, long[] latencies, int clientErrors) {
+            latenciesByClient[client] = latencies;
+            errors += clientErrors;
+        }
+
+        synchronized long[] latencies() {
+            int total = 0;
+            for (long[] latencies: latenciesByClient) {
+                total += latencies.length;
+            }
+            long[] all = new long[total];
+            int position = 0;
+            for (long[] latencies: latenciesByClient) {
+                System.arraycopy(latencies, 0, all, position, latencies.length);
+                position += latencies.length;
+            }
+            return all;
+        }
+    }
+}